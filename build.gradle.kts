@@ -5,6 +5,7 @@ plugins {
     id("java")
     id("checkstyle")
     id("com.diffplug.spotless") version "7.0.2"
+    id("me.champeau.jmh") version "0.7.2"
 }
 
 group = "org.vineflower"
@@ -33,6 +34,11 @@ tasks.test {
     useJUnitPlatform()
 }
 
+jmh {
+    // report allocation rates (gc.alloc.rate.norm) alongside timings
+    profilers.add("gc")
+}
+
 checkstyle {
     toolVersion = "10.21.1"
     configFile = file("checkstyle.xml")
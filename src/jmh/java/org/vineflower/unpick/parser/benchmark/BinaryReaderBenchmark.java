@@ -0,0 +1,78 @@
+package org.vineflower.unpick.parser.benchmark;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import org.vineflower.unpick.parser.UnpickBinaryReader;
+import org.vineflower.unpick.parser.UnpickBinaryWriter;
+import org.vineflower.unpick.parser.UnpickV3Reader;
+import org.vineflower.unpick.parser.tree.GroupDefinition;
+import org.vineflower.unpick.parser.tree.TargetMethod;
+import org.vineflower.unpick.parser.tree.UnpickV3Visitor;
+
+/**
+ * Compares loading the same content from the text format and from the binary format.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BinaryReaderBenchmark {
+    private String text;
+    private byte[] binary;
+
+    @Setup
+    public void setup() throws IOException {
+        text = SyntheticFiles.groupsWithTargets(5000, 20);
+        UnpickBinaryWriter writer = new UnpickBinaryWriter();
+        try (UnpickV3Reader reader = new UnpickV3Reader(new StringReader(text))) {
+            reader.accept(writer);
+        }
+        binary = writer.getOutput();
+    }
+
+    @Benchmark
+    public void text(Blackhole blackhole) throws IOException {
+        try (UnpickV3Reader reader = new UnpickV3Reader(new StringReader(text))) {
+            reader.accept(new ConsumingVisitor(blackhole));
+        }
+    }
+
+    @Benchmark
+    public void binary(Blackhole blackhole) throws IOException {
+        new UnpickBinaryReader(binary).accept(new ConsumingVisitor(blackhole));
+    }
+
+    private static final class ConsumingVisitor extends UnpickV3Visitor {
+        private final Blackhole blackhole;
+
+        ConsumingVisitor(Blackhole blackhole) {
+            this.blackhole = blackhole;
+        }
+
+        @Override
+        public void visitGroupDefinition(GroupDefinition groupDefinition) {
+            blackhole.consume(groupDefinition);
+        }
+
+        @Override
+        public void visitTargetMethod(TargetMethod targetMethod) {
+            blackhole.consume(targetMethod);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package org.vineflower.unpick.parser.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import org.vineflower.unpick.parser.UnpickV3Reader;
+import org.vineflower.unpick.parser.tree.GroupDefinition;
+import org.vineflower.unpick.parser.tree.UnpickV3Visitor;
+
+/**
+ * Compares reading a large file through a {@link java.io.Reader} against memory-mapping it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FileInputBenchmark {
+    private Path file;
+
+    @Setup
+    public void setup() throws IOException {
+        file = Files.createTempFile("unpick-benchmark", ".unpick");
+        Files.writeString(file, SyntheticFiles.groups(5000, 20));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.delete(file);
+    }
+
+    @Benchmark
+    public void reader(Blackhole blackhole) throws IOException {
+        try (UnpickV3Reader reader = new UnpickV3Reader(Files.newBufferedReader(file))) {
+            read(reader, blackhole);
+        }
+    }
+
+    @Benchmark
+    public void mapped(Blackhole blackhole) throws IOException {
+        try (UnpickV3Reader reader = new UnpickV3Reader(file)) {
+            read(reader, blackhole);
+        }
+    }
+
+    private static void read(UnpickV3Reader reader, Blackhole blackhole) throws IOException {
+        reader.accept(new UnpickV3Visitor() {
+            @Override
+            public void visitGroupDefinition(GroupDefinition groupDefinition) {
+                blackhole.consume(groupDefinition);
+            }
+        });
+    }
+}
@@ -0,0 +1,71 @@
+package org.vineflower.unpick.parser.benchmark;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import org.vineflower.unpick.parser.UnpickV3Reader;
+import org.vineflower.unpick.parser.tree.GroupDefinition;
+import org.vineflower.unpick.parser.tree.UnpickV3Visitor;
+
+/**
+ * Measures parsing long flag expressions such as {@code foo.Bar.A | foo.Bar.B | foo.Bar.C | ...}, reported per
+ * expression.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FlagExpressionBenchmark {
+    private static final int EXPRESSIONS = 10_000;
+
+    @Param({"4", "32", "256"})
+    public int terms;
+
+    private String file;
+
+    @Setup
+    public void setup() {
+        StringBuilder sb = new StringBuilder("unpick v3\n\ngroup int Flags\n\t@flags\n");
+        for (int expression = 0; expression < EXPRESSIONS; expression++) {
+            sb.append('\t');
+            for (int term = 0; term < terms; term++) {
+                if (term != 0) {
+                    sb.append(" | ");
+                }
+                sb.append("foo.Bar.FLAG_").append(term);
+            }
+            sb.append('\n');
+        }
+        file = sb.toString();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EXPRESSIONS)
+    public void read(Blackhole blackhole) throws IOException {
+        try (UnpickV3Reader reader = new UnpickV3Reader(new StringReader(file))) {
+            reader.accept(new UnpickV3Visitor() {
+                @Override
+                public void visitGroupDefinition(GroupDefinition groupDefinition) {
+                    blackhole.consume(groupDefinition);
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package org.vineflower.unpick.parser.benchmark;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import org.vineflower.unpick.parser.UnpickV3Reader;
+import org.vineflower.unpick.parser.tree.GroupDefinition;
+import org.vineflower.unpick.parser.tree.UnpickItem;
+import org.vineflower.unpick.parser.tree.UnpickV3Visitor;
+import org.vineflower.unpick.parser.tree.expr.Expression;
+import org.vineflower.unpick.parser.tree.expr.LazyExpression;
+
+/**
+ * Reads a file dominated by group definitions with many constants, where every line goes through the reader's
+ * lookahead. With {@code lazy}, the constants are kept as source text instead of being parsed, and
+ * {@link #readAndResolve(Blackhole)} measures the cost of then resolving all of them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GroupDefinitionBenchmark {
+    @Param({"10", "100", "1000"})
+    public int constantsPerGroup;
+
+    @Param({"false", "true"})
+    public boolean lazy;
+
+    private String file;
+
+    @Setup
+    public void setup() {
+        file = SyntheticFiles.groups(100_000 / constantsPerGroup, constantsPerGroup);
+    }
+
+    @Benchmark
+    public void read(Blackhole blackhole) throws IOException {
+        try (UnpickV3Reader reader = new UnpickV3Reader(new StringReader(file))) {
+            reader.setLazyExpressions(lazy);
+            reader.accept(new UnpickV3Visitor() {
+                @Override
+                public void visitGroupDefinition(GroupDefinition groupDefinition) {
+                    blackhole.consume(groupDefinition);
+                }
+            });
+        }
+    }
+
+    @Benchmark
+    public void readAndResolve(Blackhole blackhole) throws IOException {
+        try (UnpickV3Reader reader = new UnpickV3Reader(new StringReader(file))) {
+            reader.setLazyExpressions(lazy);
+            UnpickItem item;
+            while ((item = reader.nextItem()) != null) {
+                for (Expression constant : ((GroupDefinition) item).constants()) {
+                    blackhole.consume(constant instanceof LazyExpression lazyConstant ? lazyConstant.resolve() : constant);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package org.vineflower.unpick.parser.benchmark;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.vineflower.unpick.parser.UnpickIndex;
+import org.vineflower.unpick.parser.UnpickIndexWriter;
+import org.vineflower.unpick.parser.UnpickV3Reader;
+import org.vineflower.unpick.parser.tree.TargetMethod;
+
+/**
+ * Measures opening an index and looking up target methods in it, both hits and misses.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IndexLookupBenchmark {
+    private static final int GROUP_COUNT = 5000;
+
+    private ByteBuffer indexBytes;
+    private UnpickIndex index;
+    private int next;
+
+    @Setup
+    public void setup() throws IOException {
+        UnpickIndexWriter writer = new UnpickIndexWriter();
+        try (UnpickV3Reader reader = new UnpickV3Reader(new StringReader(SyntheticFiles.groupsWithTargets(GROUP_COUNT, 20)))) {
+            reader.accept(writer);
+        }
+        indexBytes = ByteBuffer.wrap(writer.getOutput());
+        index = new UnpickIndex(indexBytes);
+    }
+
+    @Benchmark
+    public UnpickIndex open() throws IOException {
+        return new UnpickIndex(indexBytes);
+    }
+
+    @Benchmark
+    public TargetMethod hit() {
+        next = (next + 1) % GROUP_COUNT;
+        return index.getTargetMethod("foo.Bar", "method" + next, "(I)V");
+    }
+
+    @Benchmark
+    public TargetMethod miss() {
+        next = (next + 1) % GROUP_COUNT;
+        return index.getTargetMethod("foo.Bar", "method" + next, "(J)V");
+    }
+}
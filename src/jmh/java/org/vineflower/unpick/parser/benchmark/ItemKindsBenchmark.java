@@ -0,0 +1,64 @@
+package org.vineflower.unpick.parser.benchmark;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import org.vineflower.unpick.parser.UnpickV3Reader;
+import org.vineflower.unpick.parser.tree.TargetMethod;
+import org.vineflower.unpick.parser.tree.UnpickV3Visitor;
+
+/**
+ * Measures reading only the target methods of a file dominated by groups, with and without skipping the groups.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ItemKindsBenchmark {
+    private String file;
+
+    @Setup
+    public void setup() {
+        file = SyntheticFiles.groupsWithTargets(5000, 20);
+    }
+
+    @Benchmark
+    public void parseAll(Blackhole blackhole) throws IOException {
+        try (UnpickV3Reader reader = new UnpickV3Reader(new StringReader(file))) {
+            reader.accept(visitor(blackhole));
+        }
+    }
+
+    @Benchmark
+    public void skipGroups(Blackhole blackhole) throws IOException {
+        try (UnpickV3Reader reader = new UnpickV3Reader(new StringReader(file))) {
+            UnpickV3Visitor visitor = visitor(blackhole);
+            reader.setItemKinds(visitor.getVisitedKinds());
+            reader.accept(visitor);
+        }
+    }
+
+    private static UnpickV3Visitor visitor(Blackhole blackhole) {
+        return new UnpickV3Visitor() {
+            @Override
+            public void visitTargetMethod(TargetMethod targetMethod) {
+                blackhole.consume(targetMethod);
+            }
+        };
+    }
+}
@@ -0,0 +1,84 @@
+package org.vineflower.unpick.parser.benchmark;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import org.vineflower.unpick.parser.mapping.MappingTable;
+
+/**
+ * Measures loading a tiny v2 file the size of a game's mappings, and the throughput of class, field and method lookups
+ * in the loaded table, half of which hit a mapped member.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MappingTableBenchmark {
+    private static final int CLASS_COUNT = 8000;
+    private static final int MEMBER_COUNT = 10;
+    private static final int LOOKUP_COUNT = 100000;
+
+    private String mappings;
+    private MappingTable table;
+    private final String[] classNames = new String[LOOKUP_COUNT];
+    private final String[] fieldNames = new String[LOOKUP_COUNT];
+    private final String[] methodNames = new String[LOOKUP_COUNT];
+    private final String[] methodDescs = new String[LOOKUP_COUNT];
+
+    @Setup
+    public void setup() throws IOException {
+        StringBuilder sb = new StringBuilder("tiny\t2\t0\tofficial\tintermediary\tnamed\n");
+        for (int i = 0; i < CLASS_COUNT; i++) {
+            sb.append("c\tc").append(i).append("\tnet/minecraft/class_").append(i).append("\tnet/minecraft/pkg").append(i % 100).append("/Name").append(i).append('\n');
+            for (int j = 0; j < MEMBER_COUNT; j++) {
+                sb.append("\tf\tI\tf").append(j).append("\tfield_").append(i * MEMBER_COUNT + j).append("\tFIELD_").append(j).append('\n');
+                sb.append("\tm\t(Lc").append(j).append(";)V\tm").append(j).append("\tmethod_").append(i * MEMBER_COUNT + j).append("\tmethod").append(j).append('\n');
+                sb.append("\t\tp\t1\t\t\tparam").append(j).append('\n');
+            }
+        }
+        mappings = sb.toString();
+        table = MappingTable.readTinyV2(new StringReader(mappings), "intermediary", "named");
+
+        for (int i = 0; i < LOOKUP_COUNT; i++) {
+            int classIndex = (i * 31) % CLASS_COUNT;
+            classNames[i] = "net.minecraft.class_" + classIndex;
+            int memberIndex = i % MEMBER_COUNT;
+            // every other lookup misses
+            String suffix = i % 2 == 0 ? "missing" : String.valueOf(classIndex * MEMBER_COUNT + memberIndex);
+            fieldNames[i] = "field_" + suffix;
+            methodNames[i] = "method_" + suffix;
+            methodDescs[i] = "(Lnet/minecraft/class_" + memberIndex + ";)V";
+        }
+    }
+
+    @Benchmark
+    public MappingTable load() throws IOException {
+        return MappingTable.readTinyV2(new StringReader(mappings), "intermediary", "named");
+    }
+
+    @Benchmark
+    public void lookup(Blackhole blackhole) {
+        for (int i = 0; i < LOOKUP_COUNT; i++) {
+            String className = classNames[i];
+            blackhole.consume(table.mapClassName(className));
+            blackhole.consume(table.mapFieldName(className, fieldNames[i], "I"));
+            blackhole.consume(table.mapMethodName(className, methodNames[i], methodDescs[i]));
+            blackhole.consume(table.getFieldDesc(className, fieldNames[i]));
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package org.vineflower.unpick.parser.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import org.vineflower.unpick.parser.UnpickV3Reader;
+import org.vineflower.unpick.parser.tree.GroupDefinition;
+import org.vineflower.unpick.parser.tree.UnpickV3Visitor;
+
+/**
+ * Measures how parallel parsing of a file of about a million lines scales with the number of threads. The
+ * {@code sequential} benchmark is the baseline.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ParallelReaderBenchmark {
+    private static final int GROUPS = 50_000;
+    private static final int CONSTANTS_PER_GROUP = 20;
+
+    @Param({"1", "2", "4", "8"})
+    private int threads;
+
+    private Path file;
+    private ForkJoinPool pool;
+
+    @Setup
+    public void setup() throws IOException {
+        file = Files.createTempFile("unpick-benchmark", ".unpick");
+        Files.writeString(file, SyntheticFiles.groups(GROUPS, CONSTANTS_PER_GROUP));
+        pool = new ForkJoinPool(threads);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        pool.shutdown();
+        Files.delete(file);
+    }
+
+    @Benchmark
+    public void sequential(Blackhole blackhole) throws IOException {
+        try (UnpickV3Reader reader = new UnpickV3Reader(file)) {
+            reader.accept(visitor(blackhole));
+        }
+    }
+
+    @Benchmark
+    public void parallel(Blackhole blackhole) throws IOException {
+        try (UnpickV3Reader reader = new UnpickV3Reader(file)) {
+            reader.acceptParallel(visitor(blackhole), pool);
+        }
+    }
+
+    private static UnpickV3Visitor visitor(Blackhole blackhole) {
+        return new UnpickV3Visitor() {
+            @Override
+            public void visitGroupDefinition(GroupDefinition groupDefinition) {
+                blackhole.consume(groupDefinition);
+            }
+        };
+    }
+}
@@ -0,0 +1,251 @@
+package org.vineflower.unpick.parser.benchmark;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import org.vineflower.unpick.parser.UnpickV3Reader;
+import org.vineflower.unpick.parser.UnpickV3Remapper;
+import org.vineflower.unpick.parser.tree.GroupDefinition;
+import org.vineflower.unpick.parser.tree.TargetMethod;
+import org.vineflower.unpick.parser.tree.UnpickItem;
+import org.vineflower.unpick.parser.tree.UnpickV3Visitor;
+
+/**
+ * Measures remapping target methods with long descriptors, where a few classes are renamed and most are not, and
+ * remapping many groups scoped to the same large package, with the package expanded to classes or preserved. The
+ * identity case remaps a file in which no name changes, where nothing but the lookups should allocate, as reported by
+ * the gc profiler. The round trip cases remap the same file through a provider that costs a fixed amount of work per
+ * call, like a remote one, one name at a time and in bulk.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RemapperBenchmark {
+    private static final int METHOD_COUNT = 20000;
+    private static final int GROUP_COUNT = 500;
+    private static final long ROUND_TRIP_TOKENS = 2000;
+    private static final int BULK_BATCH_SIZE = 1024;
+    private static final List<String> PACKAGE_CLASSES = new ArrayList<>();
+    static {
+        for (int i = 0; i < 2000; i++) {
+            PACKAGE_CLASSES.add("com.example.ui.Widget" + i);
+        }
+    }
+
+    private final List<UnpickItem> items = new ArrayList<>();
+    private final List<UnpickItem> groups = new ArrayList<>();
+    private final List<UnpickItem> unchangedItems = new ArrayList<>();
+
+    @Setup
+    public void setup() throws IOException {
+        StringBuilder sb = new StringBuilder("unpick v3\n");
+        for (int i = 0; i < METHOD_COUNT; i++) {
+            sb.append("\ntarget_method com.example.ui.Widget").append(i % 100).append(" render")
+                    .append(" (Lcom/example/ui/Canvas;Lcom/example/ui/Style;IILjava/lang/String;[Lcom/example/ui/Widget")
+                    .append(i % 50).append(";Lcom/example/render/Context;)Lcom/example/render/Result;\n")
+                    .append("\tparam 2 Flags\n");
+        }
+        try (UnpickV3Reader reader = new UnpickV3Reader(new StringReader(sb.toString()))) {
+            reader.stream().forEach(items::add);
+        }
+
+        sb.setLength(0);
+        sb.append("unpick v3\n");
+        for (int i = 0; i < GROUP_COUNT; i++) {
+            sb.append("\ngroup int Group").append(i).append("\n\t@scope package com.example.ui\n\tcom.example.ui.Widget").append(i).append(".FLAG\n");
+        }
+        try (UnpickV3Reader reader = new UnpickV3Reader(new StringReader(sb.toString()))) {
+            reader.stream().forEach(groups::add);
+        }
+
+        try (UnpickV3Reader reader = new UnpickV3Reader(new StringReader(SyntheticFiles.groupsWithTargets(5000, 20)))) {
+            reader.stream().forEach(unchangedItems::add);
+        }
+    }
+
+    @Benchmark
+    public void remapDescriptors(Blackhole blackhole) {
+        UnpickV3Remapper remapper = new RenamingRemapper(new UnpickV3Visitor() {
+            @Override
+            public void visitTargetMethod(TargetMethod targetMethod) {
+                blackhole.consume(targetMethod);
+            }
+        });
+        for (UnpickItem item : items) {
+            item.accept(remapper);
+        }
+    }
+
+    @Benchmark
+    public void remapPackageScopes(Blackhole blackhole) {
+        remapGroups(blackhole, false);
+    }
+
+    @Benchmark
+    public void remapPreservedPackageScopes(Blackhole blackhole) {
+        remapGroups(blackhole, true);
+    }
+
+    @Benchmark
+    public void remapIdentity(Blackhole blackhole) {
+        UnpickV3Remapper remapper = new RenamingRemapper(new UnpickV3Visitor() {
+            @Override
+            public void visitGroupDefinition(GroupDefinition groupDefinition) {
+                blackhole.consume(groupDefinition);
+            }
+
+            @Override
+            public void visitTargetMethod(TargetMethod targetMethod) {
+                blackhole.consume(targetMethod);
+            }
+        });
+        for (UnpickItem item : unchangedItems) {
+            item.accept(remapper);
+        }
+    }
+
+    @Benchmark
+    public void remapRoundTrips(Blackhole blackhole) {
+        remapRoundTrips(blackhole, 0);
+    }
+
+    @Benchmark
+    public void remapBulkRoundTrips(Blackhole blackhole) {
+        remapRoundTrips(blackhole, BULK_BATCH_SIZE);
+    }
+
+    private void remapRoundTrips(Blackhole blackhole, int bulkBatchSize) {
+        UnpickV3Remapper remapper = new RoundTripRemapper(new UnpickV3Visitor() {
+            @Override
+            public void visitGroupDefinition(GroupDefinition groupDefinition) {
+                blackhole.consume(groupDefinition);
+            }
+
+            @Override
+            public void visitTargetMethod(TargetMethod targetMethod) {
+                blackhole.consume(targetMethod);
+            }
+        });
+        remapper.setBulkBatchSize(bulkBatchSize);
+        for (UnpickItem item : unchangedItems) {
+            item.accept(remapper);
+        }
+        remapper.flush();
+    }
+
+    private void remapGroups(Blackhole blackhole, boolean preservePackages) {
+        UnpickV3Remapper remapper = new RenamingRemapper(new UnpickV3Visitor() {
+            @Override
+            public void visitGroupDefinition(GroupDefinition groupDefinition) {
+                blackhole.consume(groupDefinition);
+            }
+        });
+        remapper.setPreservePackages(preservePackages);
+        for (UnpickItem item : groups) {
+            item.accept(remapper);
+        }
+    }
+
+    private static class RenamingRemapper extends UnpickV3Remapper {
+        RenamingRemapper(UnpickV3Visitor downstream) {
+            super(downstream);
+        }
+
+        @Override
+        protected String mapClassName(String className) {
+            return className.equals("com.example.ui.Canvas") ? "com.example.gfx.Surface" : className;
+        }
+
+        @Override
+        protected String mapFieldName(String className, String fieldName, String fieldDesc) {
+            return fieldName;
+        }
+
+        @Override
+        protected String mapMethodName(String className, String methodName, String methodDesc) {
+            return methodName;
+        }
+
+        @Override
+        protected List<String> getClassesInPackage(String pkg) {
+            return pkg.equals("com.example.ui") ? PACKAGE_CLASSES : List.of();
+        }
+
+        @Override
+        protected String getFieldDesc(String className, String fieldName) {
+            return "I";
+        }
+
+        @Override
+        protected List<String> getClassesInMappedPackage(String mappedPackage) {
+            return mappedPackage.equals("com.example.ui") ? PACKAGE_CLASSES : List.of();
+        }
+    }
+
+    private static final class RoundTripRemapper extends RenamingRemapper {
+        RoundTripRemapper(UnpickV3Visitor downstream) {
+            super(downstream);
+        }
+
+        @Override
+        protected String mapClassName(String className) {
+            Blackhole.consumeCPU(ROUND_TRIP_TOKENS);
+            return super.mapClassName(className);
+        }
+
+        @Override
+        protected String mapFieldName(String className, String fieldName, String fieldDesc) {
+            Blackhole.consumeCPU(ROUND_TRIP_TOKENS);
+            return fieldName;
+        }
+
+        @Override
+        protected String mapMethodName(String className, String methodName, String methodDesc) {
+            Blackhole.consumeCPU(ROUND_TRIP_TOKENS);
+            return methodName;
+        }
+
+        @Override
+        protected Map<String, String> mapClassNames(Set<String> classNames) {
+            Blackhole.consumeCPU(ROUND_TRIP_TOKENS);
+            Map<String, String> mappedClassNames = new HashMap<>();
+            for (String className : classNames) {
+                mappedClassNames.put(className, super.mapClassName(className));
+            }
+            return mappedClassNames;
+        }
+
+        @Override
+        protected Map<Member, String> mapFieldNames(Set<Member> fields) {
+            Blackhole.consumeCPU(ROUND_TRIP_TOKENS);
+            return Map.of();
+        }
+
+        @Override
+        protected Map<Member, String> mapMethodNames(Set<Member> methods) {
+            Blackhole.consumeCPU(ROUND_TRIP_TOKENS);
+            return Map.of();
+        }
+    }
+}
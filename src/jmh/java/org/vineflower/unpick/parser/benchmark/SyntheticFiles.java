@@ -0,0 +1,58 @@
+package org.vineflower.unpick.parser.benchmark;
+
+/**
+ * Generates synthetic .unpick files for benchmarks.
+ */
+final class SyntheticFiles {
+    /**
+     * The number of tokens lexed per group header produced by {@link #groups}: {@code group}, {@code int}, the group
+     * name, and the newline.
+     */
+    static final int TOKENS_PER_GROUP_HEADER = 4;
+    /**
+     * The number of tokens lexed per constant produced by {@link #groups}: the indent, {@code foo . Bar . FIELD},
+     * {@code |}, {@code 0x10}, {@code <<}, {@code 2}, and the newline.
+     */
+    static final int TOKENS_PER_CONSTANT = 11;
+
+    private SyntheticFiles() {
+    }
+
+    /**
+     * Generates a file consisting of named int groups, each with the given number of constants.
+     */
+    static String groups(int groupCount, int constantsPerGroup) {
+        StringBuilder sb = new StringBuilder("unpick v3\n");
+        for (int group = 0; group < groupCount; group++) {
+            sb.append("\ngroup int Group").append(group).append('\n');
+            for (int constant = 0; constant < constantsPerGroup; constant++) {
+                sb.append("\tfoo.Bar.FIELD_").append(constant).append(" | 0x10 << 2\n");
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Generates a file like {@link #groups}, with a target method using each group after it.
+     */
+    static String groupsWithTargets(int groupCount, int constantsPerGroup) {
+        StringBuilder sb = new StringBuilder("unpick v3\n");
+        for (int group = 0; group < groupCount; group++) {
+            sb.append("\ngroup int Group").append(group).append('\n');
+            for (int constant = 0; constant < constantsPerGroup; constant++) {
+                sb.append("\tfoo.Bar.FIELD_").append(constant).append(" | 0x10 << 2\n");
+            }
+            sb.append("\ntarget_method foo.Bar method").append(group).append(" (I)V\n");
+            sb.append("\tparam 0 Group").append(group).append('\n');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * The number of tokens lexed when reading the file produced by {@link #groups}, including the header newline and
+     * the eof token.
+     */
+    static int tokenCount(int groupCount, int constantsPerGroup) {
+        return 2 + groupCount * (TOKENS_PER_GROUP_HEADER + constantsPerGroup * TOKENS_PER_CONSTANT);
+    }
+}
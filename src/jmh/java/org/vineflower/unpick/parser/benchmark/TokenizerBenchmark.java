@@ -0,0 +1,61 @@
+package org.vineflower.unpick.parser.benchmark;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import org.vineflower.unpick.parser.UnpickV3Reader;
+import org.vineflower.unpick.parser.tree.GroupDefinition;
+import org.vineflower.unpick.parser.tree.UnpickV3Visitor;
+
+/**
+ * Measures the cost of reading per lexed token. Run with the {@code gc} profiler (enabled by default in the build) and
+ * compare {@code gc.alloc.rate.norm}, which is then reported in bytes allocated per token.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TokenizerBenchmark {
+    private static final int GROUPS = 1000;
+    private static final int CONSTANTS_PER_GROUP = 20;
+    private static final int TOKENS = 2 + GROUPS * (SyntheticFiles.TOKENS_PER_GROUP_HEADER + CONSTANTS_PER_GROUP * SyntheticFiles.TOKENS_PER_CONSTANT);
+
+    private String file;
+
+    @Setup
+    public void setup() {
+        file = SyntheticFiles.groups(GROUPS, CONSTANTS_PER_GROUP);
+        if (SyntheticFiles.tokenCount(GROUPS, CONSTANTS_PER_GROUP) != TOKENS) {
+            throw new AssertionError("Token count out of sync with the synthetic file");
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TOKENS)
+    public void read(Blackhole blackhole) throws IOException {
+        try (UnpickV3Reader reader = new UnpickV3Reader(new StringReader(file))) {
+            reader.accept(new UnpickV3Visitor() {
+                @Override
+                public void visitGroupDefinition(GroupDefinition groupDefinition) {
+                    blackhole.consume(groupDefinition);
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package org.vineflower.unpick.parser.benchmark;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.vineflower.unpick.parser.UnpickV3ParallelWriter;
+import org.vineflower.unpick.parser.UnpickV3Reader;
+import org.vineflower.unpick.parser.UnpickV3Writer;
+import org.vineflower.unpick.parser.tree.UnpickItem;
+
+/**
+ * Compares writing a large file by building it in memory and writing the string out, against streaming it to a
+ * file channel, with the items formatted sequentially or in parallel.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WriterBenchmark {
+    private final List<UnpickItem> items = new ArrayList<>();
+    private Path file;
+
+    @Setup
+    public void setup() throws IOException {
+        try (UnpickV3Reader reader = new UnpickV3Reader(new StringReader(SyntheticFiles.groupsWithTargets(5000, 20)))) {
+            reader.stream().forEach(items::add);
+        }
+        file = Files.createTempFile("unpick-benchmark", ".unpick");
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.delete(file);
+    }
+
+    @Benchmark
+    public void inMemory() throws IOException {
+        UnpickV3Writer writer = new UnpickV3Writer();
+        for (UnpickItem item : items) {
+            item.accept(writer);
+        }
+        Files.writeString(file, writer.getOutput());
+    }
+
+    @Benchmark
+    public void channel() throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            UnpickV3Writer writer = new UnpickV3Writer(channel);
+            for (UnpickItem item : items) {
+                item.accept(writer);
+            }
+            writer.flush();
+        }
+    }
+
+    @Benchmark
+    public void parallelChannel() throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            UnpickV3ParallelWriter writer = new UnpickV3ParallelWriter(new UnpickV3Writer(channel));
+            for (UnpickItem item : items) {
+                item.accept(writer);
+            }
+            writer.flush();
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package org.vineflower.unpick.parser;
+
+/**
+ * Constants of the binary unpick format, shared by {@link UnpickBinaryWriter} and {@link UnpickBinaryReader}.
+ *
+ * <p>A file starts with {@link #MAGIC}, the {@link #FORMAT_VERSION} byte and the unpick version as a varint, and is
+ * followed by items until the end of the file. Each item starts with one of the {@code ITEM_} tags. All integers are
+ * unsigned LEB128 varints, except for float and double bits, which are stored as fixed-width little-endian values.
+ *
+ * <p>Names and descriptors are string references: {@link #STRING_NULL}, {@link #STRING_NEW} followed by an inline
+ * string which is then added to the end of the string table, or an index into the string table plus
+ * {@link #STRING_TABLE_OFFSET}. Inline strings start with a varint of their length in bytes shifted left by one; the
+ * low bit is set if the string is not valid UTF-16 and is therefore stored as raw little-endian chars instead of UTF-8.
+ *
+ * <p>Expressions are stored in postfix order as a sequence of opcodes ending with {@link #OP_END}.
+ */
+final class UnpickBinaryFormat {
+    static final int MAGIC = 0x42504e55; // "UNPB" in little-endian order
+    static final int FORMAT_VERSION = 1;
+
+    static final int ITEM_GROUP_DEFINITION = 1;
+    static final int ITEM_TARGET_FIELD = 2;
+    static final int ITEM_TARGET_METHOD = 3;
+    static final int ITEM_TARGET_ANNOTATION = 4;
+
+    static final int STRING_NULL = 0;
+    static final int STRING_NEW = 1;
+    static final int STRING_TABLE_OFFSET = 2;
+
+    static final int GROUP_FLAGS = 1;
+    static final int GROUP_STRICT = 1 << 1;
+    static final int GROUP_DOCS = 1 << 2;
+
+    static final int SCOPE_PACKAGE = 0;
+    static final int SCOPE_CLASS = 1;
+    static final int SCOPE_METHOD = 2;
+
+    static final int OP_END = 0;
+    static final int OP_INTEGER = 1; // plus the radix index
+    static final int OP_LONG = 5; // plus the radix index
+    static final int OP_FLOAT = 9;
+    static final int OP_DOUBLE = 10;
+    static final int OP_CHARACTER = 11;
+    static final int OP_STRING = 12;
+    static final int OP_STATIC_FIELD = 13;
+    static final int OP_INSTANCE_FIELD = 14;
+    static final int OP_PAREN = 15;
+    static final int OP_NEGATE = 16;
+    static final int OP_BIT_NOT = 17;
+    static final int OP_CAST = 18;
+    static final int OP_BINARY = 32; // plus the operator ordinal
+
+    // indexed by radix index
+    static final int[] RADICES = {10, 16, 8, 2};
+
+    private UnpickBinaryFormat() {
+    }
+
+    static int radixIndex(int radix) {
+        return switch (radix) {
+            case 10 -> 0;
+            case 16 -> 1;
+            case 8 -> 2;
+            case 2 -> 3;
+            default -> throw new AssertionError("Illegal radix: " + radix);
+        };
+    }
+}
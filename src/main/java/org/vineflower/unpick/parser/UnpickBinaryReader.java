@@ -0,0 +1,379 @@
+package org.vineflower.unpick.parser;
+
+import static org.vineflower.unpick.parser.UnpickBinaryFormat.FORMAT_VERSION;
+import static org.vineflower.unpick.parser.UnpickBinaryFormat.GROUP_DOCS;
+import static org.vineflower.unpick.parser.UnpickBinaryFormat.GROUP_FLAGS;
+import static org.vineflower.unpick.parser.UnpickBinaryFormat.GROUP_STRICT;
+import static org.vineflower.unpick.parser.UnpickBinaryFormat.ITEM_GROUP_DEFINITION;
+import static org.vineflower.unpick.parser.UnpickBinaryFormat.ITEM_TARGET_ANNOTATION;
+import static org.vineflower.unpick.parser.UnpickBinaryFormat.ITEM_TARGET_FIELD;
+import static org.vineflower.unpick.parser.UnpickBinaryFormat.ITEM_TARGET_METHOD;
+import static org.vineflower.unpick.parser.UnpickBinaryFormat.MAGIC;
+import static org.vineflower.unpick.parser.UnpickBinaryFormat.OP_BINARY;
+import static org.vineflower.unpick.parser.UnpickBinaryFormat.OP_BIT_NOT;
+import static org.vineflower.unpick.parser.UnpickBinaryFormat.OP_CAST;
+import static org.vineflower.unpick.parser.UnpickBinaryFormat.OP_CHARACTER;
+import static org.vineflower.unpick.parser.UnpickBinaryFormat.OP_DOUBLE;
+import static org.vineflower.unpick.parser.UnpickBinaryFormat.OP_END;
+import static org.vineflower.unpick.parser.UnpickBinaryFormat.OP_FLOAT;
+import static org.vineflower.unpick.parser.UnpickBinaryFormat.OP_INSTANCE_FIELD;
+import static org.vineflower.unpick.parser.UnpickBinaryFormat.OP_INTEGER;
+import static org.vineflower.unpick.parser.UnpickBinaryFormat.OP_LONG;
+import static org.vineflower.unpick.parser.UnpickBinaryFormat.OP_NEGATE;
+import static org.vineflower.unpick.parser.UnpickBinaryFormat.OP_PAREN;
+import static org.vineflower.unpick.parser.UnpickBinaryFormat.OP_STATIC_FIELD;
+import static org.vineflower.unpick.parser.UnpickBinaryFormat.OP_STRING;
+import static org.vineflower.unpick.parser.UnpickBinaryFormat.RADICES;
+import static org.vineflower.unpick.parser.UnpickBinaryFormat.SCOPE_CLASS;
+import static org.vineflower.unpick.parser.UnpickBinaryFormat.SCOPE_METHOD;
+import static org.vineflower.unpick.parser.UnpickBinaryFormat.SCOPE_PACKAGE;
+import static org.vineflower.unpick.parser.UnpickBinaryFormat.STRING_NEW;
+import static org.vineflower.unpick.parser.UnpickBinaryFormat.STRING_NULL;
+import static org.vineflower.unpick.parser.UnpickBinaryFormat.STRING_TABLE_OFFSET;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.jetbrains.annotations.Nullable;
+
+import org.vineflower.unpick.parser.tree.DataType;
+import org.vineflower.unpick.parser.tree.GroupDefinition;
+import org.vineflower.unpick.parser.tree.GroupFormat;
+import org.vineflower.unpick.parser.tree.GroupScope;
+import org.vineflower.unpick.parser.tree.Literal;
+import org.vineflower.unpick.parser.tree.TargetAnnotation;
+import org.vineflower.unpick.parser.tree.TargetField;
+import org.vineflower.unpick.parser.tree.TargetMethod;
+import org.vineflower.unpick.parser.tree.UnpickItem;
+import org.vineflower.unpick.parser.tree.UnpickV3Visitor;
+import org.vineflower.unpick.parser.tree.expr.BinaryExpression;
+import org.vineflower.unpick.parser.tree.expr.CastExpression;
+import org.vineflower.unpick.parser.tree.expr.Expression;
+import org.vineflower.unpick.parser.tree.expr.FieldExpression;
+import org.vineflower.unpick.parser.tree.expr.LiteralExpression;
+import org.vineflower.unpick.parser.tree.expr.ParenExpression;
+import org.vineflower.unpick.parser.tree.expr.UnaryExpression;
+
+/**
+ * Reads the binary unpick format written by {@link UnpickBinaryWriter}, and drives a visitor with its contents the same
+ * way {@link UnpickV3Reader} does for the text format.
+ *
+ * <p>There is nothing to tokenize or validate beyond the structure of the data, and each name or descriptor is only
+ * decoded the first time it occurs, so reading is several times faster than parsing the equivalent text. Malformed
+ * data is reported as an {@link IOException}.
+ */
+public final class UnpickBinaryReader {
+    private static final BinaryExpression.Operator[] BINARY_OPERATORS = BinaryExpression.Operator.values();
+    private static final DataType[] DATA_TYPES = DataType.values();
+    private static final GroupFormat[] GROUP_FORMATS = GroupFormat.values();
+
+    private final ByteBuffer buffer;
+    private final int limit;
+    private int pos;
+    private String[] strings = new String[16];
+    private int stringCount;
+    private byte[] stringBytes = new byte[64];
+    private Expression[] stack = new Expression[8];
+
+    public UnpickBinaryReader(byte[] data) {
+        this(ByteBuffer.wrap(data));
+    }
+
+    /**
+     * Reads the binary data between the position and the limit of the given buffer. The buffer's position is not
+     * changed.
+     */
+    public UnpickBinaryReader(ByteBuffer buffer) {
+        this.buffer = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+        this.limit = this.buffer.limit();
+    }
+
+    /**
+     * Reads the file at the given path by memory-mapping it.
+     */
+    public UnpickBinaryReader(Path path) throws IOException {
+        this(map(path));
+    }
+
+    private static ByteBuffer map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    /**
+     * Visits the contents of the data. May be called more than once.
+     */
+    public void accept(UnpickV3Visitor visitor) throws IOException {
+        pos = 0;
+        stringCount = 0;
+
+        if (limit < 4 || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a binary unpick file");
+        }
+        pos = 4;
+        int formatVersion = readByte();
+        if (formatVersion != FORMAT_VERSION) {
+            throw new IOException("Unsupported binary unpick format version " + formatVersion);
+        }
+        visitor.visitHeader(readVarInt());
+
+        while (pos < limit) {
+            readItem().accept(visitor);
+        }
+    }
+
+    /**
+     * Reads the item written by {@link UnpickBinaryWriter#writeStandaloneItem} at the given offset.
+     */
+    UnpickItem readStandaloneItem(int offset) throws IOException {
+        pos = offset;
+        stringCount = 0;
+        return readItem();
+    }
+
+    private UnpickItem readItem() throws IOException {
+        int tag = readByte();
+        return switch (tag) {
+            case ITEM_GROUP_DEFINITION -> readGroupDefinition();
+            case ITEM_TARGET_FIELD -> new TargetField(readString(), readString(), readString(), readString());
+            case ITEM_TARGET_METHOD -> readTargetMethod();
+            case ITEM_TARGET_ANNOTATION -> new TargetAnnotation(readString(), readString());
+            default -> throw malformed("unknown item tag " + tag);
+        };
+    }
+
+    private GroupDefinition readGroupDefinition() throws IOException {
+        int flags = readByte();
+        DataType dataType = readEnum(DATA_TYPES, readByte());
+        String name = readNullableString();
+        int format = readByte();
+        String docs = (flags & GROUP_DOCS) != 0 ? readInlineString() : null;
+
+        int scopeCount = readCount();
+        List<GroupScope> scopes = new ArrayList<>(scopeCount);
+        for (int i = 0; i < scopeCount; i++) {
+            int scopeType = readByte();
+            scopes.add(switch (scopeType) {
+                case SCOPE_PACKAGE -> new GroupScope.Package(readString());
+                case SCOPE_CLASS -> new GroupScope.Class(readString());
+                case SCOPE_METHOD -> new GroupScope.Method(readString(), readString(), readString());
+                default -> throw malformed("unknown scope type " + scopeType);
+            });
+        }
+
+        int constantCount = readCount();
+        List<Expression> constants = new ArrayList<>(constantCount);
+        for (int i = 0; i < constantCount; i++) {
+            constants.add(readExpression());
+        }
+
+        return new GroupDefinition(
+                scopes,
+                (flags & GROUP_FLAGS) != 0,
+                (flags & GROUP_STRICT) != 0,
+                dataType,
+                name,
+                constants,
+                format == 0 ? null : readEnum(GROUP_FORMATS, format - 1),
+                docs
+        );
+    }
+
+    private TargetMethod readTargetMethod() throws IOException {
+        TargetMethod.Builder builder = TargetMethod.Builder.builder(readString(), readString(), readString());
+        int paramCount = readCount();
+        for (int i = 0; i < paramCount; i++) {
+            builder.paramGroup(readVarInt(), readString());
+        }
+        return builder.returnGroup(readNullableString()).build();
+    }
+
+    private Expression readExpression() throws IOException {
+        int top = 0;
+        while (true) {
+            int op = readByte();
+            Expression expression;
+            if (op >= OP_BINARY) {
+                BinaryExpression.Operator operator = readEnum(BINARY_OPERATORS, op - OP_BINARY);
+                checkOperands(top, 2);
+                Expression rhs = stack[--top];
+                expression = new BinaryExpression(stack[--top], rhs, operator);
+            } else if (op >= OP_INTEGER && op < OP_FLOAT) {
+                int radix = RADICES[(op - OP_INTEGER) & 3];
+                expression = new LiteralExpression(op < OP_LONG ? new Literal.Integer(readVarInt(), radix) : new Literal.Long(readVarLong(), radix));
+            } else {
+                switch (op) {
+                    case OP_END -> {
+                        if (top != 1) {
+                            throw malformed("unbalanced expression");
+                        }
+                        return stack[0];
+                    }
+                    case OP_FLOAT -> expression = new LiteralExpression(new Literal.Float(Float.intBitsToFloat(buffer.getInt(advance(4)))));
+                    case OP_DOUBLE -> expression = new LiteralExpression(new Literal.Double(Double.longBitsToDouble(buffer.getLong(advance(8)))));
+                    case OP_CHARACTER -> expression = new LiteralExpression(new Literal.Character((char) readVarInt()));
+                    case OP_STRING -> expression = new LiteralExpression(new Literal.String(readInlineString()));
+                    case OP_STATIC_FIELD, OP_INSTANCE_FIELD -> {
+                        String className = readString();
+                        String fieldName = readNullableString();
+                        int fieldType = readByte();
+                        expression = new FieldExpression(
+                                className,
+                                fieldName,
+                                fieldType == 0 ? null : readEnum(DATA_TYPES, fieldType - 1),
+                                op == OP_STATIC_FIELD
+                        );
+                    }
+                    case OP_PAREN -> {
+                        checkOperands(top, 1);
+                        expression = new ParenExpression(stack[--top]);
+                    }
+                    case OP_NEGATE, OP_BIT_NOT -> {
+                        checkOperands(top, 1);
+                        expression = new UnaryExpression(stack[--top], op == OP_NEGATE ? UnaryExpression.Operator.NEGATE : UnaryExpression.Operator.BIT_NOT);
+                    }
+                    case OP_CAST -> {
+                        checkOperands(top, 1);
+                        expression = new CastExpression(readEnum(DATA_TYPES, readByte()), stack[--top]);
+                    }
+                    default -> throw malformed("unknown opcode " + op);
+                }
+            }
+
+            if (top == stack.length) {
+                stack = Arrays.copyOf(stack, top * 2);
+            }
+            stack[top++] = expression;
+        }
+    }
+
+    private void checkOperands(int top, int count) throws IOException {
+        if (top < count) {
+            throw malformed("missing operand");
+        }
+    }
+
+    private String readString() throws IOException {
+        String string = readNullableString();
+        if (string == null) {
+            throw malformed("unexpected null string");
+        }
+        return string;
+    }
+
+    @Nullable
+    private String readNullableString() throws IOException {
+        int ref = readVarInt();
+        if (ref == STRING_NULL) {
+            return null;
+        }
+
+        if (ref == STRING_NEW) {
+            String string = readInlineString();
+            if (stringCount == strings.length) {
+                strings = Arrays.copyOf(strings, stringCount * 2);
+            }
+            strings[stringCount++] = string;
+            return string;
+        }
+
+        int index = ref - STRING_TABLE_OFFSET;
+        if (index < 0 || index >= stringCount) {
+            throw malformed("string index out of bounds");
+        }
+        return strings[index];
+    }
+
+    private String readInlineString() throws IOException {
+        int header = readVarInt();
+        int length = header >>> 1;
+        int start = advance(length);
+
+        if ((header & 1) != 0) {
+            char[] chars = new char[length >> 1];
+            for (int i = 0; i < chars.length; i++) {
+                chars[i] = buffer.getChar(start + i * 2);
+            }
+            return new String(chars);
+        }
+
+        if (buffer.hasArray()) {
+            return new String(buffer.array(), buffer.arrayOffset() + start, length, StandardCharsets.UTF_8);
+        }
+        if (stringBytes.length < length) {
+            stringBytes = new byte[Math.max(stringBytes.length * 2, length)];
+        }
+        buffer.get(start, stringBytes, 0, length);
+        return new String(stringBytes, 0, length, StandardCharsets.UTF_8);
+    }
+
+    private int readByte() throws IOException {
+        if (pos >= limit) {
+            throw malformed("unexpected end of data");
+        }
+        return buffer.get(pos++) & 0xff;
+    }
+
+    private int readVarInt() throws IOException {
+        long value = readVarLong();
+        if ((value & ~0xffffffffL) != 0) {
+            throw malformed("varint out of bounds");
+        }
+        return (int) value;
+    }
+
+    /**
+     * Reads the number of elements that follow, each of which takes up at least one byte.
+     */
+    private int readCount() throws IOException {
+        int count = readVarInt();
+        if (count < 0 || count > limit - pos) {
+            throw malformed("count out of bounds");
+        }
+        return count;
+    }
+
+    private long readVarLong() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = readByte();
+            value |= (long) (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw malformed("varint too long");
+    }
+
+    /**
+     * Skips over the given number of bytes, and returns the position of the first of them.
+     */
+    private int advance(int length) throws IOException {
+        if (length < 0 || length > limit - pos) {
+            throw malformed("unexpected end of data");
+        }
+        int start = pos;
+        pos += length;
+        return start;
+    }
+
+    private <T> T readEnum(T[] values, int ordinal) throws IOException {
+        if (ordinal < 0 || ordinal >= values.length) {
+            throw malformed("unknown constant " + ordinal);
+        }
+        return values[ordinal];
+    }
+
+    private IOException malformed(String message) {
+        return new IOException("Malformed binary unpick data at offset " + pos + ": " + message);
+    }
+}
@@ -0,0 +1,361 @@
+package org.vineflower.unpick.parser;
+
+import static org.vineflower.unpick.parser.UnpickBinaryFormat.FORMAT_VERSION;
+import static org.vineflower.unpick.parser.UnpickBinaryFormat.GROUP_DOCS;
+import static org.vineflower.unpick.parser.UnpickBinaryFormat.GROUP_FLAGS;
+import static org.vineflower.unpick.parser.UnpickBinaryFormat.GROUP_STRICT;
+import static org.vineflower.unpick.parser.UnpickBinaryFormat.ITEM_GROUP_DEFINITION;
+import static org.vineflower.unpick.parser.UnpickBinaryFormat.ITEM_TARGET_ANNOTATION;
+import static org.vineflower.unpick.parser.UnpickBinaryFormat.ITEM_TARGET_FIELD;
+import static org.vineflower.unpick.parser.UnpickBinaryFormat.ITEM_TARGET_METHOD;
+import static org.vineflower.unpick.parser.UnpickBinaryFormat.MAGIC;
+import static org.vineflower.unpick.parser.UnpickBinaryFormat.OP_BINARY;
+import static org.vineflower.unpick.parser.UnpickBinaryFormat.OP_BIT_NOT;
+import static org.vineflower.unpick.parser.UnpickBinaryFormat.OP_CAST;
+import static org.vineflower.unpick.parser.UnpickBinaryFormat.OP_CHARACTER;
+import static org.vineflower.unpick.parser.UnpickBinaryFormat.OP_DOUBLE;
+import static org.vineflower.unpick.parser.UnpickBinaryFormat.OP_END;
+import static org.vineflower.unpick.parser.UnpickBinaryFormat.OP_FLOAT;
+import static org.vineflower.unpick.parser.UnpickBinaryFormat.OP_INSTANCE_FIELD;
+import static org.vineflower.unpick.parser.UnpickBinaryFormat.OP_INTEGER;
+import static org.vineflower.unpick.parser.UnpickBinaryFormat.OP_LONG;
+import static org.vineflower.unpick.parser.UnpickBinaryFormat.OP_NEGATE;
+import static org.vineflower.unpick.parser.UnpickBinaryFormat.OP_PAREN;
+import static org.vineflower.unpick.parser.UnpickBinaryFormat.OP_STATIC_FIELD;
+import static org.vineflower.unpick.parser.UnpickBinaryFormat.OP_STRING;
+import static org.vineflower.unpick.parser.UnpickBinaryFormat.SCOPE_CLASS;
+import static org.vineflower.unpick.parser.UnpickBinaryFormat.SCOPE_METHOD;
+import static org.vineflower.unpick.parser.UnpickBinaryFormat.SCOPE_PACKAGE;
+import static org.vineflower.unpick.parser.UnpickBinaryFormat.STRING_NEW;
+import static org.vineflower.unpick.parser.UnpickBinaryFormat.STRING_NULL;
+import static org.vineflower.unpick.parser.UnpickBinaryFormat.STRING_TABLE_OFFSET;
+import static org.vineflower.unpick.parser.UnpickBinaryFormat.radixIndex;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jetbrains.annotations.Nullable;
+
+import org.vineflower.unpick.parser.tree.GroupDefinition;
+import org.vineflower.unpick.parser.tree.GroupScope;
+import org.vineflower.unpick.parser.tree.Literal;
+import org.vineflower.unpick.parser.tree.TargetAnnotation;
+import org.vineflower.unpick.parser.tree.TargetField;
+import org.vineflower.unpick.parser.tree.TargetMethod;
+import org.vineflower.unpick.parser.tree.UnpickItem;
+import org.vineflower.unpick.parser.tree.UnpickV3Visitor;
+import org.vineflower.unpick.parser.tree.expr.BinaryExpression;
+import org.vineflower.unpick.parser.tree.expr.CastExpression;
+import org.vineflower.unpick.parser.tree.expr.Expression;
+import org.vineflower.unpick.parser.tree.expr.ExpressionVisitor;
+import org.vineflower.unpick.parser.tree.expr.FieldExpression;
+import org.vineflower.unpick.parser.tree.expr.LiteralExpression;
+import org.vineflower.unpick.parser.tree.expr.ParenExpression;
+import org.vineflower.unpick.parser.tree.expr.UnaryExpression;
+
+/**
+ * A visitor that generates the binary unpick format, which can be read back with {@link UnpickBinaryReader} much
+ * faster than the text format can be parsed. Names and descriptors are deduplicated, so the output is usually also
+ * considerably smaller than the equivalent text.
+ */
+public final class UnpickBinaryWriter extends UnpickV3Visitor {
+    private final Map<String, Integer> strings = new HashMap<>();
+    private final ExpressionWriter expressionWriter = new ExpressionWriter();
+    private int version = 3;
+    private byte[] output;
+    private int size;
+
+    @Override
+    public void visitHeader(int version) {
+        if (output == null) {
+            this.version = version;
+            writeHeader();
+        }
+    }
+
+    @Override
+    public void visitGroupDefinition(GroupDefinition groupDefinition) {
+        ensureHeaderWritten();
+
+        writeByte(ITEM_GROUP_DEFINITION);
+        int flags = 0;
+        if (groupDefinition.flags()) {
+            flags |= GROUP_FLAGS;
+        }
+        if (groupDefinition.strict()) {
+            flags |= GROUP_STRICT;
+        }
+        if (groupDefinition.docs() != null) {
+            flags |= GROUP_DOCS;
+        }
+        writeByte(flags);
+        writeByte(groupDefinition.dataType().ordinal());
+        writeStringRef(groupDefinition.name());
+        writeByte(groupDefinition.format() == null ? 0 : groupDefinition.format().ordinal() + 1);
+        if (groupDefinition.docs() != null) {
+            writeString(groupDefinition.docs());
+        }
+
+        writeVarInt(groupDefinition.scopes().size());
+        for (GroupScope scope : groupDefinition.scopes()) {
+            switch (scope) {
+                case GroupScope.Package(String packageName) -> {
+                    writeByte(SCOPE_PACKAGE);
+                    writeStringRef(packageName);
+                }
+                case GroupScope.Class(String className) -> {
+                    writeByte(SCOPE_CLASS);
+                    writeStringRef(className);
+                }
+                case GroupScope.Method(String className, String methodName, String methodDesc) -> {
+                    writeByte(SCOPE_METHOD);
+                    writeStringRef(className);
+                    writeStringRef(methodName);
+                    writeStringRef(methodDesc);
+                }
+            }
+        }
+
+        writeVarInt(groupDefinition.constants().size());
+        for (Expression constant : groupDefinition.constants()) {
+            constant.accept(expressionWriter);
+            writeByte(OP_END);
+        }
+    }
+
+    @Override
+    public void visitTargetField(TargetField targetField) {
+        ensureHeaderWritten();
+
+        writeByte(ITEM_TARGET_FIELD);
+        writeStringRef(targetField.className());
+        writeStringRef(targetField.fieldName());
+        writeStringRef(targetField.fieldDesc());
+        writeStringRef(targetField.groupName());
+    }
+
+    @Override
+    public void visitTargetMethod(TargetMethod targetMethod) {
+        ensureHeaderWritten();
+
+        writeByte(ITEM_TARGET_METHOD);
+        writeStringRef(targetMethod.className());
+        writeStringRef(targetMethod.methodName());
+        writeStringRef(targetMethod.methodDesc());
+
+        List<Map.Entry<Integer, String>> paramGroups = new ArrayList<>(targetMethod.paramGroups().entrySet());
+        paramGroups.sort(Map.Entry.comparingByKey());
+        writeVarInt(paramGroups.size());
+        for (Map.Entry<Integer, String> paramGroup : paramGroups) {
+            writeVarInt(paramGroup.getKey());
+            writeStringRef(paramGroup.getValue());
+        }
+
+        writeStringRef(targetMethod.returnGroup());
+    }
+
+    @Override
+    public void visitTargetAnnotation(TargetAnnotation targetAnnotation) {
+        ensureHeaderWritten();
+
+        if (version < 4) {
+            throw new IllegalStateException("Target annotations are not supported in unpick format version " + version);
+        }
+
+        writeByte(ITEM_TARGET_ANNOTATION);
+        writeStringRef(targetAnnotation.annotationName());
+        writeStringRef(targetAnnotation.groupName());
+    }
+
+    private void ensureHeaderWritten() {
+        if (output == null) {
+            writeHeader();
+        }
+    }
+
+    private void writeHeader() {
+        output = new byte[256];
+        writeFixedInt(MAGIC);
+        writeByte(FORMAT_VERSION);
+        writeVarInt(version);
+    }
+
+    /**
+     * Writes the given item so that it doesn't refer to any strings written before it, and can therefore be read on its
+     * own with {@link UnpickBinaryReader#readStandaloneItem}. Returns the offset of the item in the output.
+     */
+    int writeStandaloneItem(UnpickItem item) {
+        ensureHeaderWritten();
+        strings.clear();
+        int start = size;
+        item.accept(this);
+        return start;
+    }
+
+    int size() {
+        ensureHeaderWritten();
+        return size;
+    }
+
+    public byte[] getOutput() {
+        ensureHeaderWritten();
+        return Arrays.copyOf(output, size);
+    }
+
+    private void writeStringRef(@Nullable String string) {
+        if (string == null) {
+            writeByte(STRING_NULL);
+            return;
+        }
+
+        Integer index = strings.putIfAbsent(string, strings.size());
+        if (index == null) {
+            writeByte(STRING_NEW);
+            writeString(string);
+        } else {
+            writeVarInt(index + STRING_TABLE_OFFSET);
+        }
+    }
+
+    private void writeString(String string) {
+        if (isWellFormed(string)) {
+            byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(bytes.length << 1);
+            ensureCapacity(bytes.length);
+            System.arraycopy(bytes, 0, output, size, bytes.length);
+            size += bytes.length;
+        } else {
+            // unpaired surrogates can't be encoded in UTF-8
+            writeVarInt(string.length() << 2 | 1);
+            ensureCapacity(string.length() * 2);
+            for (int i = 0; i < string.length(); i++) {
+                char c = string.charAt(i);
+                output[size++] = (byte) c;
+                output[size++] = (byte) (c >>> 8);
+            }
+        }
+    }
+
+    private static boolean isWellFormed(String string) {
+        for (int i = 0; i < string.length(); i++) {
+            char c = string.charAt(i);
+            if (Character.isHighSurrogate(c) && i + 1 < string.length() && Character.isLowSurrogate(string.charAt(i + 1))) {
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void writeByte(int value) {
+        ensureCapacity(1);
+        output[size++] = (byte) value;
+    }
+
+    private void writeVarInt(int value) {
+        writeVarLong(value & 0xffffffffL);
+    }
+
+    private void writeVarLong(long value) {
+        ensureCapacity(10);
+        while ((value & ~0x7fL) != 0) {
+            output[size++] = (byte) (value | 0x80);
+            value >>>= 7;
+        }
+        output[size++] = (byte) value;
+    }
+
+    private void writeFixedInt(int value) {
+        ensureCapacity(4);
+        for (int i = 0; i < 4; i++) {
+            output[size++] = (byte) (value >>> (i * 8));
+        }
+    }
+
+    private void writeFixedLong(long value) {
+        ensureCapacity(8);
+        for (int i = 0; i < 8; i++) {
+            output[size++] = (byte) (value >>> (i * 8));
+        }
+    }
+
+    private void ensureCapacity(int extra) {
+        if (size + extra > output.length) {
+            output = Arrays.copyOf(output, Math.max(output.length * 2, size + extra));
+        }
+    }
+
+    private final class ExpressionWriter extends ExpressionVisitor {
+        @Override
+        public void visitBinaryExpression(BinaryExpression binaryExpression) {
+            binaryExpression.lhs.accept(this);
+            binaryExpression.rhs.accept(this);
+            writeByte(OP_BINARY + binaryExpression.operator.ordinal());
+        }
+
+        @Override
+        public void visitCastExpression(CastExpression castExpression) {
+            castExpression.operand.accept(this);
+            writeByte(OP_CAST);
+            writeByte(castExpression.castType.ordinal());
+        }
+
+        @Override
+        public void visitFieldExpression(FieldExpression fieldExpression) {
+            writeByte(fieldExpression.isStatic ? OP_STATIC_FIELD : OP_INSTANCE_FIELD);
+            writeStringRef(fieldExpression.className);
+            writeStringRef(fieldExpression.fieldName);
+            writeByte(fieldExpression.fieldType == null ? 0 : fieldExpression.fieldType.ordinal() + 1);
+        }
+
+        @Override
+        public void visitLiteralExpression(LiteralExpression literalExpression) {
+            switch (literalExpression.literal) {
+                case Literal.Integer(int value, int radix) -> {
+                    writeByte(OP_INTEGER + radixIndex(radix));
+                    writeVarInt(value);
+                }
+                case Literal.Long(long value, int radix) -> {
+                    writeByte(OP_LONG + radixIndex(radix));
+                    writeVarLong(value);
+                }
+                case Literal.Float(float value) -> {
+                    writeByte(OP_FLOAT);
+                    writeFixedInt(Float.floatToRawIntBits(value));
+                }
+                case Literal.Double(double value) -> {
+                    writeByte(OP_DOUBLE);
+                    writeFixedLong(Double.doubleToRawLongBits(value));
+                }
+                case Literal.Character(char value) -> {
+                    writeByte(OP_CHARACTER);
+                    writeVarInt(value);
+                }
+                case Literal.String(String value) -> {
+                    writeByte(OP_STRING);
+                    writeString(value);
+                }
+            }
+        }
+
+        @Override
+        public void visitParenExpression(ParenExpression parenExpression) {
+            parenExpression.expression.accept(this);
+            writeByte(OP_PAREN);
+        }
+
+        @Override
+        public void visitUnaryExpression(UnaryExpression unaryExpression) {
+            unaryExpression.operand.accept(this);
+            writeByte(switch (unaryExpression.operator) {
+                case NEGATE -> OP_NEGATE;
+                case BIT_NOT -> OP_BIT_NOT;
+            });
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package org.vineflower.unpick.parser;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jetbrains.annotations.Nullable;
+
+import org.vineflower.unpick.parser.tree.GroupDefinition;
+import org.vineflower.unpick.parser.tree.TargetAnnotation;
+import org.vineflower.unpick.parser.tree.TargetField;
+import org.vineflower.unpick.parser.tree.TargetMethod;
+import org.vineflower.unpick.parser.tree.UnpickItem;
+
+/**
+ * Looks up items in an index file written by {@link UnpickIndexWriter}. Lookups binary search the sorted keys in place,
+ * and only the items that are found are decoded, so opening an index costs the same regardless of its size.
+ *
+ * <p>Instances are safe to use from multiple threads. Lookups in a malformed index may fail with an unchecked
+ * exception, such as an {@link UncheckedIOException} if the item that was found can't be decoded.
+ */
+public final class UnpickIndex {
+    private final ByteBuffer buffer;
+    private final int version;
+    private final int[] sectionCounts = new int[UnpickIndexWriter.SECTION_COUNT];
+    private final int[] sectionTables = new int[UnpickIndexWriter.SECTION_COUNT];
+
+    /**
+     * Reads the index between the position and the limit of the given buffer. The buffer's position is not changed.
+     */
+    public UnpickIndex(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+        int limit = this.buffer.limit();
+        if (limit < UnpickIndexWriter.HEADER_SIZE || this.buffer.getInt(0) != UnpickIndexWriter.MAGIC) {
+            throw new IOException("Not an unpick index file");
+        }
+        int formatVersion = this.buffer.getInt(4);
+        if (formatVersion != UnpickIndexWriter.FORMAT_VERSION) {
+            throw new IOException("Unsupported unpick index format version " + formatVersion);
+        }
+        this.version = this.buffer.getInt(8);
+
+        for (int section = 0; section < UnpickIndexWriter.SECTION_COUNT; section++) {
+            int count = this.buffer.getInt(12 + section * 8);
+            int table = this.buffer.getInt(16 + section * 8);
+            if (count < 0 || table < UnpickIndexWriter.HEADER_SIZE || table > limit || count > (limit - table) / 4) {
+                throw new IOException("Malformed unpick index: section " + section + " out of bounds");
+            }
+            sectionCounts[section] = count;
+            sectionTables[section] = table;
+        }
+    }
+
+    /**
+     * Reads the index file at the given path by memory-mapping it.
+     */
+    public UnpickIndex(Path path) throws IOException {
+        this(map(path));
+    }
+
+    private static ByteBuffer map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    /**
+     * Returns the unpick format version of the file the index was built from.
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Returns the target method with the given class name, method name and descriptor, or {@code null} if there is
+     * none. If there are several, the first one in the original file is returned.
+     */
+    @Nullable
+    public TargetMethod getTargetMethod(String className, String methodName, String methodDesc) {
+        byte[] key = UnpickIndexWriter.memberKey(className, methodName, methodDesc);
+        return (TargetMethod) find(UnpickIndexWriter.SECTION_TARGET_METHODS, key);
+    }
+
+    /**
+     * Returns the target field with the given class name, field name and descriptor, or {@code null} if there is none.
+     * If there are several, the first one in the original file is returned.
+     */
+    @Nullable
+    public TargetField getTargetField(String className, String fieldName, String fieldDesc) {
+        byte[] key = UnpickIndexWriter.memberKey(className, fieldName, fieldDesc);
+        return (TargetField) find(UnpickIndexWriter.SECTION_TARGET_FIELDS, key);
+    }
+
+    /**
+     * Returns the target annotation for the given annotation class, or {@code null} if there is none. If there are
+     * several, the first one in the original file is returned.
+     */
+    @Nullable
+    public TargetAnnotation getTargetAnnotation(String annotationName) {
+        byte[] key = annotationName.getBytes(StandardCharsets.UTF_8);
+        return (TargetAnnotation) find(UnpickIndexWriter.SECTION_TARGET_ANNOTATIONS, key);
+    }
+
+    /**
+     * Returns all definitions of the group with the given name, or of the default group if the name is {@code null},
+     * in the order they appear in the original file.
+     */
+    public List<GroupDefinition> getGroupDefinitions(@Nullable String groupName) {
+        byte[] key = UnpickIndexWriter.groupKey(groupName);
+        int section = UnpickIndexWriter.SECTION_GROUP_DEFINITIONS;
+        List<GroupDefinition> definitions = new ArrayList<>(1);
+        for (int index = lowerBound(section, key); index < sectionCounts[section]; index++) {
+            int entry = entryOffset(section, index);
+            if (compareKey(entry, key) != 0) {
+                break;
+            }
+            definitions.add((GroupDefinition) readItem(entry));
+        }
+        return definitions;
+    }
+
+    @Nullable
+    private UnpickItem find(int section, byte[] key) {
+        int index = lowerBound(section, key);
+        if (index == sectionCounts[section]) {
+            return null;
+        }
+        int entry = entryOffset(section, index);
+        return compareKey(entry, key) == 0 ? readItem(entry) : null;
+    }
+
+    /**
+     * Returns the index of the first entry in the section whose key is not less than the given key.
+     */
+    private int lowerBound(int section, byte[] key) {
+        int low = 0;
+        int high = sectionCounts[section];
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compareKey(entryOffset(section, mid), key) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private int entryOffset(int section, int index) {
+        return buffer.getInt(sectionTables[section] + index * 4);
+    }
+
+    /**
+     * Compares the key of the entry at the given offset with the given key, as unsigned bytes.
+     */
+    private int compareKey(int entry, byte[] key) {
+        int length = keyLength(entry);
+        int pos = entry + UnpickIndexWriter.varIntSize(length);
+        int common = Math.min(length, key.length);
+        for (int i = 0; i < common; i++) {
+            int cmp = Integer.compare(buffer.get(pos + i) & 0xff, key[i] & 0xff);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return Integer.compare(length, key.length);
+    }
+
+    private int keyLength(int entry) {
+        int length = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = buffer.get(entry++);
+            length |= (b & 0x7f) << shift;
+            if (b >= 0) {
+                return length;
+            }
+        }
+    }
+
+    private UnpickItem readItem(int entry) {
+        int keyLength = keyLength(entry);
+        try {
+            return new UnpickBinaryReader(buffer).readStandaloneItem(entry + UnpickIndexWriter.varIntSize(keyLength) + keyLength);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
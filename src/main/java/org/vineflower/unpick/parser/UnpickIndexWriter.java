@@ -0,0 +1,169 @@
+package org.vineflower.unpick.parser;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.jetbrains.annotations.Nullable;
+
+import org.vineflower.unpick.parser.tree.GroupDefinition;
+import org.vineflower.unpick.parser.tree.TargetAnnotation;
+import org.vineflower.unpick.parser.tree.TargetField;
+import org.vineflower.unpick.parser.tree.TargetMethod;
+import org.vineflower.unpick.parser.tree.UnpickItem;
+import org.vineflower.unpick.parser.tree.UnpickV3Visitor;
+
+/**
+ * A visitor that builds an index file, which can be memory-mapped and queried by {@link UnpickIndex} without reading
+ * the items that aren't asked for.
+ *
+ * <p>The index has a section for each of target methods, target fields, target annotations and group definitions.
+ * Each section is a table of offsets of its entries, sorted by key, where each entry is the UTF-8 key followed by the
+ * item in the binary format of {@link UnpickBinaryWriter}.
+ */
+public final class UnpickIndexWriter extends UnpickV3Visitor {
+    static final int MAGIC = 0x49504e55; // "UNPI" in little-endian order
+    static final int FORMAT_VERSION = 1;
+    static final int SECTION_TARGET_METHODS = 0;
+    static final int SECTION_TARGET_FIELDS = 1;
+    static final int SECTION_TARGET_ANNOTATIONS = 2;
+    static final int SECTION_GROUP_DEFINITIONS = 3;
+    static final int SECTION_COUNT = 4;
+    // magic, format version, unpick version, and a count and table offset for each section
+    static final int HEADER_SIZE = 12 + SECTION_COUNT * 8;
+
+    private final UnpickBinaryWriter encoder = new UnpickBinaryWriter();
+    private final List<List<Entry>> sections = new ArrayList<>(SECTION_COUNT);
+    private int version = 3;
+
+    public UnpickIndexWriter() {
+        for (int i = 0; i < SECTION_COUNT; i++) {
+            sections.add(new ArrayList<>());
+        }
+    }
+
+    @Override
+    public void visitHeader(int version) {
+        this.version = version;
+        encoder.visitHeader(version);
+    }
+
+    @Override
+    public void visitGroupDefinition(GroupDefinition groupDefinition) {
+        add(SECTION_GROUP_DEFINITIONS, groupKey(groupDefinition.name()), groupDefinition);
+    }
+
+    @Override
+    public void visitTargetField(TargetField targetField) {
+        add(SECTION_TARGET_FIELDS, memberKey(targetField.className(), targetField.fieldName(), targetField.fieldDesc()), targetField);
+    }
+
+    @Override
+    public void visitTargetMethod(TargetMethod targetMethod) {
+        add(SECTION_TARGET_METHODS, memberKey(targetMethod.className(), targetMethod.methodName(), targetMethod.methodDesc()), targetMethod);
+    }
+
+    @Override
+    public void visitTargetAnnotation(TargetAnnotation targetAnnotation) {
+        add(SECTION_TARGET_ANNOTATIONS, targetAnnotation.annotationName().getBytes(StandardCharsets.UTF_8), targetAnnotation);
+    }
+
+    private void add(int section, byte[] key, UnpickItem item) {
+        int start = encoder.writeStandaloneItem(item);
+        sections.get(section).add(new Entry(key, start, encoder.size()));
+    }
+
+    static byte[] memberKey(String className, String memberName, String memberDesc) {
+        return (className + ' ' + memberName + ' ' + memberDesc).getBytes(StandardCharsets.UTF_8);
+    }
+
+    static byte[] groupKey(@Nullable String groupName) {
+        // the default group has an empty key, which no named group can have
+        return groupName == null ? new byte[0] : groupName.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the index file. Entries with the same key are kept in the order they were visited in.
+     */
+    public byte[] getOutput() {
+        byte[] items = encoder.getOutput();
+
+        int size = HEADER_SIZE;
+        for (List<Entry> entries : sections) {
+            size += entries.size() * 4;
+            for (Entry entry : entries) {
+                size += varIntSize(entry.key.length) + entry.key.length + entry.end - entry.start;
+            }
+        }
+
+        Output output = new Output(size);
+        output.writeInt(MAGIC);
+        output.writeInt(FORMAT_VERSION);
+        output.writeInt(version);
+        int[] tablePositions = new int[SECTION_COUNT];
+        int tablePos = HEADER_SIZE;
+        for (int section = 0; section < SECTION_COUNT; section++) {
+            List<Entry> entries = sections.get(section);
+            entries.sort((a, b) -> Arrays.compareUnsigned(a.key, b.key));
+            output.writeInt(entries.size());
+            output.writeInt(tablePos);
+            tablePositions[section] = tablePos;
+            tablePos += entries.size() * 4;
+        }
+
+        output.pos = tablePos;
+        for (int section = 0; section < SECTION_COUNT; section++) {
+            int tableEntryPos = tablePositions[section];
+            for (Entry entry : sections.get(section)) {
+                output.writeIntAt(tableEntryPos, output.pos);
+                tableEntryPos += 4;
+                output.writeVarInt(entry.key.length);
+                output.writeBytes(entry.key, 0, entry.key.length);
+                output.writeBytes(items, entry.start, entry.end - entry.start);
+            }
+        }
+
+        return output.bytes;
+    }
+
+    static int varIntSize(int value) {
+        return (38 - Integer.numberOfLeadingZeros(value | 1)) / 7;
+    }
+
+    private record Entry(byte[] key, int start, int end) {
+    }
+
+    private static final class Output {
+        final byte[] bytes;
+        int pos;
+
+        Output(int size) {
+            bytes = new byte[size];
+        }
+
+        void writeInt(int value) {
+            writeIntAt(pos, value);
+            pos += 4;
+        }
+
+        void writeIntAt(int offset, int value) {
+            for (int i = 0; i < 4; i++) {
+                bytes[offset + i] = (byte) (value >>> (i * 8));
+            }
+        }
+
+        void writeVarInt(int value) {
+            while ((value & ~0x7f) != 0) {
+                bytes[pos++] = (byte) (value | 0x80);
+                value >>>= 7;
+            }
+            bytes[pos++] = (byte) value;
+        }
+
+        void writeBytes(byte[] source, int offset, int length) {
+            System.arraycopy(source, offset, bytes, pos, length);
+            pos += length;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package org.vineflower.unpick.parser;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import org.vineflower.unpick.parser.tree.GroupDefinition;
+import org.vineflower.unpick.parser.tree.TargetAnnotation;
+import org.vineflower.unpick.parser.tree.TargetField;
+import org.vineflower.unpick.parser.tree.TargetMethod;
+import org.vineflower.unpick.parser.tree.UnpickItem;
+import org.vineflower.unpick.parser.tree.UnpickV3Visitor;
+
+/**
+ * A visitor that formats the items it visits concurrently on a {@link ForkJoinPool}, and writes their text to an
+ * {@link UnpickV3Writer} in the order they were visited. The output is the same as if the items had been visited by the
+ * writer itself, whichever destination it writes to.
+ *
+ * <p>Items are formatted in batches, and only a bounded number of batches are in flight at a time, so memory use doesn't
+ * grow with the size of the output. Visited items must not be modified afterwards, since they may still be formatted on
+ * another thread. {@link #flush()} must be called at the end, or {@link #getOutput()} if the writer keeps the text in
+ * memory. Errors formatting an item, such as those from the {@link org.vineflower.unpick.parser.tree.expr.LazyExpression
+ * lazy expressions} of a group, are thrown by a later call on the visiting thread. The writer and this visitor must only
+ * be used from one thread.
+ */
+public final class UnpickV3ParallelWriter extends UnpickV3Visitor {
+    private static final int ITEMS_PER_TASK = 64;
+
+    private final UnpickV3Writer writer;
+    private final ForkJoinPool pool;
+    private final int window;
+    private final ArrayDeque<ForkJoinTask<String>> tasks = new ArrayDeque<>();
+    private List<UnpickItem> batch = new ArrayList<>(ITEMS_PER_TASK);
+
+    public UnpickV3ParallelWriter(UnpickV3Writer writer) {
+        this(writer, ForkJoinPool.commonPool());
+    }
+
+    public UnpickV3ParallelWriter(UnpickV3Writer writer, ForkJoinPool pool) {
+        this(writer, pool, pool.getParallelism() * 2);
+    }
+
+    /**
+     * @param window the maximum number of batches that are formatted or waiting to be written at a time
+     */
+    public UnpickV3ParallelWriter(UnpickV3Writer writer, ForkJoinPool pool, int window) {
+        if (window < 1) {
+            throw new IllegalArgumentException("Window must be at least 1: " + window);
+        }
+        this.writer = writer;
+        this.pool = pool;
+        this.window = window;
+    }
+
+    @Override
+    public void visitHeader(int version) {
+        writer.visitHeader(version);
+    }
+
+    @Override
+    public void visitGroupDefinition(GroupDefinition groupDefinition) {
+        add(groupDefinition);
+    }
+
+    @Override
+    public void visitTargetField(TargetField targetField) {
+        add(targetField);
+    }
+
+    @Override
+    public void visitTargetMethod(TargetMethod targetMethod) {
+        add(targetMethod);
+    }
+
+    @Override
+    public void visitTargetAnnotation(TargetAnnotation targetAnnotation) {
+        add(targetAnnotation);
+    }
+
+    private void add(UnpickItem item) {
+        writer.beginItem(item);
+        batch.add(item);
+        if (batch.size() == ITEMS_PER_TASK) {
+            submitBatch();
+        }
+    }
+
+    private void submitBatch() {
+        // write out the batches that are already done, and wait for the oldest one if the window is full
+        while (!tasks.isEmpty() && (tasks.size() >= window || tasks.peekFirst().isDone())) {
+            writeOldest();
+        }
+
+        List<UnpickItem> items = batch;
+        tasks.addLast(pool.submit(() -> writer.formatItems(items)));
+        batch = new ArrayList<>(ITEMS_PER_TASK);
+    }
+
+    private void writeOldest() {
+        ForkJoinTask<String> task = tasks.removeFirst();
+        String text;
+        try {
+            text = task.join();
+        } catch (RuntimeException | Error e) {
+            for (ForkJoinTask<String> pending : tasks) {
+                pending.cancel(false);
+            }
+            tasks.clear();
+            batch.clear();
+            throw e;
+        }
+        writer.appendFormatted(text);
+    }
+
+    private void writeAll() {
+        if (!batch.isEmpty()) {
+            submitBatch();
+        }
+        while (!tasks.isEmpty()) {
+            writeOldest();
+        }
+    }
+
+    /**
+     * Waits for all visited items to be written, then {@linkplain UnpickV3Writer#flush() flushes} the writer.
+     */
+    public void flush() {
+        writeAll();
+        writer.flush();
+    }
+
+    /**
+     * Waits for all visited items to be written, then returns the {@linkplain UnpickV3Writer#getOutput() output} of the
+     * writer.
+     */
+    public String getOutput() {
+        writeAll();
+        return writer.getOutput();
+    }
+}
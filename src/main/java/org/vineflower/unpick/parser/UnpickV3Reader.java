@@ -1,14 +1,28 @@
 package org.vineflower.unpick.parser;
 
 import java.io.IOException;
-import java.io.LineNumberReader;
 import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
-import java.util.EnumMap;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.Stack;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import org.jetbrains.annotations.Nullable;
 
@@ -20,11 +34,13 @@ import org.vineflower.unpick.parser.tree.Literal;
 import org.vineflower.unpick.parser.tree.TargetAnnotation;
 import org.vineflower.unpick.parser.tree.TargetField;
 import org.vineflower.unpick.parser.tree.TargetMethod;
+import org.vineflower.unpick.parser.tree.UnpickItem;
 import org.vineflower.unpick.parser.tree.UnpickV3Visitor;
 import org.vineflower.unpick.parser.tree.expr.BinaryExpression;
 import org.vineflower.unpick.parser.tree.expr.CastExpression;
 import org.vineflower.unpick.parser.tree.expr.Expression;
 import org.vineflower.unpick.parser.tree.expr.FieldExpression;
+import org.vineflower.unpick.parser.tree.expr.LazyExpression;
 import org.vineflower.unpick.parser.tree.expr.LiteralExpression;
 import org.vineflower.unpick.parser.tree.expr.ParenExpression;
 import org.vineflower.unpick.parser.tree.expr.UnaryExpression;
@@ -32,101 +48,661 @@ import org.vineflower.unpick.parser.tree.expr.UnaryExpression;
 /**
  * Performs syntax checking and basic semantic checking on .unpick v3 format text, and allows its structure to be
  * visited by instances of {@link UnpickV3Visitor}.
+ *
+ * <p>Tokens are not materialized as strings. Each token is a span over the buffer holding the line it was lexed from,
+ * and is only copied into a {@link String} when a tree node needs the text (e.g. class, field and group names).
+ * Keywords and operators are compared in place.
+ *
+ * <p>Files can be read through a {@link Reader}, or memory-mapped from a {@link Path} or {@link FileChannel}. Mapped
+ * files are lexed straight from the UTF-8 bytes, copying eight ASCII bytes at a time into the line buffer and only
+ * decoding the (rare) non-ASCII sequences found in string literals and comments.
+ *
+ * <p>Mapped files can also be parsed in parallel with {@link #acceptParallel(UnpickV3Visitor, ForkJoinPool)}. Items
+ * always start at column 0, so the file is split into chunks at the start of item lines (or of the comment and blank
+ * lines directly before them, so that doc comments stay with their group) without needing to lex it first.
+ *
+ * <p>Instead of being pushed to a visitor, items can also be pulled one at a time with {@link #nextItem()}, or through
+ * {@link #iterator()} and {@link #stream()}. Only the current item is held in memory, and the rest of the file is not
+ * read if the caller stops early.
+ *
+ * <p>Readers can be restricted to some {@linkplain #setItemKinds(Set) kinds of items}. Other items are then skipped with
+ * a line scan that only looks for comments and the start of the next item, instead of being lexed and parsed.
+ * Similarly, group constants can be {@linkplain #setLazyExpressions(boolean) kept as source text} until they are first
+ * used.
  */
 public final class UnpickV3Reader implements AutoCloseable {
-    private static final int MAX_PARSE_DEPTH = 64;
-    private static final EnumMap<BinaryExpression.Operator, Integer> PRECEDENCES = new EnumMap<>(BinaryExpression.Operator.class);
+    private static final int MAX_PARSE_DEPTH = 1024;
+    private static final int LOOKAHEAD_SIZE = 4; // must be a power of two greater than the max lookahead distance
+    private static final int LOOKAHEAD_MASK = LOOKAHEAD_SIZE - 1;
+    private static final int INPUT_BUFFER_SIZE = 8192;
+    private static final int MAX_MAPPED_WINDOW = 1 << 30;
+    private static final long REPEATED_BYTES = 0x0101010101010101L;
+    private static final long HIGH_BITS = 0x8080808080808080L;
+    private static final int MIN_CHUNK_SIZE = 1 << 16;
+    private static final int MAX_CHUNK_SIZE = 1 << 20;
+    private static final int CHUNKS_PER_THREAD = 4;
+    private static final BinaryExpression.Operator[] BINARY_OPERATORS = BinaryExpression.Operator.values();
+    private static final DataType[] DATA_TYPES = DataType.values();
+    // indexed by binary operator ordinal
+    private static final int[] PRECEDENCES = new int[BINARY_OPERATORS.length];
     static {
-        PRECEDENCES.put(BinaryExpression.Operator.BIT_OR, 0);
-        PRECEDENCES.put(BinaryExpression.Operator.BIT_XOR, 1);
-        PRECEDENCES.put(BinaryExpression.Operator.BIT_AND, 2);
-        PRECEDENCES.put(BinaryExpression.Operator.BIT_SHIFT_LEFT, 3);
-        PRECEDENCES.put(BinaryExpression.Operator.BIT_SHIFT_RIGHT, 3);
-        PRECEDENCES.put(BinaryExpression.Operator.BIT_SHIFT_RIGHT_UNSIGNED, 3);
-        PRECEDENCES.put(BinaryExpression.Operator.ADD, 4);
-        PRECEDENCES.put(BinaryExpression.Operator.SUBTRACT, 4);
-        PRECEDENCES.put(BinaryExpression.Operator.MULTIPLY, 5);
-        PRECEDENCES.put(BinaryExpression.Operator.DIVIDE, 5);
-        PRECEDENCES.put(BinaryExpression.Operator.MODULO, 5);
-    }
-
-    private final LineNumberReader reader;
+        PRECEDENCES[BinaryExpression.Operator.BIT_OR.ordinal()] = 0;
+        PRECEDENCES[BinaryExpression.Operator.BIT_XOR.ordinal()] = 1;
+        PRECEDENCES[BinaryExpression.Operator.BIT_AND.ordinal()] = 2;
+        PRECEDENCES[BinaryExpression.Operator.BIT_SHIFT_LEFT.ordinal()] = 3;
+        PRECEDENCES[BinaryExpression.Operator.BIT_SHIFT_RIGHT.ordinal()] = 3;
+        PRECEDENCES[BinaryExpression.Operator.BIT_SHIFT_RIGHT_UNSIGNED.ordinal()] = 3;
+        PRECEDENCES[BinaryExpression.Operator.ADD.ordinal()] = 4;
+        PRECEDENCES[BinaryExpression.Operator.SUBTRACT.ordinal()] = 4;
+        PRECEDENCES[BinaryExpression.Operator.MULTIPLY.ordinal()] = 5;
+        PRECEDENCES[BinaryExpression.Operator.DIVIDE.ordinal()] = 5;
+        PRECEDENCES[BinaryExpression.Operator.MODULO.ordinal()] = 5;
+    }
+    // prefix stack entries: open parentheses are the base of the enclosing operator stack frame, which is >= 0
+    private static final int PREFIX_NEGATE = -1;
+    private static final int PREFIX_BIT_NOT = -2;
+    private static final int PREFIX_CAST = -3; // minus the data type ordinal
+    // readers that parse the source text of lazy expressions, reused so that resolving doesn't allocate a whole reader
+    private static final ThreadLocal<UnpickV3Reader> SPAN_READERS = ThreadLocal.withInitial(UnpickV3Reader::new);
+
+    // character input
+    @Nullable
+    private final Reader reader;
+    private final char[] input;
+    private int inputPos;
+    private int inputLimit;
+
+    // memory-mapped input
+    @Nullable
+    private final FileChannel channel;
+    private ByteBuffer bytes;
+    private long bytesOffset;
+    private final long bytesEnd;
+
+    // span input: the source text of a lazy expression, which is a single line
+    @Nullable
+    private String span;
+
+    private boolean skipLf;
+    private boolean readHeader;
+    private boolean readItems;
     private int version;
-    private String line;
-    private int column;
-    private int lastTokenLine;
-    private int lastTokenColumn;
-    private TokenType lastTokenType;
     @Nullable
-    private String lastDocs;
-    private String nextToken;
-    private ParseState nextTokenState;
-    private String nextToken2;
-    private ParseState nextToken2State;
+    private Set<UnpickItem.Kind> itemKinds;
+    private boolean validateSkippedItems;
+    private boolean lazyExpressions;
+    private boolean readDocs = true;
+    private int columnOffset;
+
+    // The current line lives in one buffer while the previous line is kept in the other, so that tokens lexed ahead
+    // across a line break don't clobber the text of tokens that are still in use.
+    private char[] line = new char[128];
+    private char[] spareLine = new char[128];
+    private int lineLength;
+    private int lineNumber;
+    private int column;
+
+    // Ring buffer of lexed tokens. The slot at index "current" is the last consumed token, and the "lexedAhead" slots
+    // after it are tokens that have been lexed by a peek but not yet consumed.
+    private final TokenType[] tokenTypes = new TokenType[LOOKAHEAD_SIZE];
+    private final char[][] tokenBuffers = new char[LOOKAHEAD_SIZE][];
+    private final int[] tokenStarts = new int[LOOKAHEAD_SIZE];
+    private final int[] tokenEnds = new int[LOOKAHEAD_SIZE];
+    private final int[] tokenLines = new int[LOOKAHEAD_SIZE];
+    private final int[] tokenDocsStarts = new int[LOOKAHEAD_SIZE];
+    private final int[] tokenDocsEnds = new int[LOOKAHEAD_SIZE];
+    private int current;
+    private int lexedAhead;
+
+    // expression parser stacks, reused between expressions
+    private int[] prefixStack = new int[8];
+    private int prefixTop;
+    private int[] operatorStack = new int[8];
+    private int operatorTop;
+    private Expression[] operandStack = new Expression[8];
+    private int operandTop;
+
+    // lexer state, which is ahead of the parser state by the lookahead
+    private TokenType lastLexedType;
+    private int tokenStart;
+    // doc comments of the lexed tokens, as spans of this buffer. The pending doc comment is always at its end
+    private final StringBuilder docs = new StringBuilder();
+    private int pendingDocsStart = -1;
 
     public UnpickV3Reader(Reader reader) {
-        this.reader = new LineNumberReader(reader);
+        this.reader = reader;
+        this.input = new char[INPUT_BUFFER_SIZE];
+        this.channel = null;
+        this.bytes = null;
+        this.bytesEnd = 0;
+    }
+
+    /**
+     * Reads the UTF-8 encoded file at the given path by memory-mapping it.
+     */
+    public UnpickV3Reader(Path path) throws IOException {
+        this(FileChannel.open(path, StandardOpenOption.READ));
+    }
+
+    /**
+     * Reads the UTF-8 encoded contents of the given channel, from its current position to its end, by memory-mapping
+     * it. The channel is closed when this reader is closed.
+     */
+    public UnpickV3Reader(FileChannel channel) throws IOException {
+        this.reader = null;
+        this.input = null;
+        this.channel = channel;
+        this.bytes = ByteBuffer.allocate(0);
+        this.bytesOffset = channel.position();
+        this.bytesEnd = channel.size();
+    }
+
+    /**
+     * Creates a reader for the source text of lazy expressions, see {@link #parseLazyExpression(String, int, int)}.
+     */
+    private UnpickV3Reader() {
+        this.reader = null;
+        this.input = null;
+        this.channel = null;
+        this.bytes = null;
+        this.bytesEnd = 0;
+        this.readHeader = true;
+        // a doc comment at the end of the source text belongs to the next item, which has already been read
+        this.readDocs = false;
+    }
+
+    /**
+     * Reads the chunk of the given channel between {@code start} and {@code end}, which starts at the beginning of the
+     * given line, as a continuation of a file with the given version.
+     */
+    private UnpickV3Reader(FileChannel channel, long start, long end, int firstLine, int version) {
+        this.reader = null;
+        this.input = null;
+        this.channel = channel;
+        this.bytes = ByteBuffer.allocate(0);
+        this.bytesOffset = start;
+        this.bytesEnd = end;
+        this.lineNumber = firstLine - 1;
+        this.readHeader = true;
+        this.version = version;
+        this.lastLexedType = TokenType.NEWLINE;
     }
 
     public void accept(UnpickV3Visitor visitor) throws IOException {
-        line = reader.readLine();
-        version = switch (line) {
-            case "unpick v3" -> 3;
-            case "unpick v4" -> 4;
-            case null, default -> throw parseError("Missing version marker", 1, 0);
+        visitor.visitHeader(getVersion());
+
+        UnpickItem item;
+        while ((item = nextItem()) != null) {
+            item.accept(visitor);
+        }
+    }
+
+    /**
+     * Returns the format version declared in the header, reading the header if it hasn't been read yet.
+     */
+    public int getVersion() throws IOException {
+        if (!readHeader) {
+            readHeader();
+        }
+        return version;
+    }
+
+    /**
+     * Restricts the items returned and visited to the given kinds, or removes the restriction if {@code kinds} is
+     * {@code null}. Items of other kinds are skipped without checking their syntax, unless
+     * {@link #setValidateSkippedItems(boolean)} is enabled. {@link UnpickV3Visitor#getVisitedKinds()} can be used to
+     * only read what a visitor needs.
+     */
+    public void setItemKinds(@Nullable Set<UnpickItem.Kind> kinds) {
+        this.itemKinds = kinds;
+    }
+
+    /**
+     * Sets whether items skipped because of {@link #setItemKinds(Set)} are still fully parsed to check their syntax.
+     * Disabled by default.
+     */
+    public void setValidateSkippedItems(boolean validateSkippedItems) {
+        this.validateSkippedItems = validateSkippedItems;
+    }
+
+    /**
+     * Sets whether group constants are returned as {@link LazyExpression}s, which are only parsed when first used.
+     * Syntax errors in constants are then reported when they are resolved rather than when the file is read, but still
+     * with their line and column in the file. Disabled by default.
+     */
+    public void setLazyExpressions(boolean lazyExpressions) {
+        this.lazyExpressions = lazyExpressions;
+    }
+
+    /**
+     * Sets whether doc comments are read. If disabled, {@link GroupDefinition#docs()} is always {@code null}. Enabled
+     * by default.
+     */
+    public void setReadDocs(boolean readDocs) {
+        this.readDocs = readDocs;
+    }
+
+    /**
+     * Parses and returns the next item, or returns {@code null} at the end of the file.
+     */
+    @Nullable
+    public UnpickItem nextItem() throws IOException {
+        if (!readHeader) {
+            readHeader();
+        }
+        readItems = true;
+        while (nextToken() != TokenType.EOF) {
+            if (itemKinds != null && !validateSkippedItems && canSkipItem()) {
+                UnpickItem.Kind kind = itemKind();
+                if (kind != null && !itemKinds.contains(kind)) {
+                    skipItem();
+                    continue;
+                }
+            }
+
+            UnpickItem item = parseUnpickItem();
+            if (itemKinds == null || itemKinds.contains(item.kind())) {
+                return item;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns an iterator over the remaining items, which are parsed as the iterator advances. Exceptions thrown while
+     * reading are wrapped in an {@link UncheckedIOException}.
+     */
+    public Iterator<UnpickItem> iterator() {
+        return new Iterator<>() {
+            @Nullable
+            private UnpickItem next;
+
+            @Override
+            public boolean hasNext() {
+                if (next == null) {
+                    try {
+                        next = nextItem();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+                return next != null;
+            }
+
+            @Override
+            public UnpickItem next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                UnpickItem item = next;
+                next = null;
+                return item;
+            }
         };
-        column = line.length();
+    }
+
+    /**
+     * Returns a spliterator over the remaining items. See {@link #iterator()}.
+     */
+    public Spliterator<UnpickItem> spliterator() {
+        return Spliterators.spliteratorUnknownSize(iterator(), Spliterator.ORDERED | Spliterator.NONNULL);
+    }
+
+    /**
+     * Returns a sequential stream of the remaining items. See {@link #iterator()}.
+     */
+    public Stream<UnpickItem> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    /**
+     * Parses chunks of the file concurrently on the given pool, and visits the items in the same order as
+     * {@link #accept(UnpickV3Visitor)} would, on the calling thread. If there is a syntax error, the items before it are
+     * visited before it is thrown, and its line number is relative to the start of the file. Only memory-mapped input
+     * can be split; input from a {@link Reader} is parsed sequentially.
+     *
+     * @throws IllegalStateException if items have already been read with {@link #nextItem()}, since the tokens lexed
+     * ahead by it can't be handed over to the chunks
+     */
+    public void acceptParallel(UnpickV3Visitor visitor, ForkJoinPool pool) throws IOException {
+        if (readItems) {
+            throw new IllegalStateException("Items have already been read from this reader");
+        }
+        if (channel == null) {
+            accept(visitor);
+            return;
+        }
+
+        visitor.visitHeader(getVersion());
+
+        // the rest of the header line terminator
+        if (skipLf && mapNextWindow(1) && bytes.get(bytes.position()) == '\n') {
+            bytes.position(bytes.position() + 1);
+        }
+        skipLf = false;
+
+        long start = bytesOffset + bytes.position();
+        long targetSize = Math.clamp((bytesEnd - start) / ((long) pool.getParallelism() * CHUNKS_PER_THREAD), MIN_CHUNK_SIZE, MAX_CHUNK_SIZE);
+        List<Chunk> chunks = findChunks(start, lineNumber + 1, targetSize);
+
+        // keep a bounded number of chunks in flight, so that memory use doesn't grow with the file size
+        int window = pool.getParallelism() * 2;
+        List<ForkJoinTask<ParsedChunk>> tasks = new ArrayList<>(chunks.size());
+        for (int i = 0; i < chunks.size(); i++) {
+            if (i < window) {
+                tasks.add(pool.submit(parseChunkTask(chunks.get(i))));
+            } else {
+                tasks.add(null);
+            }
+        }
+
+        for (int i = 0; i < tasks.size(); i++) {
+            ParsedChunk parsed = tasks.get(i).join();
+            tasks.set(i, null);
+            if (i + window < tasks.size()) {
+                tasks.set(i + window, pool.submit(parseChunkTask(chunks.get(i + window))));
+            }
+
+            for (UnpickItem item : parsed.items) {
+                item.accept(visitor);
+            }
+            if (parsed.error != null) {
+                for (ForkJoinTask<ParsedChunk> task : tasks) {
+                    if (task != null) {
+                        task.cancel(false);
+                    }
+                }
+                throw parsed.error;
+            }
+        }
+    }
+
+    private void readHeader() throws IOException {
+        readHeader = true;
+        if (!readLine()) {
+            throw parseError("Missing version marker", 1, 0);
+        }
+        if (lineEquals("unpick v3")) {
+            version = 3;
+        } else if (lineEquals("unpick v4")) {
+            version = 4;
+        } else {
+            throw parseError("Missing version marker", 1, 0);
+        }
+        column = lineLength;
 
         nextToken(); // newline
+    }
 
-        visitor.visitHeader(version);
+    private Callable<ParsedChunk> parseChunkTask(Chunk chunk) {
+        return () -> {
+            UnpickV3Reader chunkReader = new UnpickV3Reader(channel, chunk.start, chunk.end, chunk.firstLine, version);
+            chunkReader.itemKinds = itemKinds;
+            chunkReader.validateSkippedItems = validateSkippedItems;
+            chunkReader.lazyExpressions = lazyExpressions;
+            chunkReader.readDocs = readDocs;
+            List<UnpickItem> items = new ArrayList<>();
+            try {
+                UnpickItem item;
+                while ((item = chunkReader.nextItem()) != null) {
+                    items.add(item);
+                }
+            } catch (IOException e) {
+                return new ParsedChunk(items, e);
+            }
+            return new ParsedChunk(items, null);
+        };
+    }
 
-        while (true) {
-            String token = nextToken();
-            if (lastTokenType == TokenType.EOF) {
-                break;
+    /**
+     * Splits the rest of the file into chunks of roughly the target size. Chunks start at item lines, i.e. lines with a
+     * non-whitespace character at column 0, or at the first of the comment and blank lines directly before them. No
+     * chunk starts right after a line with tokens and a comment, since a trailing doc comment belongs to the next item.
+     */
+    private List<Chunk> findChunks(long start, int startLine, long targetSize) throws IOException {
+        List<Chunk> chunks = new ArrayList<>();
+        long chunkStart = start;
+        int chunkLine = startLine;
+
+        // the comment and blank lines before the current line
+        long runStart = -1;
+        int runLine = 0;
+        // set after lines we can't classify without decoding, and after lines with tokens and a comment, which may be a
+        // doc comment for the next item, until the next line with tokens
+        boolean blocked = false;
+
+        ByteBuffer window = ByteBuffer.allocate(0);
+        long windowOffset = start;
+
+        long pos = start;
+        int currentLine = startLine;
+        while (pos < bytesEnd) {
+            if (pos - windowOffset + 4096 > window.limit() && windowOffset + window.limit() < bytesEnd) {
+                window = mapWindow(pos);
+                windowOffset = pos;
+            }
+
+            // classify the line
+            boolean tokenLine = false;
+            boolean hasComment = false;
+            int i = (int) (pos - windowOffset);
+            int limit = window.limit();
+            while (i < limit && isWhitespaceByte(window.get(i))) {
+                i++;
+            }
+            byte first;
+            if (i < limit) {
+                first = window.get(i);
+            } else {
+                first = windowOffset + limit >= bytesEnd ? (byte) '\n' : -1;
+            }
+            if (first == '\n' || first == '\r' || first == '#') {
+                if (runStart < 0) {
+                    runStart = pos;
+                    runLine = currentLine;
+                }
+            } else if (first < 0) {
+                runStart = -1;
+                blocked = true;
+            } else {
+                tokenLine = true;
+                if (i == pos - windowOffset && !blocked && pos - chunkStart >= targetSize) {
+                    long boundary = runStart >= 0 ? runStart : pos;
+                    if (boundary > chunkStart) {
+                        chunks.add(new Chunk(chunkStart, boundary, chunkLine));
+                        chunkStart = boundary;
+                        chunkLine = runStart >= 0 ? runLine : currentLine;
+                    }
+                }
+                runStart = -1;
+                blocked = false;
+            }
+
+            // find the end of the line
+            while (true) {
+                while (i + 8 <= limit) {
+                    long word = window.getLong(i);
+                    long terminators = hasByte(word, '\n') | hasByte(word, '\r');
+                    // this may see a '#' of the next line, which only makes the split more conservative
+                    hasComment |= hasByte(word, '#') != 0;
+                    if (terminators != 0) {
+                        i += Long.numberOfTrailingZeros(terminators) >>> 3;
+                        break;
+                    }
+                    i += 8;
+                }
+                while (i < limit && window.get(i) != '\n' && window.get(i) != '\r') {
+                    hasComment |= window.get(i) == '#';
+                    i++;
+                }
+                if (i < limit || windowOffset + limit >= bytesEnd) {
+                    break;
+                }
+                // the line continues past the window
+                long linePos = windowOffset + i;
+                window = mapWindow(linePos);
+                windowOffset = linePos;
+                i = 0;
+                limit = window.limit();
+            }
+
+            if (i < limit) {
+                byte terminator = window.get(i++);
+                if (terminator == '\r') {
+                    if (i == limit && windowOffset + limit < bytesEnd) {
+                        long linePos = windowOffset + i;
+                        window = mapWindow(linePos);
+                        windowOffset = linePos;
+                        i = 0;
+                        limit = window.limit();
+                    }
+                    if (i < limit && window.get(i) == '\n') {
+                        i++;
+                    }
+                }
+            }
+            pos = windowOffset + i;
+            currentLine++;
+            if (tokenLine && hasComment) {
+                blocked = true;
             }
-            parseUnpickItem(visitor, token);
         }
+
+        chunks.add(new Chunk(chunkStart, bytesEnd, chunkLine));
+        return chunks;
+    }
+
+    /**
+     * Returns whether the byte is an ASCII whitespace character other than a line terminator, according to
+     * {@link Character#isWhitespace(char)}.
+     */
+    private static boolean isWhitespaceByte(byte b) {
+        return b == ' ' || b == '\t' || b == 0x0b || b == '\f' || (b >= 0x1c && b <= 0x1f);
     }
 
-    private void parseUnpickItem(UnpickV3Visitor visitor, String token) throws IOException {
-        if (lastTokenType != TokenType.IDENTIFIER) {
-            throw expectedTokenError("unpick item", token);
+    private UnpickItem parseUnpickItem() throws IOException {
+        if (tokenTypes[current] != TokenType.IDENTIFIER) {
+            throw expectedTokenError("unpick item");
+        }
+
+        if (tokenEquals("target_field")) {
+            return parseTargetField();
+        } else if (tokenEquals("target_method")) {
+            return parseTargetMethod();
+        } else if (tokenEquals("target_annotation")) {
+            return parseTargetAnnotation();
+        } else if (tokenEquals("group")) {
+            return parseGroupDefinition();
+        } else {
+            throw expectedTokenError("unpick item");
         }
+    }
+
+    /**
+     * Returns whether the current token starts an item that can be skipped with a line scan, i.e. it is at column 0 and
+     * nothing after it has been lexed yet.
+     */
+    private boolean canSkipItem() {
+        return tokenTypes[current] == TokenType.IDENTIFIER && tokenStarts[current] == 0 && lexedAhead == 0;
+    }
 
-        switch (token) {
-            case "target_field" -> visitor.visitTargetField(parseTargetField());
-            case "target_method" -> visitor.visitTargetMethod(parseTargetMethod());
-            case "target_annotation" -> visitor.visitTargetAnnotation(parseTargetAnnotation());
-            case "group" -> visitor.visitGroupDefinition(parseGroupDefinition());
-            default -> throw expectedTokenError("unpick item", token);
+    @Nullable
+    private UnpickItem.Kind itemKind() {
+        if (tokenEquals("group")) {
+            return UnpickItem.Kind.GROUP_DEFINITION;
+        } else if (tokenEquals("target_field")) {
+            return UnpickItem.Kind.TARGET_FIELD;
+        } else if (tokenEquals("target_method")) {
+            return UnpickItem.Kind.TARGET_METHOD;
+        } else if (tokenEquals("target_annotation")) {
+            return UnpickItem.Kind.TARGET_ANNOTATION;
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * Skips the rest of the current item, up to the next line with a non-whitespace character at column 0. Comments
+     * are still processed so that the next item gets the same doc comment as it would if this item were parsed.
+     */
+    private void skipItem() throws IOException {
+        pendingDocsStart = -1;
+        skipToComment();
+        processCommentIfPresent();
+
+        while (true) {
+            column = 0;
+            if (!readLine()) {
+                break;
+            }
+            while (column < lineLength && Character.isWhitespace(line[column])) {
+                column++;
+            }
+            if (column < lineLength && line[column] != '#') {
+                if (column == 0) {
+                    break;
+                }
+                // a line with tokens resets the doc comment
+                pendingDocsStart = -1;
+                skipToComment();
+            }
+            processCommentIfPresent();
+        }
+
+        lastLexedType = TokenType.NEWLINE;
+    }
+
+    /**
+     * Advances the column to the next comment on the line, or to the end of the line if there is none.
+     */
+    private void skipToComment() {
+        while (column < lineLength) {
+            char c = line[column];
+            if (c == '#') {
+                return;
+            }
+            column++;
+            if (c == '"' || c == '\'') {
+                while (column < lineLength && line[column] != c) {
+                    if (line[column] == '\\') {
+                        column++;
+                    }
+                    column++;
+                }
+                column++;
+            }
         }
+        column = lineLength;
     }
 
     private GroupScope parseGroupScope() throws IOException {
-        String token = nextToken("group scope type", TokenType.IDENTIFIER);
-        return switch (token) {
-            case "package" -> new GroupScope.Package(parseClassName("package name"));
-            case "class" -> new GroupScope.Class(parseClassName());
-            case "method" -> {
-                String className = parseClassName();
-                String methodName = parseMethodName();
-                String methodDesc = nextToken(TokenType.METHOD_DESCRIPTOR);
-                yield new GroupScope.Method(className, methodName, methodDesc);
-            }
-            default -> throw expectedTokenError("group scope type", token);
-        };
+        nextToken("group scope type", TokenType.IDENTIFIER);
+        if (tokenEquals("package")) {
+            return new GroupScope.Package(parseClassName("package name"));
+        } else if (tokenEquals("class")) {
+            return new GroupScope.Class(parseClassName());
+        } else if (tokenEquals("method")) {
+            String className = parseClassName();
+            String methodName = parseMethodName();
+            nextToken(TokenType.METHOD_DESCRIPTOR);
+            return new GroupScope.Method(className, methodName, tokenString());
+        } else {
+            throw expectedTokenError("group scope type");
+        }
     }
 
     private GroupDefinition parseGroupDefinition() throws IOException {
-        String docs = lastDocs;
+        String docs = tokenDocsStarts[current] < 0 ? null : this.docs.substring(tokenDocsStarts[current], tokenDocsEnds[current]);
         DataType dataType = parseDataType();
         if (!isDataTypeValidInGroup(dataType)) {
             throw parseError("Data type not allowed in group: " + dataType);
         }
 
-        String name = peekTokenType() == TokenType.IDENTIFIER ? nextToken() : null;
+        String name = null;
+        if (peekTokenType() == TokenType.IDENTIFIER) {
+            nextToken();
+            name = tokenString();
+        }
 
         List<GroupScope> scopes = new ArrayList<>();
         boolean flags = false;
@@ -137,12 +713,12 @@ public final class UnpickV3Reader implements AutoCloseable {
         boolean finishedAttributes = false;
 
         while (true) {
-            String token = nextToken();
-            if (lastTokenType == TokenType.EOF) {
+            TokenType tokenType = nextToken();
+            if (tokenType == TokenType.EOF) {
                 break;
             }
-            if (lastTokenType != TokenType.NEWLINE) {
-                throw expectedTokenError("'\\n'", token);
+            if (tokenType != TokenType.NEWLINE) {
+                throw expectedTokenError("'\\n'");
             }
 
             if (peekTokenType() != TokenType.INDENT) {
@@ -150,49 +726,47 @@ public final class UnpickV3Reader implements AutoCloseable {
             }
             nextToken();
 
-            if ("@".equals(peekToken())) {
+            if (peekTokenEquals('@')) {
                 nextToken();
                 if (finishedAttributes) {
                     throw parseError("Found attribute after expression");
                 }
-                token = nextToken("attribute name", TokenType.IDENTIFIER);
-                switch (token) {
-                    case "scope" -> scopes.add(parseGroupScope());
-                    case "flags" -> {
-                        if (flags) {
-                            throw parseError("Duplicate flags attribute");
-                        }
-                        if (dataType != DataType.INT && dataType != DataType.LONG) {
-                            throw parseError("The flags attribute is not applicable to this data type");
-                        }
-                        if (name == null) {
-                            throw parseError("The flags attribute is not applicable to the default group");
-                        }
-                        flags = true;
+                nextToken("attribute name", TokenType.IDENTIFIER);
+                if (tokenEquals("scope")) {
+                    scopes.add(parseGroupScope());
+                } else if (tokenEquals("flags")) {
+                    if (flags) {
+                        throw parseError("Duplicate flags attribute");
                     }
-                    case "strict" -> {
-                        if (strict) {
-                            throw parseError("Duplicate strict attribute");
-                        }
-                        strict = true;
+                    if (dataType != DataType.INT && dataType != DataType.LONG) {
+                        throw parseError("The flags attribute is not applicable to this data type");
                     }
-                    case "format" -> {
-                        if (format != null) {
-                            throw parseError("Duplicate format attribute");
-                        }
-                        if (dataType != DataType.INT && dataType != DataType.LONG && dataType != DataType.FLOAT && dataType != DataType.DOUBLE) {
-                            throw parseError("The format attribute is not applicable to this data type");
-                        }
-                        format = parseGroupFormat();
-                        if (format != GroupFormat.DECIMAL && format != GroupFormat.HEX && dataType != DataType.INT && dataType != DataType.LONG) {
-                            throw parseError("This format is not applicable to floating point data types");
-                        }
+                    if (name == null) {
+                        throw parseError("The flags attribute is not applicable to the default group");
+                    }
+                    flags = true;
+                } else if (tokenEquals("strict")) {
+                    if (strict) {
+                        throw parseError("Duplicate strict attribute");
+                    }
+                    strict = true;
+                } else if (tokenEquals("format")) {
+                    if (format != null) {
+                        throw parseError("Duplicate format attribute");
+                    }
+                    if (dataType != DataType.INT && dataType != DataType.LONG && dataType != DataType.FLOAT && dataType != DataType.DOUBLE) {
+                        throw parseError("The format attribute is not applicable to this data type");
+                    }
+                    format = parseGroupFormat();
+                    if (format != GroupFormat.DECIMAL && format != GroupFormat.HEX && dataType != DataType.INT && dataType != DataType.LONG) {
+                        throw parseError("This format is not applicable to floating point data types");
                     }
-                    default -> throw expectedTokenError("attribute name", token);
+                } else {
+                    throw expectedTokenError("attribute name");
                 }
             } else {
                 finishedAttributes = true;
-                constants.add(parseExpression(0));
+                constants.add(lazyExpressions ? parseLazyExpression() : parseExpression());
             }
         }
 
@@ -204,149 +778,233 @@ public final class UnpickV3Reader implements AutoCloseable {
     }
 
     private GroupFormat parseGroupFormat() throws IOException {
-        String token = nextToken("group format", TokenType.IDENTIFIER);
-        return switch (token) {
-            case "decimal" -> GroupFormat.DECIMAL;
-            case "hex" -> GroupFormat.HEX;
-            case "binary" -> GroupFormat.BINARY;
-            case "octal" -> GroupFormat.OCTAL;
-            case "char" -> GroupFormat.CHAR;
-            default -> throw expectedTokenError("group format", token);
-        };
+        nextToken("group format", TokenType.IDENTIFIER);
+        if (tokenEquals("decimal")) {
+            return GroupFormat.DECIMAL;
+        } else if (tokenEquals("hex")) {
+            return GroupFormat.HEX;
+        } else if (tokenEquals("binary")) {
+            return GroupFormat.BINARY;
+        } else if (tokenEquals("octal")) {
+            return GroupFormat.OCTAL;
+        } else if (tokenEquals("char")) {
+            return GroupFormat.CHAR;
+        } else {
+            throw expectedTokenError("group format");
+        }
     }
 
-    private Expression parseExpression(int parseDepth) throws IOException {
-        // Shunting yard algorithm for parsing with operator precedence: https://stackoverflow.com/a/47717/11071180
-        Stack<Expression> operandStack = new Stack<>();
-        Stack<BinaryExpression.Operator> operatorStack = new Stack<>();
+    /**
+     * Captures the source text of the expression starting at the peeked token, and continues lexing from the comment
+     * at the end of the line, if any.
+     */
+    private LazyExpression parseLazyExpression() throws IOException {
+        int slot = peek(1);
+        int start = tokenStarts[slot];
+        LazyExpression expression = new LazyExpression(new String(line, start, lineLength - start), tokenLines[slot], start, UnpickV3Reader::parseLazyExpression);
+
+        lastLexedType = tokenTypes[slot];
+        lexedAhead = 0;
+        column = start;
+        skipToComment();
+
+        return expression;
+    }
 
-        operandStack.push(parseUnaryExpression(parseDepth, false));
+    /**
+     * Parses the source text of a lazy expression with this thread's span reader, which is reset to read the text as
+     * its only line.
+     */
+    private static Expression parseLazyExpression(String source, int line, int column) throws UnpickParseException {
+        UnpickV3Reader reader = SPAN_READERS.get();
+        reader.span = source;
+        reader.lineNumber = line - 1;
+        reader.columnOffset = column;
+        reader.lineLength = 0;
+        reader.column = 0;
+        reader.lexedAhead = 0;
+        reader.lastLexedType = TokenType.NEWLINE;
+        reader.pendingDocsStart = -1;
+        // clear the operands left behind by a syntax error
+        Arrays.fill(reader.operandStack, 0, reader.operandTop, null);
+        try {
+            Expression expression = reader.parseExpression();
+            TokenType tokenType = reader.nextToken();
+            if (tokenType != TokenType.NEWLINE && tokenType != TokenType.EOF) {
+                throw reader.expectedTokenError("'\\n'");
+            }
+            return expression;
+        } catch (UnpickParseException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Parses an expression with the shunting yard algorithm, without recursion. Pending unary operators, casts and open
+     * parentheses are kept on the prefix stack. Each open parenthesis starts a new frame of the operator stack, and
+     * records the base of the enclosing frame so that it can be restored when the parenthesis is closed.
+     */
+    private Expression parseExpression() throws IOException {
+        prefixTop = 0;
+        operatorTop = 0;
+        operandTop = 0;
+        int operatorBase = 0;
 
         while (true) {
-            BinaryExpression.Operator operator = switch (peekToken()) {
-                case "|" -> BinaryExpression.Operator.BIT_OR;
-                case "^" -> BinaryExpression.Operator.BIT_XOR;
-                case "&" -> BinaryExpression.Operator.BIT_AND;
-                case "<<" -> BinaryExpression.Operator.BIT_SHIFT_LEFT;
-                case ">>" -> BinaryExpression.Operator.BIT_SHIFT_RIGHT;
-                case ">>>" -> BinaryExpression.Operator.BIT_SHIFT_RIGHT_UNSIGNED;
-                case "+" -> BinaryExpression.Operator.ADD;
-                case "-" -> BinaryExpression.Operator.SUBTRACT;
-                case "*" -> BinaryExpression.Operator.MULTIPLY;
-                case "/" -> BinaryExpression.Operator.DIVIDE;
-                case "%" -> BinaryExpression.Operator.MODULO;
-                default -> null;
-            };
-            if (operator == null) {
-                break;
-            }
-            nextToken(); // consume the operator
+            // prefixes and the operand
+            boolean negative = false;
+            while (true) {
+                TokenType tokenType = nextToken();
+                int prefix;
+                if (tokenEquals('-')) {
+                    prefix = PREFIX_NEGATE;
+                } else if (tokenEquals('~')) {
+                    prefix = PREFIX_BIT_NOT;
+                } else if (tokenEquals('(')) {
+                    if (peekTokenType() == TokenType.IDENTIFIER && peekToken2Equals(')')) {
+                        prefix = castPrefix(parseDataType());
+                        nextToken(); // close paren
+                    } else {
+                        // open a new operator stack frame
+                        prefix = operatorBase;
+                        operatorBase = operatorTop;
+                    }
+                } else {
+                    pushOperand(parseOperand(tokenType, negative));
+                    break;
+                }
 
-            int ourPrecedence = PRECEDENCES.get(operator);
-            while (!operatorStack.isEmpty() && ourPrecedence <= PRECEDENCES.get(operatorStack.peek())) {
-                BinaryExpression.Operator op = operatorStack.pop();
-                Expression rhs = operandStack.pop();
-                Expression lhs = operandStack.pop();
-                operandStack.push(new BinaryExpression(lhs, rhs, op));
+                if (prefixTop >= MAX_PARSE_DEPTH) {
+                    throw parseError("max parse depth reached");
+                }
+                pushPrefix(prefix);
+                negative = prefix == PREFIX_NEGATE;
             }
 
-            operatorStack.push(operator);
-            operandStack.push(parseUnaryExpression(parseDepth, false));
-        }
+            // apply unary operators and casts, and close parentheses
+            while (true) {
+                while (prefixTop > 0 && prefixStack[prefixTop - 1] < 0) {
+                    int prefix = prefixStack[--prefixTop];
+                    Expression operand = operandStack[operandTop - 1];
+                    if (prefix == PREFIX_NEGATE) {
+                        operandStack[operandTop - 1] = new UnaryExpression(operand, UnaryExpression.Operator.NEGATE);
+                    } else if (prefix == PREFIX_BIT_NOT) {
+                        operandStack[operandTop - 1] = new UnaryExpression(operand, UnaryExpression.Operator.BIT_NOT);
+                    } else {
+                        operandStack[operandTop - 1] = new CastExpression(DATA_TYPES[PREFIX_CAST - prefix], operand);
+                    }
+                }
+
+                BinaryExpression.Operator operator = peekBinaryOperator();
+                if (operator != null) {
+                    nextToken(); // consume the operator
+                    int precedence = PRECEDENCES[operator.ordinal()];
+                    while (operatorTop > operatorBase && precedence <= PRECEDENCES[operatorStack[operatorTop - 1]]) {
+                        reduceBinaryExpression();
+                    }
+                    pushOperator(operator.ordinal());
+                    break;
+                }
 
-        Expression result = operandStack.pop();
-        while (!operatorStack.isEmpty()) {
-            result = new BinaryExpression(operandStack.pop(), result, operatorStack.pop());
+                // end of the expression in the current frame
+                while (operatorTop > operatorBase) {
+                    reduceBinaryExpression();
+                }
+                if (prefixTop == 0) {
+                    Expression result = operandStack[0];
+                    operandStack[0] = null;
+                    return result;
+                }
+
+                expectToken(')');
+                operatorBase = prefixStack[--prefixTop];
+                operandStack[operandTop - 1] = new ParenExpression(operandStack[operandTop - 1]);
+            }
         }
+    }
 
-        return result;
+    private static int castPrefix(DataType castType) {
+        return PREFIX_CAST - castType.ordinal();
     }
 
-    private Expression parseUnaryExpression(int parseDepth, boolean negative) throws IOException {
-        if (parseDepth > MAX_PARSE_DEPTH) {
-            throw parseError("max parse depth reached");
+    private void reduceBinaryExpression() {
+        BinaryExpression.Operator operator = BINARY_OPERATORS[operatorStack[--operatorTop]];
+        Expression rhs = operandStack[--operandTop];
+        operandStack[operandTop] = null;
+        operandStack[operandTop - 1] = new BinaryExpression(operandStack[operandTop - 1], rhs, operator);
+    }
+
+    private void pushPrefix(int prefix) {
+        if (prefixTop == prefixStack.length) {
+            prefixStack = Arrays.copyOf(prefixStack, prefixTop * 2);
         }
+        prefixStack[prefixTop++] = prefix;
+    }
 
-        String token = nextToken();
-        switch (token) {
-            case "-" -> {
-                return new UnaryExpression(parseUnaryExpression(parseDepth + 1, true), UnaryExpression.Operator.NEGATE);
-            }
-            case "~" -> {
-                return new UnaryExpression(parseUnaryExpression(parseDepth + 1, false), UnaryExpression.Operator.BIT_NOT);
-            }
-            case "(" -> {
-                boolean parseAsCast = peekTokenType() == TokenType.IDENTIFIER && ")".equals(peekToken2());
-                if (parseAsCast) {
-                    DataType castType = parseDataType();
-                    nextToken(); // close paren
-                    return new CastExpression(castType, parseUnaryExpression(parseDepth + 1, false));
-                } else {
-                    Expression expression = parseExpression(parseDepth + 1);
-                    expectToken(")");
-                    return new ParenExpression(expression);
-                }
-            }
+    private void pushOperator(int operator) {
+        if (operatorTop == operatorStack.length) {
+            operatorStack = Arrays.copyOf(operatorStack, operatorTop * 2);
         }
+        operatorStack[operatorTop++] = operator;
+    }
 
-        return switch (lastTokenType) {
-            case IDENTIFIER -> parseFieldExpression(token);
-            case INTEGER -> {
-                ParsedInteger parsedInt = parseInt(token, negative);
-                yield new LiteralExpression(new Literal.Integer(negative ? -parsedInt.value : parsedInt.value, parsedInt.radix));
-            }
-            case LONG -> {
-                ParsedLong parsedLong = parseLong(token, negative);
-                yield new LiteralExpression(new Literal.Long(negative ? -parsedLong.value : parsedLong.value, parsedLong.radix));
-            }
-            case FLOAT -> {
-                float parsedFloat = parseFloat(token, negative);
-                yield new LiteralExpression(new Literal.Float(negative ? -parsedFloat : parsedFloat));
-            }
-            case DOUBLE -> {
-                double parsedDouble = parseDouble(token, negative);
-                yield new LiteralExpression(new Literal.Double(negative ? -parsedDouble : parsedDouble));
-            }
-            case CHAR -> new LiteralExpression(new Literal.Character(unquoteChar(token)));
-            case STRING -> new LiteralExpression(new Literal.String(unquoteString(token)));
-            default -> throw expectedTokenError("expression", token);
+    private void pushOperand(Expression operand) {
+        if (operandTop == operandStack.length) {
+            operandStack = Arrays.copyOf(operandStack, operandTop * 2);
+        }
+        operandStack[operandTop++] = operand;
+    }
+
+    private Expression parseOperand(TokenType tokenType, boolean negative) throws IOException {
+        return switch (tokenType) {
+            case IDENTIFIER -> parseFieldExpression();
+            case INTEGER -> new LiteralExpression(parseIntLiteral(negative));
+            case LONG -> new LiteralExpression(parseLongLiteral(negative));
+            case FLOAT -> new LiteralExpression(new Literal.Float(parseFloat()));
+            case DOUBLE -> new LiteralExpression(new Literal.Double(parseDouble()));
+            case CHAR -> new LiteralExpression(new Literal.Character(unquoteChar(tokenBuffers[current], tokenStarts[current], tokenEnds[current])));
+            case STRING -> new LiteralExpression(new Literal.String(unquoteString(tokenBuffers[current], tokenStarts[current], tokenEnds[current])));
+            default -> throw expectedTokenError("expression");
         };
     }
 
-    private FieldExpression parseFieldExpression(String token) throws IOException {
-        expectToken(".");
-        StringBuilder classAndFieldNameBuilder = new StringBuilder(token).append('.');
+    private FieldExpression parseFieldExpression() throws IOException {
+        StringBuilder classAndFieldNameBuilder = appendToken(new StringBuilder());
+        expectToken('.');
+        classAndFieldNameBuilder.append('.');
         while (true) {
-            if ("*".equals(peekToken())) {
+            if (peekTokenEquals('*')) {
                 nextToken();
                 classAndFieldNameBuilder.append('*');
                 break;
             }
-            classAndFieldNameBuilder.append(nextToken(TokenType.IDENTIFIER));
-            if (!".".equals(peekToken())) {
+            nextToken(TokenType.IDENTIFIER);
+            appendToken(classAndFieldNameBuilder);
+            if (!peekTokenEquals('.')) {
                 break;
             }
             nextToken();
             classAndFieldNameBuilder.append('.');
         }
-        String classAndFieldName = classAndFieldNameBuilder.toString();
 
         // the field name has been joined to the class name, split it off
-        int dotIndex = classAndFieldName.lastIndexOf('.');
-        String className = classAndFieldName.substring(0, dotIndex);
-        String fieldName = classAndFieldName.substring(dotIndex + 1);
-        if ("*".equals(fieldName)) {
-            fieldName = null;
+        int dotIndex = classAndFieldNameBuilder.lastIndexOf(".");
+        String className = classAndFieldNameBuilder.substring(0, dotIndex);
+        String fieldName = null;
+        if (classAndFieldNameBuilder.charAt(dotIndex + 1) != '*') {
+            fieldName = classAndFieldNameBuilder.substring(dotIndex + 1);
         }
 
         boolean isStatic = true;
         DataType fieldType = null;
-        if (":".equals(peekToken())) {
+        if (peekTokenEquals(':')) {
             nextToken();
-            if ("instance".equals(peekToken())) {
+            if (peekTokenEquals("instance")) {
                 nextToken();
                 isStatic = false;
-                if (":".equals(peekToken())) {
+                if (peekTokenEquals(':')) {
                     nextToken();
                     fieldType = parseDataType();
                 }
@@ -360,12 +1018,13 @@ public final class UnpickV3Reader implements AutoCloseable {
 
     private TargetField parseTargetField() throws IOException {
         String className = parseClassName();
-        String fieldName = nextToken(TokenType.IDENTIFIER);
-        String fieldDesc = nextToken(TokenType.TYPE_DESCRIPTOR);
-        String groupName = nextToken(TokenType.IDENTIFIER);
-        String token = nextToken();
-        if (lastTokenType != TokenType.NEWLINE && lastTokenType != TokenType.EOF) {
-            throw expectedTokenError("'\n'", token);
+        String fieldName = nextIdentifier();
+        nextToken(TokenType.TYPE_DESCRIPTOR);
+        String fieldDesc = tokenString();
+        String groupName = nextIdentifier();
+        TokenType tokenType = nextToken();
+        if (tokenType != TokenType.NEWLINE && tokenType != TokenType.EOF) {
+            throw expectedTokenError("'\n'");
         }
         return new TargetField(className, fieldName, fieldDesc, groupName);
     }
@@ -373,18 +1032,19 @@ public final class UnpickV3Reader implements AutoCloseable {
     private TargetMethod parseTargetMethod() throws IOException {
         String className = parseClassName();
         String methodName = parseMethodName();
-        String methodDesc = nextToken(TokenType.METHOD_DESCRIPTOR);
+        nextToken(TokenType.METHOD_DESCRIPTOR);
+        String methodDesc = tokenString();
 
         Map<Integer, String> paramGroups = new HashMap<>();
         String returnGroup = null;
 
         while (true) {
-            String token = nextToken();
-            if (lastTokenType == TokenType.EOF) {
+            TokenType tokenType = nextToken();
+            if (tokenType == TokenType.EOF) {
                 break;
             }
-            if (lastTokenType != TokenType.NEWLINE) {
-                throw expectedTokenError("'\\n'", token);
+            if (tokenType != TokenType.NEWLINE) {
+                throw expectedTokenError("'\\n'");
             }
 
             if (peekTokenType() != TokenType.INDENT) {
@@ -392,22 +1052,21 @@ public final class UnpickV3Reader implements AutoCloseable {
             }
             nextToken();
 
-            token = nextToken("target method item", TokenType.IDENTIFIER);
-            switch (token) {
-                case "param" -> {
-                    int paramIndex = parseInt(nextToken(TokenType.INTEGER), false).value;
-                    if (paramGroups.containsKey(paramIndex)) {
-                        throw parseError("Specified parameter " + paramIndex + " twice");
-                    }
-                    paramGroups.put(paramIndex, nextToken(TokenType.IDENTIFIER));
+            nextToken("target method item", TokenType.IDENTIFIER);
+            if (tokenEquals("param")) {
+                nextToken(TokenType.INTEGER);
+                int paramIndex = parseIntLiteral(false).value();
+                if (paramGroups.containsKey(paramIndex)) {
+                    throw parseError("Specified parameter " + paramIndex + " twice");
                 }
-                case "return" -> {
-                    if (returnGroup != null) {
-                        throw parseError("Specified return group twice");
-                    }
-                    returnGroup = nextToken(TokenType.IDENTIFIER);
+                paramGroups.put(paramIndex, nextIdentifier());
+            } else if (tokenEquals("return")) {
+                if (returnGroup != null) {
+                    throw parseError("Specified return group twice");
                 }
-                default -> throw expectedTokenError("target method item", token);
+                returnGroup = nextIdentifier();
+            } else {
+                throw expectedTokenError("target method item");
             }
         }
 
@@ -420,28 +1079,37 @@ public final class UnpickV3Reader implements AutoCloseable {
         }
 
         String annotationName = parseClassName();
-        String groupName = nextToken(TokenType.IDENTIFIER);
-        String token = nextToken();
-        if (lastTokenType != TokenType.NEWLINE && lastTokenType != TokenType.EOF) {
-            throw expectedTokenError("'\n'", token);
+        String groupName = nextIdentifier();
+        TokenType tokenType = nextToken();
+        if (tokenType != TokenType.NEWLINE && tokenType != TokenType.EOF) {
+            throw expectedTokenError("'\n'");
         }
         return new TargetAnnotation(annotationName, groupName);
     }
 
     private DataType parseDataType() throws IOException {
-        String token = nextToken("data type", TokenType.IDENTIFIER);
-        return switch (token) {
-            case "byte" -> DataType.BYTE;
-            case "short" -> DataType.SHORT;
-            case "int" -> DataType.INT;
-            case "long" -> DataType.LONG;
-            case "float" -> DataType.FLOAT;
-            case "double" -> DataType.DOUBLE;
-            case "char" -> DataType.CHAR;
-            case "String" -> DataType.STRING;
-            case "Class" -> DataType.CLASS;
-            default -> throw expectedTokenError("data type", token);
-        };
+        nextToken("data type", TokenType.IDENTIFIER);
+        if (tokenEquals("byte")) {
+            return DataType.BYTE;
+        } else if (tokenEquals("short")) {
+            return DataType.SHORT;
+        } else if (tokenEquals("int")) {
+            return DataType.INT;
+        } else if (tokenEquals("long")) {
+            return DataType.LONG;
+        } else if (tokenEquals("float")) {
+            return DataType.FLOAT;
+        } else if (tokenEquals("double")) {
+            return DataType.DOUBLE;
+        } else if (tokenEquals("char")) {
+            return DataType.CHAR;
+        } else if (tokenEquals("String")) {
+            return DataType.STRING;
+        } else if (tokenEquals("Class")) {
+            return DataType.CLASS;
+        } else {
+            throw expectedTokenError("data type");
+        }
     }
 
     private String parseClassName() throws IOException {
@@ -449,144 +1117,170 @@ public final class UnpickV3Reader implements AutoCloseable {
     }
 
     private String parseClassName(String expected) throws IOException {
-        StringBuilder result = new StringBuilder(nextToken(expected, TokenType.IDENTIFIER));
-        while (".".equals(peekToken())) {
+        nextToken(expected, TokenType.IDENTIFIER);
+        if (!peekTokenEquals('.')) {
+            return tokenString();
+        }
+        StringBuilder result = appendToken(new StringBuilder());
+        while (peekTokenEquals('.')) {
             nextToken();
-            result.append('.').append(nextToken(TokenType.IDENTIFIER));
+            nextToken(TokenType.IDENTIFIER);
+            appendToken(result.append('.'));
         }
         return result.toString();
     }
 
     private String parseMethodName() throws IOException {
-        String token = nextToken();
-        if (lastTokenType == TokenType.IDENTIFIER) {
-            return token;
-        }
-        if ("<".equals(token)) {
-            token = nextToken(TokenType.IDENTIFIER);
-            if (!"init".equals(token) && !"clinit".equals(token)) {
-                throw expectedTokenError("identifier", token);
-            }
-            expectToken(">");
-            return "<" + token + ">";
-        }
-        throw expectedTokenError("identifier", token);
-    }
-
-    private ParsedInteger parseInt(String string, boolean negative) throws UnpickParseException {
-        int radix;
-        if (string.startsWith("0x") || string.startsWith("0X")) {
-            radix = 16;
-            string = string.substring(2);
-        } else if (string.startsWith("0b") || string.startsWith("0B")) {
-            radix = 2;
-            string = string.substring(2);
-        } else if (string.startsWith("0") && string.length() > 1) {
-            radix = 8;
-            string = string.substring(1);
-        } else {
-            radix = 10;
+        TokenType tokenType = nextToken();
+        if (tokenType == TokenType.IDENTIFIER) {
+            return tokenString();
+        }
+        if (tokenEquals('<')) {
+            nextToken(TokenType.IDENTIFIER);
+            String methodName;
+            if (tokenEquals("init")) {
+                methodName = "<init>";
+            } else if (tokenEquals("clinit")) {
+                methodName = "<clinit>";
+            } else {
+                throw expectedTokenError("identifier");
+            }
+            expectToken('>');
+            return methodName;
         }
+        throw expectedTokenError("identifier");
+    }
 
-        try {
-            return new ParsedInteger(Integer.parseInt(negative ? "-" + string : string, radix), radix);
-        } catch (NumberFormatException ignore) {
+    /**
+     * Parses the current integer token. The literal holds the magnitude, which must fit in an int, or in an unsigned
+     * int for non-decimal literals that aren't negated. Negative literals are represented by a unary expression around
+     * the magnitude, so the magnitude of {@code -2147483648} is stored as {@link Integer#MIN_VALUE}.
+     */
+    private Literal.Integer parseIntLiteral(boolean negative) throws UnpickParseException {
+        char[] buffer = tokenBuffers[current];
+        int end = tokenEnds[current];
+        int start = tokenStarts[current];
+        int radix = radix(buffer, start, end);
+        start += radixPrefixLength(radix);
+
+        long limit;
+        if (negative) {
+            limit = -(long) Integer.MIN_VALUE;
+        } else if (radix == 10) {
+            limit = Integer.MAX_VALUE;
+        } else {
+            limit = 0xffffffffL;
         }
 
-        // try unsigned parsing in other radixes
-        if (!negative && radix != 10) {
-            try {
-                return new ParsedInteger(Integer.parseUnsignedInt(string, radix), radix);
-            } catch (NumberFormatException ignore) {
+        long magnitude = 0;
+        for (int i = start; i < end; i++) {
+            magnitude = magnitude * radix + hexDigit(buffer[i]);
+            if (magnitude > limit) {
+                throw parseError("Integer out of bounds");
             }
         }
-
-        throw parseError("Integer out of bounds");
-    }
-
-    private record ParsedInteger(int value, int radix) {
+        return new Literal.Integer((int) magnitude, radix);
     }
 
-    private ParsedLong parseLong(String string, boolean negative) throws UnpickParseException {
-        if (string.endsWith("l") || string.endsWith("L")) {
-            string = string.substring(0, string.length() - 1);
-        }
-
-        int radix;
-        if (string.startsWith("0x") || string.startsWith("0X")) {
-            radix = 16;
-            string = string.substring(2);
-        } else if (string.startsWith("0b") || string.startsWith("0B")) {
-            radix = 2;
-            string = string.substring(2);
-        } else if (string.startsWith("0") && string.length() > 1) {
-            radix = 8;
-            string = string.substring(1);
+    /**
+     * Parses the current long token, in the same way as {@link #parseIntLiteral(boolean)}. The magnitude is accumulated
+     * as an unsigned long.
+     */
+    private Literal.Long parseLongLiteral(boolean negative) throws UnpickParseException {
+        char[] buffer = tokenBuffers[current];
+        int end = tokenEnds[current] - 1; // L suffix
+        int start = tokenStarts[current];
+        int radix = radix(buffer, start, end);
+        start += radixPrefixLength(radix);
+
+        long limit;
+        if (negative) {
+            limit = Long.MIN_VALUE; // as unsigned, 2^63
+        } else if (radix == 10) {
+            limit = Long.MAX_VALUE;
         } else {
-            radix = 10;
+            limit = -1; // as unsigned, 2^64 - 1
         }
+        long cutoff = Long.divideUnsigned(limit, radix);
+        int cutoffDigit = (int) Long.remainderUnsigned(limit, radix);
 
-        try {
-            return new ParsedLong(Long.parseLong(negative ? "-" + string : string, radix), radix);
-        } catch (NumberFormatException ignore) {
-        }
-
-        // try unsigned parsing in other radixes
-        if (!negative && radix != 10) {
-            try {
-                return new ParsedLong(Long.parseUnsignedLong(string, radix), radix);
-            } catch (NumberFormatException ignore) {
+        long magnitude = 0;
+        for (int i = start; i < end; i++) {
+            int digit = hexDigit(buffer[i]);
+            int compare = Long.compareUnsigned(magnitude, cutoff);
+            if (compare > 0 || compare == 0 && digit > cutoffDigit) {
+                throw parseError("Long out of bounds");
             }
+            magnitude = magnitude * radix + digit;
         }
+        return new Literal.Long(magnitude, radix);
+    }
 
-        throw parseError("Long out of bounds");
+    /**
+     * Returns the radix of the integer literal spanning the given range, without an L suffix.
+     */
+    private static int radix(char[] buffer, int start, int end) {
+        if (buffer[start] != '0' || end - start == 1) {
+            return 10;
+        }
+        return switch (buffer[start + 1]) {
+            case 'x', 'X' -> 16;
+            case 'b', 'B' -> 2;
+            default -> 8;
+        };
     }
 
-    private record ParsedLong(long value, int radix) {
+    private static int radixPrefixLength(int radix) {
+        return switch (radix) {
+            case 16, 2 -> 2;
+            case 8 -> 1;
+            default -> 0;
+        };
     }
 
-    private float parseFloat(String string, boolean negative) throws UnpickParseException {
-        if (string.endsWith("f") || string.endsWith("F")) {
-            string = string.substring(0, string.length() - 1);
-        }
+    /**
+     * Parses the current float token. {@link Float#parseFloat(String)} accepts the f suffix, so the token can be passed
+     * as is.
+     */
+    private float parseFloat() throws UnpickParseException {
         try {
-            float result = Float.parseFloat(string);
+            float result = Float.parseFloat(tokenString());
             if (!Float.isFinite(result)) {
                 throw parseError("Float out of bounds");
             }
-            return negative ? -result : result;
+            return result;
         } catch (NumberFormatException e) {
             throw parseError("Invalid float");
         }
     }
 
-    private double parseDouble(String string, boolean negative) throws UnpickParseException {
+    private double parseDouble() throws UnpickParseException {
         try {
-            double result = Double.parseDouble(string);
+            double result = Double.parseDouble(tokenString());
             if (!Double.isFinite(result)) {
                 throw parseError("Double out of bounds");
             }
-            return negative ? -result : result;
+            return result;
         } catch (NumberFormatException e) {
             throw parseError("Invalid double");
         }
     }
 
-    private static char unquoteChar(String string) {
-        return unquoteString(string).charAt(0);
+    private static char unquoteChar(char[] buffer, int start, int end) {
+        return unquoteString(buffer, start, end).charAt(0);
     }
 
-    private static String unquoteString(String string) {
-        StringBuilder result = new StringBuilder(string.length() - 2);
-        for (int i = 1; i < string.length() - 1; i++) {
-            if (string.charAt(i) == '\\') {
+    private static String unquoteString(char[] buffer, int start, int end) {
+        StringBuilder result = new StringBuilder(end - start - 2);
+        for (int i = start + 1; i < end - 1; i++) {
+            if (buffer[i] == '\\') {
                 i++;
-                switch (string.charAt(i)) {
+                switch (buffer[i]) {
                     case 'u' -> {
                         do {
                             i++;
-                        } while (string.charAt(i) == 'u');
-                        result.append((char) Integer.parseInt(string.substring(i, i + 4), 16));
+                        } while (buffer[i] == 'u');
+                        result.append((char) ((hexDigit(buffer[i]) << 12) | (hexDigit(buffer[i + 1]) << 8) | (hexDigit(buffer[i + 2]) << 4) | hexDigit(buffer[i + 3])));
                         i += 3;
                     }
                     case 'b' -> result.append('\b');
@@ -600,228 +1294,334 @@ public final class UnpickV3Reader implements AutoCloseable {
                     case '0', '1', '2', '3', '4', '5', '6', '7' -> {
                         char c;
                         int count = 0;
-                        int maxCount = string.charAt(i) <= '3' ? 3 : 2;
-                        while (count < maxCount && (c = string.charAt(i + count)) >= '0' && c <= '7') {
+                        int value = 0;
+                        int maxCount = buffer[i] <= '3' ? 3 : 2;
+                        while (count < maxCount && (c = buffer[i + count]) >= '0' && c <= '7') {
+                            value = value * 8 + (c - '0');
                             count++;
                         }
-                        result.append((char) Integer.parseInt(string.substring(i, i + count), 8));
+                        result.append((char) value);
                         i += count - 1;
                     }
                     default -> throw new AssertionError("Unexpected escape sequence in string");
                 }
             } else {
-                result.append(string.charAt(i));
+                result.append(buffer[i]);
             }
         }
         return result.toString();
     }
 
+    private static int hexDigit(char c) {
+        return Character.digit(c, 16);
+    }
+
     // region Tokenizer
 
+    /**
+     * Makes sure that the token the given distance after the current token has been lexed, and returns its slot.
+     */
+    private int peek(int distance) throws IOException {
+        while (lexedAhead < distance) {
+            lexToken(null);
+        }
+        return (current + distance) & LOOKAHEAD_MASK;
+    }
+
     private TokenType peekTokenType() throws IOException {
-        ParseState state = new ParseState(this);
-        nextToken = nextToken();
-        nextTokenState = new ParseState(this);
-        state.restore(this);
-        return nextTokenState.lastTokenType;
+        return tokenTypes[peek(1)];
+    }
+
+    private boolean peekTokenEquals(char expected) throws IOException {
+        return tokenEquals(peek(1), expected);
     }
 
-    private String peekToken() throws IOException {
-        ParseState state = new ParseState(this);
-        nextToken = nextToken();
-        nextTokenState = new ParseState(this);
-        state.restore(this);
-        return nextToken;
+    private boolean peekTokenEquals(String expected) throws IOException {
+        return tokenEquals(peek(1), expected);
     }
 
-    private String peekToken2() throws IOException {
-        ParseState state = new ParseState(this);
-        String nextToken = nextToken();
-        ParseState nextTokenState = new ParseState(this);
-        nextToken2 = nextToken();
-        nextToken2State = new ParseState(this);
-        this.nextToken = nextToken;
-        this.nextTokenState = nextTokenState;
-        state.restore(this);
-        return nextToken2;
+    private boolean peekToken2Equals(char expected) throws IOException {
+        return tokenEquals(peek(2), expected);
+    }
+
+    @Nullable
+    private BinaryExpression.Operator peekBinaryOperator() throws IOException {
+        int slot = peek(1);
+        if (tokenTypes[slot] != TokenType.OPERATOR) {
+            return null;
+        }
+
+        char[] buffer = tokenBuffers[slot];
+        int start = tokenStarts[slot];
+        int length = tokenEnds[slot] - start;
+        if (length == 1) {
+            return switch (buffer[start]) {
+                case '|' -> BinaryExpression.Operator.BIT_OR;
+                case '^' -> BinaryExpression.Operator.BIT_XOR;
+                case '&' -> BinaryExpression.Operator.BIT_AND;
+                case '+' -> BinaryExpression.Operator.ADD;
+                case '-' -> BinaryExpression.Operator.SUBTRACT;
+                case '*' -> BinaryExpression.Operator.MULTIPLY;
+                case '/' -> BinaryExpression.Operator.DIVIDE;
+                case '%' -> BinaryExpression.Operator.MODULO;
+                default -> null;
+            };
+        } else if (length == 2) {
+            return buffer[start] == '<' ? BinaryExpression.Operator.BIT_SHIFT_LEFT : BinaryExpression.Operator.BIT_SHIFT_RIGHT;
+        } else {
+            return BinaryExpression.Operator.BIT_SHIFT_RIGHT_UNSIGNED;
+        }
     }
 
-    private void expectToken(String expected) throws IOException {
-        String token = nextToken();
-        if (!expected.equals(token)) {
-            throw expectedTokenError(UnpickV3Writer.quoteString(expected, '\''), token);
+    private void expectToken(char expected) throws IOException {
+        nextToken();
+        if (!tokenEquals(expected)) {
+            throw expectedTokenError(UnpickV3Writer.quoteString(String.valueOf(expected), '\''));
         }
     }
 
-    private String nextToken() throws IOException {
+    private TokenType nextToken() throws IOException {
         return nextTokenInner(null);
     }
 
-    private String nextToken(TokenType type) throws IOException {
-        return nextToken(type.name, type);
+    private void nextToken(TokenType type) throws IOException {
+        nextToken(type.name, type);
     }
 
-    private String nextToken(String expected, TokenType type) throws IOException {
-        String token = nextTokenInner(type);
-        if (lastTokenType != type) {
-            throw expectedTokenError(expected, token);
+    private void nextToken(String expected, TokenType type) throws IOException {
+        if (nextTokenInner(type) != type) {
+            throw expectedTokenError(expected);
         }
-        return token;
     }
 
-    private String nextTokenInner(@Nullable TokenType typeHint) throws IOException {
-        if (nextTokenState != null) {
-            String tok = nextToken;
-            nextToken = nextToken2;
-            nextToken2 = null;
-            nextTokenState.restore(this);
-            nextTokenState = nextToken2State;
-            nextToken2State = null;
-            return tok;
+    private String nextIdentifier() throws IOException {
+        nextToken(TokenType.IDENTIFIER);
+        return tokenString();
+    }
+
+    private boolean tokenEquals(char expected) {
+        return tokenEquals(current, expected);
+    }
+
+    private boolean tokenEquals(String expected) {
+        return tokenEquals(current, expected);
+    }
+
+    private boolean tokenEquals(int slot, char expected) {
+        return tokenEnds[slot] - tokenStarts[slot] == 1 && tokenBuffers[slot][tokenStarts[slot]] == expected && tokenTypes[slot] == TokenType.OPERATOR;
+    }
+
+    private boolean tokenEquals(int slot, String expected) {
+        return regionEquals(tokenBuffers[slot], tokenStarts[slot], tokenEnds[slot], expected);
+    }
+
+    private String tokenString() {
+        return switch (tokenTypes[current]) {
+            case NEWLINE -> "\n";
+            case EOF -> null;
+            default -> new String(tokenBuffers[current], tokenStarts[current], tokenEnds[current] - tokenStarts[current]);
+        };
+    }
+
+    private StringBuilder appendToken(StringBuilder sb) {
+        return sb.append(tokenBuffers[current], tokenStarts[current], tokenEnds[current] - tokenStarts[current]);
+    }
+
+    private static boolean regionEquals(char[] buffer, int start, int end, String expected) {
+        int length = expected.length();
+        if (end - start != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (buffer[start + i] != expected.charAt(i)) {
+                return false;
+            }
         }
+        return true;
+    }
 
-        if (lastTokenType == TokenType.EOF) {
-            return null;
+    private TokenType nextTokenInner(@Nullable TokenType typeHint) throws IOException {
+        if (lexedAhead == 0) {
+            lexToken(typeHint);
+        }
+        current = (current + 1) & LOOKAHEAD_MASK;
+        lexedAhead--;
+        return tokenTypes[current];
+    }
+
+    /**
+     * Lexes the next token into the next free slot of the ring buffer.
+     */
+    private void lexToken(@Nullable TokenType typeHint) throws IOException {
+        int slot = (current + lexedAhead + 1) & LOOKAHEAD_MASK;
+        lexedAhead++;
+        TokenType type = lexTokenInner(typeHint);
+        lastLexedType = type;
+        tokenTypes[slot] = type;
+        tokenBuffers[slot] = line;
+        tokenStarts[slot] = tokenStart;
+        tokenEnds[slot] = column;
+        tokenLines[slot] = lineNumber;
+        tokenDocsStarts[slot] = pendingDocsStart;
+        tokenDocsEnds[slot] = docs.length();
+    }
+
+    /**
+     * Lexes a token starting at the current column, and returns its type. The token spans from {@link #tokenStart} to
+     * the new column.
+     */
+    private TokenType lexTokenInner(@Nullable TokenType typeHint) throws IOException {
+        if (lastLexedType == TokenType.EOF) {
+            tokenStart = column;
+            return TokenType.EOF;
         }
 
         // start doc comment anew if the previous token type isn't whitespace
-        if (lastTokenType != TokenType.NEWLINE && lastTokenType != TokenType.INDENT) {
-            lastDocs = null;
+        if (lastLexedType != TokenType.NEWLINE && lastLexedType != TokenType.INDENT) {
+            pendingDocsStart = -1;
         }
 
         // newline token (skipping comment and whitespace)
-        while (column < line.length() && Character.isWhitespace(line.charAt(column))) {
+        while (column < lineLength && Character.isWhitespace(line[column])) {
             column++;
         }
         processCommentIfPresent();
-        if (column == line.length() && lastTokenType != TokenType.NEWLINE) {
-            lastTokenColumn = column;
-            lastTokenLine = reader.getLineNumber();
-            lastTokenType = TokenType.NEWLINE;
-            return "\n";
+        if (column == lineLength && lastLexedType != TokenType.NEWLINE) {
+            tokenStart = column;
+            return TokenType.NEWLINE;
         }
 
         // skip whitespace and comments, handle indent token
         boolean seenIndent = false;
         while (true) {
             processCommentIfPresent();
-            if (column == line.length()) {
+            if (column == lineLength) {
                 seenIndent = false;
-                line = reader.readLine();
                 column = 0;
-                if (line == null) {
-                    lastTokenColumn = column;
-                    lastTokenLine = reader.getLineNumber();
-                    lastTokenType = TokenType.EOF;
-                    return null;
+                if (!readLine()) {
+                    tokenStart = column;
+                    return TokenType.EOF;
                 }
-            } else if (Character.isWhitespace(line.charAt(column))) {
+            } else if (Character.isWhitespace(line[column])) {
                 seenIndent = column == 0;
                 do {
                     column++;
-                } while (column < line.length() && Character.isWhitespace(line.charAt(column)));
+                } while (column < lineLength && Character.isWhitespace(line[column]));
             } else {
                 break;
             }
         }
         if (seenIndent) {
-            lastTokenColumn = 0;
-            lastTokenLine = reader.getLineNumber();
-            lastTokenType = TokenType.INDENT;
-            return line.substring(0, column);
+            tokenStart = 0;
+            return TokenType.INDENT;
         }
 
-        lastTokenColumn = column;
-        lastTokenLine = reader.getLineNumber();
+        tokenStart = column;
 
         if (typeHint == TokenType.TYPE_DESCRIPTOR) {
             if (skipFieldDescriptor(true)) {
-                return line.substring(lastTokenColumn, column);
+                return TokenType.TYPE_DESCRIPTOR;
             }
         }
 
         if (typeHint == TokenType.METHOD_DESCRIPTOR) {
             if (skipMethodDescriptor()) {
-                return line.substring(lastTokenColumn, column);
+                return TokenType.METHOD_DESCRIPTOR;
             }
         }
 
-        if (skipNumber()) {
-            if (column < line.length() && isIdentifierChar(line.charAt(column))) {
-                throw parseErrorInToken("Unexpected character in number: " + line.charAt(column));
+        TokenType numberType = skipNumber();
+        if (numberType != null) {
+            if (column < lineLength && isIdentifierChar(line[column])) {
+                throw parseErrorInToken("Unexpected character in number: " + line[column]);
             }
-            return line.substring(lastTokenColumn, column);
+            return numberType;
         }
 
         if (skipIdentifier()) {
-            return line.substring(lastTokenColumn, column);
+            return TokenType.IDENTIFIER;
         }
 
         if (skipString('\'', true)) {
-            lastTokenType = TokenType.CHAR;
-            return line.substring(lastTokenColumn, column);
+            return TokenType.CHAR;
         }
 
         if (skipString('"', false)) {
-            lastTokenType = TokenType.STRING;
-            return line.substring(lastTokenColumn, column);
+            return TokenType.STRING;
         }
 
-        char c = line.charAt(column);
+        char c = line[column];
         column++;
         if (c == '<') {
-            if (column < line.length() && line.charAt(column) == '<') {
+            if (column < lineLength && line[column] == '<') {
                 column++;
             }
         } else if (c == '>') {
-            if (column < line.length() && line.charAt(column) == '>') {
+            if (column < lineLength && line[column] == '>') {
                 column++;
-                if (column < line.length() && line.charAt(column) == '>') {
+                if (column < lineLength && line[column] == '>') {
                     column++;
                 }
             }
         }
 
-        lastTokenType = TokenType.OPERATOR;
-        return line.substring(lastTokenColumn, column);
+        return TokenType.OPERATOR;
     }
 
     private void processCommentIfPresent() {
-        if (column >= line.length() || line.charAt(column) != '#') {
+        if (column >= lineLength || line[column] != '#') {
             return;
         }
         column++;
 
         // handle doc comments
-        if (column < line.length() && line.charAt(column) == ':') {
+        if (column < lineLength && line[column] == ':') {
             do {
                 column++;
-            } while (column < line.length() && Character.isWhitespace(line.charAt(column)));
-            if (lastDocs == null) {
-                lastDocs = "";
-            } else {
-                lastDocs += "\n";
+            } while (column < lineLength && Character.isWhitespace(line[column]));
+            if (readDocs) {
+                if (pendingDocsStart < 0) {
+                    if (!hasLexedDocs()) {
+                        docs.setLength(0);
+                    }
+                    pendingDocsStart = docs.length();
+                } else {
+                    docs.append('\n');
+                }
+                docs.append(line, column, lineLength - column);
             }
-            lastDocs += line.substring(column);
         } else {
-            lastDocs = null;
+            pendingDocsStart = -1;
         }
 
-        column = line.length();
+        column = lineLength;
+    }
+
+    /**
+     * Returns whether the current token or a token lexed ahead has a doc comment, which must be kept in the buffer.
+     * While lexing, the last of the {@link #lexedAhead} slots is the token being lexed and is not included.
+     */
+    private boolean hasLexedDocs() {
+        for (int i = 0; i < lexedAhead; i++) {
+            if (tokenDocsStarts[(current + i) & LOOKAHEAD_MASK] >= 0) {
+                return true;
+            }
+        }
+        return false;
     }
 
     private boolean skipFieldDescriptor(boolean startOfToken) throws UnpickParseException {
         // array descriptors
-        while (column < line.length() && line.charAt(column) == '[') {
+        while (column < lineLength && line[column] == '[') {
             startOfToken = false;
             column++;
         }
 
         // first character of main part of descriptor
-        if (column == line.length() || isTokenEnd(line.charAt(column))) {
+        if (column == lineLength || isTokenEnd(line[column])) {
             throw parseErrorInToken("Unexpected end of descriptor");
         }
-        switch (line.charAt(column)) {
+        switch (line[column]) {
             // primitive types
             case 'B', 'C', 'D', 'F', 'I', 'J', 'S', 'Z' -> column++;
 
@@ -831,7 +1631,7 @@ public final class UnpickV3Reader implements AutoCloseable {
 
                 // class name
                 char c;
-                while (column < line.length() && (c = line.charAt(column)) != ';' && !isTokenEnd(c)) {
+                while (column < lineLength && (c = line[column]) != ';' && !isTokenEnd(c)) {
                     if (c == '.' || c == '[') {
                         throw parseErrorInToken("Illegal character in descriptor: " + c);
                     }
@@ -839,87 +1639,84 @@ public final class UnpickV3Reader implements AutoCloseable {
                 }
 
                 // semicolon
-                if (column == line.length() || isTokenEnd(line.charAt(column))) {
+                if (column == lineLength || isTokenEnd(line[column])) {
                     throw parseErrorInToken("Unexpected end of descriptor");
                 }
                 column++;
             }
             default -> {
                 if (!startOfToken) {
-                    throw parseErrorInToken("Illegal character in descriptor: " + line.charAt(column));
+                    throw parseErrorInToken("Illegal character in descriptor: " + line[column]);
                 }
                 return false;
             }
         }
 
-        lastTokenType = TokenType.TYPE_DESCRIPTOR;
         return true;
     }
 
     private boolean skipMethodDescriptor() throws UnpickParseException {
-        if (line.charAt(column) != '(') {
+        if (line[column] != '(') {
             return false;
         }
         column++;
 
         // parameter types
-        while (column < line.length() && line.charAt(column) != ')' && !isTokenEnd(line.charAt(column))) {
+        while (column < lineLength && line[column] != ')' && !isTokenEnd(line[column])) {
             skipFieldDescriptor(false);
         }
-        if (column == line.length() || isTokenEnd(line.charAt(column))) {
+        if (column == lineLength || isTokenEnd(line[column])) {
             throw parseErrorInToken("Unexpected end of descriptor");
         }
         column++;
 
         // return type
-        if (column == line.length() || isTokenEnd(line.charAt(column))) {
+        if (column == lineLength || isTokenEnd(line[column])) {
             throw parseErrorInToken("Unexpected end of descriptor");
         }
-        if (line.charAt(column) == 'V') {
+        if (line[column] == 'V') {
             column++;
         } else {
             skipFieldDescriptor(false);
         }
 
-        lastTokenType = TokenType.METHOD_DESCRIPTOR;
         return true;
     }
 
-    private boolean skipNumber() throws UnpickParseException {
-        if (line.charAt(column) < '0' || line.charAt(column) > '9') {
-            return false;
+    @Nullable
+    private TokenType skipNumber() throws UnpickParseException {
+        if (line[column] < '0' || line[column] > '9') {
+            return null;
         }
 
         // hex numbers
-        if (line.startsWith("0x", column) || line.startsWith("0X", column)) {
+        if (line[column] == '0' && column + 1 < lineLength && (line[column + 1] == 'x' || line[column + 1] == 'X')) {
             column += 2;
             char c;
             boolean seenDigit = false;
-            while (column < line.length() && ((c = line.charAt(column)) >= '0' && c <= '9' || c >= 'a' && c <= 'f' || c >= 'A' && c <= 'F')) {
+            while (column < lineLength && ((c = line[column]) >= '0' && c <= '9' || c >= 'a' && c <= 'f' || c >= 'A' && c <= 'F')) {
                 seenDigit = true;
                 column++;
             }
             if (!seenDigit) {
                 throw parseErrorInToken("Unexpected end of integer");
             }
-            detectIntegerType();
-            return true;
+            return detectIntegerType();
         }
 
         // binary numbers
-        if (line.startsWith("0b", column) || line.startsWith("0B", column)) {
+        if (line[column] == '0' && column + 1 < lineLength && (line[column + 1] == 'b' || line[column + 1] == 'B')) {
             column += 2;
             char c;
             boolean seenDigit = false;
-            while (column < line.length() && ((c = line.charAt(column)) == '0' || c == '1')) {
+            while (column < lineLength && ((c = line[column]) == '0' || c == '1')) {
                 seenDigit = true;
                 column++;
             }
             if (!seenDigit) {
                 throw parseErrorInToken("Unexpected end of integer");
             }
-            detectIntegerType();
-            return true;
+            return detectIntegerType();
         }
 
         // lookahead a decimal number
@@ -927,15 +1724,15 @@ public final class UnpickV3Reader implements AutoCloseable {
         char c;
         do {
             endOfInteger++;
-        } while (endOfInteger < line.length() && (c = line.charAt(endOfInteger)) >= '0' && c <= '9');
+        } while (endOfInteger < lineLength && (c = line[endOfInteger]) >= '0' && c <= '9');
 
         // floats and doubles
-        if (endOfInteger < line.length() && line.charAt(endOfInteger) == '.') {
+        if (endOfInteger < lineLength && line[endOfInteger] == '.') {
             column = endOfInteger + 1;
 
             // fractional part
             boolean seenFracDigit = false;
-            while (column < line.length() && (c = line.charAt(column)) >= '0' && c <= '9') {
+            while (column < lineLength && (c = line[column]) >= '0' && c <= '9') {
                 seenFracDigit = true;
                 column++;
             }
@@ -944,14 +1741,14 @@ public final class UnpickV3Reader implements AutoCloseable {
             }
 
             // exponent
-            if (column < line.length() && ((c = line.charAt(column)) == 'e' || c == 'E')) {
+            if (column < lineLength && ((c = line[column]) == 'e' || c == 'E')) {
                 column++;
-                if (column < line.length() && (c = line.charAt(column)) >= '+' && c <= '-') {
+                if (column < lineLength && (c = line[column]) >= '+' && c <= '-') {
                     column++;
                 }
 
                 boolean seenExponentDigit = false;
-                while (column < line.length() && ((c = line.charAt(column)) >= '0' && c <= '9')) {
+                while (column < lineLength && ((c = line[column]) >= '0' && c <= '9')) {
                     seenExponentDigit = true;
                     column++;
                 }
@@ -960,81 +1757,77 @@ public final class UnpickV3Reader implements AutoCloseable {
                 }
             }
 
-            boolean isFloat = column < line.length() && ((c = line.charAt(column)) == 'f' || c == 'F');
+            boolean isFloat = column < lineLength && ((c = line[column]) == 'f' || c == 'F');
             if (isFloat) {
                 column++;
             }
-            lastTokenType = isFloat ? TokenType.FLOAT : TokenType.DOUBLE;
-            return true;
+            return isFloat ? TokenType.FLOAT : TokenType.DOUBLE;
         }
 
         // octal numbers (we'll count 0 itself as an octal)
-        if (line.charAt(column) == '0') {
+        if (line[column] == '0') {
             column++;
-            while (column < line.length() && (c = line.charAt(column)) >= '0' && c <= '7') {
+            while (column < lineLength && (c = line[column]) >= '0' && c <= '7') {
                 column++;
             }
-            detectIntegerType();
-            return true;
+            return detectIntegerType();
         }
 
         // decimal numbers
         column = endOfInteger;
-        detectIntegerType();
-        return true;
+        return detectIntegerType();
     }
 
-    private void detectIntegerType() {
+    private TokenType detectIntegerType() {
         char c;
-        boolean isLong = column < line.length() && ((c = line.charAt(column)) == 'l' || c == 'L');
+        boolean isLong = column < lineLength && ((c = line[column]) == 'l' || c == 'L');
         if (isLong) {
             column++;
         }
-        lastTokenType = isLong ? TokenType.LONG : TokenType.INTEGER;
+        return isLong ? TokenType.LONG : TokenType.INTEGER;
     }
 
     private boolean skipIdentifier() {
-        if (!isIdentifierChar(line.charAt(column))) {
+        if (!isIdentifierChar(line[column])) {
             return false;
         }
 
         do {
             column++;
-        } while (column < line.length() && isIdentifierChar(line.charAt(column)));
+        } while (column < lineLength && isIdentifierChar(line[column]));
 
-        lastTokenType = TokenType.IDENTIFIER;
         return true;
     }
 
     private boolean skipString(char quoteChar, boolean singleChar) throws UnpickParseException {
-        if (line.charAt(column) != quoteChar) {
+        if (line[column] != quoteChar) {
             return false;
         }
         column++;
 
         boolean seenChar = false;
-        while (column < line.length() && line.charAt(column) != quoteChar) {
+        while (column < lineLength && line[column] != quoteChar) {
             if (singleChar && seenChar) {
                 throw parseErrorInToken("Multiple characters in char literal");
             }
             seenChar = true;
 
-            if (line.charAt(column) == '\\') {
+            if (line[column] == '\\') {
                 column++;
-                if (column == line.length()) {
+                if (column == lineLength) {
                     throw parseErrorInToken("Unexpected end of string");
                 }
-                char c = line.charAt(column);
+                char c = line[column];
                 switch (c) {
                     case 'u' -> {
                         do {
                             column++;
-                        } while (column < line.length() && line.charAt(column) == 'u');
+                        } while (column < lineLength && line[column] == 'u');
                         for (int i = 0; i < 4; i++) {
-                            if (column == line.length()) {
+                            if (column == lineLength) {
                                 throw parseErrorInToken("Unexpected end of string");
                             }
-                            c = line.charAt(column);
+                            c = line[column];
                             if ((c < '0' || c > '9') && (c < 'a' || c > 'f') && (c < 'A' || c > 'F')) {
                                 throw parseErrorInToken("Illegal character in unicode escape sequence");
                             }
@@ -1045,7 +1838,7 @@ public final class UnpickV3Reader implements AutoCloseable {
                     case '0', '1', '2', '3', '4', '5', '6', '7' -> {
                         column++;
                         int maxOctalDigits = c <= '3' ? 3 : 2;
-                        for (int i = 1; i < maxOctalDigits && column < line.length() && (c = line.charAt(column)) >= '0' && c <= '7'; i++) {
+                        for (int i = 1; i < maxOctalDigits && column < lineLength && (c = line[column]) >= '0' && c <= '7'; i++) {
                             column++;
                         }
                     }
@@ -1056,7 +1849,7 @@ public final class UnpickV3Reader implements AutoCloseable {
             }
         }
 
-        if (column == line.length()) {
+        if (column == lineLength) {
             throw parseErrorInToken("Unexpected end of string");
         }
 
@@ -1078,51 +1871,292 @@ public final class UnpickV3Reader implements AutoCloseable {
 
     // endregion
 
-    private UnpickParseException expectedTokenError(String expected, String token) {
-        if (lastTokenType == TokenType.EOF) {
+    // region Line reading
+
+    /**
+     * Reads the next line into the line buffer, swapping buffers so that the previous line stays intact. Lines are
+     * terminated by {@code \n}, {@code \r} or {@code \r\n}, in the same way as {@link java.io.BufferedReader#readLine()}.
+     */
+    private boolean readLine() throws IOException {
+        char[] buffer = spareLine;
+        spareLine = line;
+        line = buffer;
+        lineLength = 0;
+
+        boolean readLine = reader != null ? readCharLine() : channel != null ? readByteLine() : readSpanLine();
+        if (readLine) {
+            lineNumber++;
+        }
+        return readLine;
+    }
+
+    private boolean readCharLine() throws IOException {
+        boolean readAnything = false;
+        while (true) {
+            if (inputPos == inputLimit) {
+                int read = reader.read(input, 0, input.length);
+                if (read <= 0) {
+                    if (!readAnything) {
+                        return false;
+                    }
+                    break;
+                }
+                inputPos = 0;
+                inputLimit = read;
+            }
+
+            if (skipLf) {
+                skipLf = false;
+                if (input[inputPos] == '\n') {
+                    inputPos++;
+                    continue;
+                }
+            }
+
+            readAnything = true;
+            int start = inputPos;
+            int end = start;
+            while (end < inputLimit && input[end] != '\n' && input[end] != '\r') {
+                end++;
+            }
+            appendToLine(start, end);
+
+            if (end < inputLimit) {
+                skipLf = input[end] == '\r';
+                inputPos = end + 1;
+                break;
+            }
+            inputPos = end;
+        }
+
+        return true;
+    }
+
+    private boolean readSpanLine() {
+        if (span == null) {
+            return false;
+        }
+        ensureLineCapacity(span.length());
+        span.getChars(0, span.length(), line, 0);
+        lineLength = span.length();
+        span = null;
+        return true;
+    }
+
+    private void appendToLine(int start, int end) {
+        int length = end - start;
+        ensureLineCapacity(length);
+        System.arraycopy(input, start, line, lineLength, length);
+        lineLength += length;
+    }
+
+    private boolean readByteLine() throws IOException {
+        ByteBuffer bytes = this.bytes;
+        int pos = bytes.position();
+        int limit = bytes.limit();
+        boolean readAnything = false;
+
+        while (true) {
+            if (pos == limit) {
+                bytes.position(pos);
+                if (!mapNextWindow(1)) {
+                    if (!readAnything) {
+                        return false;
+                    }
+                    break;
+                }
+                bytes = this.bytes;
+                pos = bytes.position();
+                limit = bytes.limit();
+            }
+
+            if (skipLf) {
+                skipLf = false;
+                if (bytes.get(pos) == '\n') {
+                    pos++;
+                    continue;
+                }
+            }
+            readAnything = true;
+
+            // fast path: eight ASCII bytes containing no line terminators at a time
+            ensureLineCapacity(limit - pos < 64 ? limit - pos : 64);
+            while (pos + 8 <= limit && lineLength + 8 <= line.length) {
+                long word = bytes.getLong(pos);
+                if ((word & HIGH_BITS) != 0) {
+                    break;
+                }
+                long terminators = hasByte(word, '\n') | hasByte(word, '\r');
+                if (terminators != 0) {
+                    // the lowest flagged byte is exact, so copy everything before it
+                    int count = Long.numberOfTrailingZeros(terminators) >>> 3;
+                    for (int i = 0; i < count; i++) {
+                        line[lineLength + i] = (char) (word >>> (i << 3) & 0xff);
+                    }
+                    lineLength += count;
+                    pos += count;
+                    break;
+                }
+                char[] line = this.line;
+                int lineLength = this.lineLength;
+                line[lineLength] = (char) (word & 0xff);
+                line[lineLength + 1] = (char) ((word >>> 8) & 0xff);
+                line[lineLength + 2] = (char) ((word >>> 16) & 0xff);
+                line[lineLength + 3] = (char) ((word >>> 24) & 0xff);
+                line[lineLength + 4] = (char) ((word >>> 32) & 0xff);
+                line[lineLength + 5] = (char) ((word >>> 40) & 0xff);
+                line[lineLength + 6] = (char) ((word >>> 48) & 0xff);
+                line[lineLength + 7] = (char) (word >>> 56);
+                this.lineLength = lineLength + 8;
+                pos += 8;
+            }
+
+            // slow path: a single byte, which may be a line terminator or start a multi-byte sequence
+            if (pos == limit) {
+                continue;
+            }
+            byte b = bytes.get(pos);
+            if (b == '\n' || b == '\r') {
+                skipLf = b == '\r';
+                pos++;
+                break;
+            }
+            if (b >= 0) {
+                ensureLineCapacity(1);
+                line[lineLength++] = (char) b;
+                pos++;
+                continue;
+            }
+
+            int sequenceLength = utf8SequenceLength(b);
+            if (limit - pos < sequenceLength) {
+                bytes.position(pos);
+                if (mapNextWindow(sequenceLength)) {
+                    bytes = this.bytes;
+                    pos = bytes.position();
+                    limit = bytes.limit();
+                }
+            }
+            pos = decodeUtf8(bytes, pos, limit, sequenceLength);
+        }
+
+        bytes.position(pos);
+        return true;
+    }
+
+    /**
+     * Maps the next window of the channel, starting at the current position, if the current window has fewer than
+     * {@code required} bytes remaining. Returns whether there are any bytes remaining.
+     */
+    private boolean mapNextWindow(int required) throws IOException {
+        long position = bytesOffset + bytes.position();
+        if (position >= bytesEnd) {
+            return false;
+        }
+        if (channel == null || bytes.remaining() >= required) {
+            return bytes.hasRemaining();
+        }
+        bytes = mapWindow(position);
+        bytesOffset = position;
+        return true;
+    }
+
+    private ByteBuffer mapWindow(long position) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(bytesEnd - position, MAX_MAPPED_WINDOW)).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Returns whether any byte of {@code word} is equal to {@code b}, as the high bit of that byte.
+     */
+    private static long hasByte(long word, char b) {
+        long x = word ^ (REPEATED_BYTES * b);
+        return (x - REPEATED_BYTES) & ~x & HIGH_BITS;
+    }
+
+    private static int utf8SequenceLength(byte leadByte) {
+        if ((leadByte & 0xe0) == 0xc0) {
+            return 2;
+        } else if ((leadByte & 0xf0) == 0xe0) {
+            return 3;
+        } else if ((leadByte & 0xf8) == 0xf0) {
+            return 4;
+        } else {
+            return 1; // malformed
+        }
+    }
+
+    /**
+     * Decodes the UTF-8 sequence starting at {@code pos} into the line buffer, returning the position after it.
+     * Malformed sequences are replaced with U+FFFD, as a {@link java.io.InputStreamReader} would do.
+     */
+    private int decodeUtf8(ByteBuffer bytes, int pos, int limit, int sequenceLength) {
+        ensureLineCapacity(2);
+        int codePoint = bytes.get(pos) & (0x7f >> sequenceLength);
+        int i = 1;
+        for (; i < sequenceLength; i++) {
+            if (pos + i >= limit || (bytes.get(pos + i) & 0xc0) != 0x80) {
+                break;
+            }
+            codePoint = (codePoint << 6) | (bytes.get(pos + i) & 0x3f);
+        }
+
+        boolean valid = sequenceLength > 1 && i == sequenceLength && Character.isValidCodePoint(codePoint)
+                && codePoint >= (sequenceLength == 2 ? 0x80 : sequenceLength == 3 ? 0x800 : 0x10000)
+                && (codePoint < Character.MIN_SURROGATE || codePoint > Character.MAX_SURROGATE);
+        if (valid) {
+            lineLength += Character.toChars(codePoint, line, lineLength);
+        } else {
+            line[lineLength++] = '\ufffd';
+        }
+        return pos + Math.max(i, 1);
+    }
+
+    private void ensureLineCapacity(int additional) {
+        if (lineLength + additional > line.length) {
+            line = Arrays.copyOf(line, Math.max(line.length * 2, lineLength + additional));
+        }
+    }
+
+    private boolean lineEquals(String expected) {
+        return regionEquals(line, 0, lineLength, expected);
+    }
+
+    // endregion
+
+    private UnpickParseException expectedTokenError(String expected) {
+        if (tokenTypes[current] == TokenType.EOF) {
             return parseError("Expected " + expected + " before eof token");
         } else {
-            return parseError("Expected " + expected + " before " + UnpickV3Writer.quoteString(token, '\'') + " token");
+            return parseError("Expected " + expected + " before " + UnpickV3Writer.quoteString(tokenString(), '\'') + " token");
         }
     }
 
     private UnpickParseException parseError(String message) {
-        return parseError(message, lastTokenLine, lastTokenColumn);
+        return parseError(message, tokenLines[current], tokenStarts[current]);
     }
 
     private UnpickParseException parseErrorInToken(String message) {
-        return parseError(message, reader.getLineNumber(), column);
+        return parseError(message, lineNumber, column);
     }
 
     private UnpickParseException parseError(String message, int lineNumber, int column) {
-        return new UnpickParseException(message, lineNumber, column + 1);
+        return new UnpickParseException(message, lineNumber, columnOffset + column + 1);
     }
 
     @Override
     public void close() throws IOException {
-        reader.close();
+        if (reader != null) {
+            reader.close();
+        }
+        if (channel != null) {
+            channel.close();
+        }
     }
 
-    private static class ParseState {
-        private final int lastTokenLine;
-        private final int lastTokenColumn;
-        private final TokenType lastTokenType;
-        @Nullable
-        private final String lastDocs;
-
-        ParseState(UnpickV3Reader reader) {
-            this.lastTokenLine = reader.lastTokenLine;
-            this.lastTokenColumn = reader.lastTokenColumn;
-            this.lastTokenType = reader.lastTokenType;
-            this.lastDocs = reader.lastDocs;
-        }
+    private record Chunk(long start, long end, int firstLine) {
+    }
 
-        void restore(UnpickV3Reader reader) {
-            reader.lastTokenLine = lastTokenLine;
-            reader.lastTokenColumn = lastTokenColumn;
-            reader.lastTokenType = lastTokenType;
-            reader.lastDocs = lastDocs;
-        }
+    private record ParsedChunk(List<UnpickItem> items, @Nullable IOException error) {
     }
 
     private enum TokenType {
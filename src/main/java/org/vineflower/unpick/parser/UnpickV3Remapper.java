@@ -1,24 +1,83 @@
 package org.vineflower.unpick.parser;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
-import java.util.stream.Stream;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Function;
 
+import org.jetbrains.annotations.Nullable;
+
+import org.vineflower.unpick.parser.tree.DataType;
 import org.vineflower.unpick.parser.tree.GroupDefinition;
 import org.vineflower.unpick.parser.tree.GroupScope;
 import org.vineflower.unpick.parser.tree.TargetAnnotation;
 import org.vineflower.unpick.parser.tree.TargetField;
 import org.vineflower.unpick.parser.tree.TargetMethod;
+import org.vineflower.unpick.parser.tree.UnpickItem;
 import org.vineflower.unpick.parser.tree.UnpickV3Visitor;
 import org.vineflower.unpick.parser.tree.expr.Expression;
 import org.vineflower.unpick.parser.tree.expr.ExpressionTransformer;
+import org.vineflower.unpick.parser.tree.expr.ExpressionVisitor;
 import org.vineflower.unpick.parser.tree.expr.FieldExpression;
 
 /**
  * Remaps all class, field, and method names in a .unpick v3 file. Visitor methods will be called on the downstream
  * visitor with the remapped names.
+ *
+ * <p>If the mapping methods are slow, an {@link UnpickV3RemapperCache} can be passed to the constructor, so that each
+ * name and descriptor is only mapped once.
+ *
+ * <p>Items can also be remapped concurrently on a {@link ForkJoinPool} by {@linkplain #setPool(ForkJoinPool) setting
+ * one}. They are then remapped in batches, with the constants of large groups split further, and visited on the
+ * downstream visitor in the original order, on the visiting thread, as the batches complete. In this mode, the abstract
+ * mapping methods may be called concurrently from the threads of the pool, and must be safe to do so. Only a bounded
+ * number of batches are in flight at a time, and {@link #flush()} must be called at the end to visit the rest.
+ *
+ * <p>Package scopes are expanded to a class scope for each class in the package by default. With
+ * {@link #setPreservePackages(boolean)}, a package whose classes are all mapped into one package, which has no other
+ * classes, is remapped to a package scope instead.
+ *
+ * <p>Mapping providers that are faster in bulk, such as databases or other processes, can override
+ * {@link #mapClassNames(Set)}, {@link #mapFieldNames(Set)} and {@link #mapMethodNames(Set)}, and
+ * {@linkplain #setBulkBatchSize(int) set a batch size}. Items are then collected into batches, the distinct names in each
+ * batch are mapped with one call of each of these methods, and the items are remapped from the results.
  */
 public abstract class UnpickV3Remapper extends UnpickV3Visitor {
+    private static final int ITEMS_PER_TASK = 64;
+    // groups with more constants than this have them remapped in several tasks
+    private static final int CONSTANTS_PER_TASK = 256;
+    // the most parsed descriptors that are kept, evicting the least recently used ones
+    private static final int MAX_PARSED_DESCRIPTORS = 1 << 14;
+    // stands for fields whose descriptor isn't known, and is compared by identity
+    private static final String NO_DESC = new String();
+
     private final UnpickV3Visitor downstream;
+    @Nullable
+    private final UnpickV3RemapperCache cache;
+    private final Function<String, String> classNameMapper = this::mapClassName;
+    private final Function<String, String> descriptorMapper = this::remapDescriptor;
+    private final Function<Member, String> fieldNameMapper = key -> mapFieldName(key.className(), key.name(), key.desc());
+    private final Function<Member, String> methodNameMapper = key -> mapMethodName(key.className(), key.name(), key.desc());
+    @Nullable
+    private ForkJoinPool pool;
+    private boolean preservePackages;
+    private int bulkBatchSize;
+    private final ArrayDeque<ForkJoinTask<List<UnpickItem>>> tasks = new ArrayDeque<>();
+    private List<UnpickItem> batch = new ArrayList<>(ITEMS_PER_TASK);
+    private List<UnpickItem> bulkBatch = new ArrayList<>();
+    private final UnpickV3RemapperCache.Table<String, ParsedDescriptor> parsedDescriptors;
+    private final Map<String, List<GroupScope>> packageScopes;
+    // the descriptors of the fields of each class that has been looked up, by field name
+    private final Map<String, Map<String, String>> fieldDescs;
+    private final ExpressionRemapper expressionRemapper = new ExpressionRemapper();
 
     /**
      * Warning: class names use "." format, not "/" format. {@code classesInPackage} should contain all the classes in
@@ -26,63 +85,438 @@ public abstract class UnpickV3Remapper extends UnpickV3Visitor {
      * package name is already in the key of the map entry).
      */
     public UnpickV3Remapper(UnpickV3Visitor downstream) {
+        this(downstream, null);
+    }
+
+    /**
+     * Creates a remapper that looks up names in the given cache before mapping them, and adds the ones it maps to it.
+     * The cache may be shared with other remappers that map names the same way.
+     */
+    public UnpickV3Remapper(UnpickV3Visitor downstream, @Nullable UnpickV3RemapperCache cache) {
         this.downstream = downstream;
+        this.cache = cache;
+        this.parsedDescriptors = new UnpickV3RemapperCache.Table<>(MAX_PARSED_DESCRIPTORS);
+        this.packageScopes = new ConcurrentHashMap<>();
+        this.fieldDescs = new ConcurrentHashMap<>();
     }
 
-    @Override
-    public void visitGroupDefinition(GroupDefinition groupDefinition) {
-        List<GroupScope> scopes = groupDefinition.scopes().stream()
-                .flatMap(scope -> {
-                    switch (scope) {
-                        case GroupScope.Package(String packageName) -> {
-                            return getClassesInPackage(packageName).stream()
-                                    .map((className) -> new GroupScope.Class(mapClassName(className)));
-                        }
-                        case GroupScope.Class(String className) -> {
-                            return Stream.<GroupScope>of(new GroupScope.Class(mapClassName(className)));
-                        }
-                        case GroupScope.Method(String className, String methodName, String methodDesc) -> {
-                            String newClassName = mapClassName(className);
-                            String newMethodName = mapMethodName(className, methodName, methodDesc);
-                            String newMethodDesc = mapDescriptor(methodDesc);
-                            return Stream.<GroupScope>of(new GroupScope.Method(newClassName, newMethodName, newMethodDesc));
-                        }
-                    }
-                })
-                .toList();
+    /**
+     * Creates a remapper that remaps the items of a bulk batch with the same settings, and the same descriptors, package
+     * scopes and field descriptors, as the given one.
+     */
+    private UnpickV3Remapper(UnpickV3Remapper parent) {
+        this.downstream = parent.downstream;
+        this.cache = null;
+        this.pool = parent.pool;
+        this.preservePackages = parent.preservePackages;
+        this.parsedDescriptors = parent.parsedDescriptors;
+        this.packageScopes = parent.packageScopes;
+        this.fieldDescs = parent.fieldDescs;
+    }
+
+    /**
+     * Returns a remapper that remaps names through each of the given stages in turn, as if they were chained, but in a
+     * single pass that only rebuilds each item once. Each name is passed through the chain once, and the result is
+     * kept. Package scopes and untyped field expressions are looked up with the first stage, and mapped packages with
+     * the last. The downstream visitors of the stages are not used.
+     */
+    public static UnpickV3Remapper compose(UnpickV3Visitor downstream, UnpickV3Remapper... stages) {
+        if (stages.length == 0) {
+            throw new IllegalArgumentException("At least one stage is required");
+        }
+        return new ComposedRemapper(downstream, stages.clone());
+    }
+
+    /**
+     * Sets the pool to remap items on, or {@code null} to remap them on the visiting thread as they are visited, which
+     * is the default. Items that are still being remapped are visited first.
+     */
+    public void setPool(@Nullable ForkJoinPool pool) {
+        flush();
+        this.pool = pool;
+    }
 
-        List<Expression> constants = groupDefinition.constants().stream()
-                .map(constant -> constant.transform(new ExpressionRemapper()))
-                .toList();
+    /**
+     * Sets whether package scopes are kept as package scopes where possible, which is off by default. A package scope
+     * is kept if the classes in the package are all mapped into the same package, and the classes in that package, as
+     * returned by {@link #getClassesInMappedPackage(String)}, are exactly those classes. Otherwise, it is expanded to
+     * class scopes, as it is when this is off.
+     */
+    public void setPreservePackages(boolean preservePackages) {
+        flush();
+        this.preservePackages = preservePackages;
+        packageScopes.clear();
+    }
 
-        downstream.visitGroupDefinition(GroupDefinition.Builder.from(groupDefinition).setScopes(scopes).setConstants(constants).build());
+    /**
+     * Sets the number of items to collect before mapping their names in bulk, or 0 to map each name as it is met, which
+     * is the default. In bulk mode, {@link #flush()} must be called at the end to remap the last batch, and the cache
+     * passed to the constructor, if any, is not used. Items that are still being collected are remapped first.
+     */
+    public void setBulkBatchSize(int bulkBatchSize) {
+        if (bulkBatchSize < 0) {
+            throw new IllegalArgumentException("Bulk batch size must not be negative: " + bulkBatchSize);
+        }
+        flush();
+        this.bulkBatchSize = bulkBatchSize;
     }
 
     @Override
     public void visitHeader(int version) {
+        flush();
         downstream.visitHeader(version);
     }
 
+    @Override
+    public Set<UnpickItem.Kind> getVisitedKinds() {
+        return downstream.getVisitedKinds();
+    }
+
+    @Override
+    public void visitGroupDefinition(GroupDefinition groupDefinition) {
+        visitItem(groupDefinition);
+    }
+
     @Override
     public void visitTargetField(TargetField targetField) {
-        String className = mapClassName(targetField.className());
-        String fieldName = mapFieldName(targetField.className(), targetField.fieldName(), targetField.fieldDesc());
-        String fieldDesc = mapDescriptor(targetField.fieldDesc());
-        downstream.visitTargetField(new TargetField(className, fieldName, fieldDesc, targetField.groupName()));
+        visitItem(targetField);
     }
 
     @Override
     public void visitTargetMethod(TargetMethod targetMethod) {
-        String className = mapClassName(targetMethod.className());
-        String methodName = mapMethodName(targetMethod.className(), targetMethod.methodName(), targetMethod.methodDesc());
-        String methodDesc = mapDescriptor(targetMethod.methodDesc());
-        downstream.visitTargetMethod(new TargetMethod(className, methodName, methodDesc, targetMethod.paramGroups(), targetMethod.returnGroup()));
+        visitItem(targetMethod);
     }
 
     @Override
     public void visitTargetAnnotation(TargetAnnotation targetAnnotation) {
-        String annotationName = mapClassName(targetAnnotation.annotationName());
-        downstream.visitTargetAnnotation(new TargetAnnotation(annotationName, targetAnnotation.groupName()));
+        visitItem(targetAnnotation);
+    }
+
+    /**
+     * Waits for the items that are being remapped on the {@linkplain #setPool(ForkJoinPool) pool}, if any, and visits
+     * them on the downstream visitor, after remapping the items collected for {@linkplain #setBulkBatchSize(int) bulk
+     * mapping}. Errors thrown while remapping them are rethrown here, or by the visit method that is called when they
+     * complete. Does nothing if items are remapped on the visiting thread as they are visited.
+     */
+    public void flush() {
+        if (!bulkBatch.isEmpty()) {
+            remapBulkBatch();
+        }
+        if (!batch.isEmpty() && pool != null) {
+            submitBatch(pool, this);
+        }
+        while (!tasks.isEmpty()) {
+            visitOldest();
+        }
+    }
+
+    private void visitItem(UnpickItem item) {
+        if (bulkBatchSize != 0) {
+            bulkBatch.add(item);
+            if (bulkBatch.size() >= bulkBatchSize) {
+                remapBulkBatch();
+            }
+            return;
+        }
+
+        if (pool == null) {
+            remap(item).accept(downstream);
+            return;
+        }
+
+        batch.add(item);
+        if (batch.size() == ITEMS_PER_TASK) {
+            submitBatch(pool, this);
+        }
+    }
+
+    private void submitBatch(ForkJoinPool pool, UnpickV3Remapper remapper) {
+        // visit the batches that are already done, and wait for the oldest one if the window is full
+        int window = pool.getParallelism() * 2;
+        while (!tasks.isEmpty() && (tasks.size() >= window || tasks.peekFirst().isDone())) {
+            visitOldest();
+        }
+
+        List<UnpickItem> items = batch;
+        tasks.addLast(pool.submit(() -> {
+            List<UnpickItem> remapped = new ArrayList<>(items.size());
+            for (UnpickItem item : items) {
+                remapped.add(remapper.remap(item));
+            }
+            return remapped;
+        }));
+        batch = new ArrayList<>(ITEMS_PER_TASK);
+    }
+
+    /**
+     * Maps the distinct names in the collected items with the bulk mapping methods, and remaps the items from the
+     * results, on the pool if there is one.
+     */
+    private void remapBulkBatch() {
+        List<UnpickItem> items = bulkBatch;
+        bulkBatch = new ArrayList<>(items.size());
+
+        BulkKeyCollector keys = new BulkKeyCollector();
+        for (UnpickItem item : items) {
+            keys.collect(item);
+        }
+        UnpickV3Remapper remapper = new BulkRemapper(
+                this,
+                keys.classNames.isEmpty() ? Map.of() : mapClassNames(keys.classNames),
+                keys.fieldNames.isEmpty() ? Map.of() : mapFieldNames(keys.fieldNames),
+                keys.methodNames.isEmpty() ? Map.of() : mapMethodNames(keys.methodNames),
+                keys.packageClasses
+        );
+
+        for (UnpickItem item : items) {
+            if (pool == null) {
+                remapper.remap(item).accept(downstream);
+                continue;
+            }
+            batch.add(item);
+            if (batch.size() == ITEMS_PER_TASK) {
+                submitBatch(pool, remapper);
+            }
+        }
+        if (!batch.isEmpty() && pool != null) {
+            submitBatch(pool, remapper);
+        }
+    }
+
+    private void visitOldest() {
+        List<UnpickItem> remapped;
+        try {
+            remapped = tasks.removeFirst().join();
+        } catch (RuntimeException | Error e) {
+            for (ForkJoinTask<List<UnpickItem>> task : tasks) {
+                task.cancel(false);
+            }
+            tasks.clear();
+            batch.clear();
+            bulkBatch.clear();
+            throw e;
+        }
+        for (UnpickItem item : remapped) {
+            item.accept(downstream);
+        }
+    }
+
+    private UnpickItem remap(UnpickItem item) {
+        return switch (item) {
+            case GroupDefinition groupDefinition -> remapGroupDefinition(groupDefinition);
+            case TargetField targetField -> remapTargetField(targetField);
+            case TargetMethod targetMethod -> remapTargetMethod(targetMethod);
+            case TargetAnnotation targetAnnotation -> remapTargetAnnotation(targetAnnotation);
+        };
+    }
+
+    private GroupDefinition remapGroupDefinition(GroupDefinition groupDefinition) {
+        List<GroupScope> scopes = remapScopes(groupDefinition.scopes());
+        List<Expression> constants = remapConstants(groupDefinition.constants());
+        if (scopes == groupDefinition.scopes() && constants == groupDefinition.constants()) {
+            return groupDefinition;
+        }
+        return new GroupDefinition(
+                scopes,
+                groupDefinition.flags(),
+                groupDefinition.strict(),
+                groupDefinition.dataType(),
+                groupDefinition.name(),
+                constants,
+                groupDefinition.format(),
+                groupDefinition.docs()
+        );
+    }
+
+    private List<GroupScope> remapScopes(List<GroupScope> scopes) {
+        // groups scoped to a single package all share the same list
+        if (scopes.size() == 1 && scopes.get(0) instanceof GroupScope.Package(String packageName)) {
+            return packageScopes(packageName);
+        }
+
+        // the list is only copied once a scope changes
+        List<GroupScope> remapped = null;
+        for (int i = 0; i < scopes.size(); i++) {
+            GroupScope scope = scopes.get(i);
+            if (scope instanceof GroupScope.Package(String packageName)) {
+                if (remapped == null) {
+                    remapped = new ArrayList<>(scopes.subList(0, i));
+                }
+                remapped.addAll(packageScopes(packageName));
+                continue;
+            }
+
+            GroupScope newScope = remapScope(scope);
+            if (remapped == null && newScope != scope) {
+                remapped = new ArrayList<>(scopes.size());
+                remapped.addAll(scopes.subList(0, i));
+            }
+            if (remapped != null) {
+                remapped.add(newScope);
+            }
+        }
+        return remapped == null ? scopes : remapped;
+    }
+
+    private GroupScope remapScope(GroupScope scope) {
+        switch (scope) {
+            case GroupScope.Package packageScope -> throw new AssertionError("Package scopes are expanded separately");
+            case GroupScope.Class(String className) -> {
+                String newClassName = cachedClassName(className);
+                return newClassName.equals(className) ? scope : new GroupScope.Class(newClassName);
+            }
+            case GroupScope.Method(String className, String methodName, String methodDesc) -> {
+                String newClassName = cachedClassName(className);
+                String newMethodName = cachedMethodName(className, methodName, methodDesc);
+                String newMethodDesc = cachedDescriptor(methodDesc);
+                if (newClassName.equals(className) && newMethodName.equals(methodName) && newMethodDesc.equals(methodDesc)) {
+                    return scope;
+                }
+                return new GroupScope.Method(newClassName, newMethodName, newMethodDesc);
+            }
+        }
+    }
+
+    /**
+     * Returns the remapped scopes of the classes in the given package, which are only looked up and remapped the first
+     * time the package is seen.
+     */
+    private List<GroupScope> packageScopes(String packageName) {
+        List<GroupScope> scopes = packageScopes.get(packageName);
+        if (scopes == null) {
+            List<String> classNames = getClassesInPackage(packageName);
+            String[] mappedClassNames = new String[classNames.size()];
+            for (int i = 0; i < mappedClassNames.length; i++) {
+                mappedClassNames[i] = cachedClassName(classNames.get(i));
+            }
+
+            String mappedPackage = preservePackages ? findMappedPackage(mappedClassNames) : null;
+            if (mappedPackage != null) {
+                scopes = List.of(new GroupScope.Package(mappedPackage));
+            } else {
+                GroupScope[] classScopes = new GroupScope[mappedClassNames.length];
+                for (int i = 0; i < classScopes.length; i++) {
+                    classScopes[i] = new GroupScope.Class(mappedClassNames[i]);
+                }
+                scopes = List.of(classScopes);
+            }
+            List<GroupScope> existing = packageScopes.putIfAbsent(packageName, scopes);
+            if (existing != null) {
+                scopes = existing;
+            }
+        }
+        return scopes;
+    }
+
+    /**
+     * Returns the package that all the given classes are in, if it has no other classes, or {@code null} otherwise.
+     */
+    @Nullable
+    private String findMappedPackage(String[] mappedClassNames) {
+        if (mappedClassNames.length == 0) {
+            return null;
+        }
+
+        String mappedPackage = packageOf(mappedClassNames[0]);
+        if (mappedPackage.isEmpty()) {
+            return null;
+        }
+        for (String mappedClassName : mappedClassNames) {
+            if (!packageOf(mappedClassName).equals(mappedPackage)) {
+                return null;
+            }
+        }
+
+        List<String> classesInMappedPackage = getClassesInMappedPackage(mappedPackage);
+        if (classesInMappedPackage == null || !Set.copyOf(classesInMappedPackage).equals(Set.copyOf(Arrays.asList(mappedClassNames)))) {
+            return null;
+        }
+        return mappedPackage;
+    }
+
+    private static String packageOf(String className) {
+        int lastDot = className.lastIndexOf('.');
+        return lastDot == -1 ? "" : className.substring(0, lastDot);
+    }
+
+    private List<Expression> remapConstants(List<Expression> constants) {
+        if (pool == null || constants.size() <= CONSTANTS_PER_TASK) {
+            List<Expression> remapped = remapConstants(constants, 0, constants.size());
+            return remapped == null ? constants : remapped;
+        }
+
+        // this runs in a task of the pool, so the parts are forked to the same pool
+        prefetchFieldDescs(constants);
+        List<ForkJoinTask<List<Expression>>> parts = new ArrayList<>();
+        for (int start = 0; start < constants.size(); start += CONSTANTS_PER_TASK) {
+            int from = start;
+            int to = Math.min(start + CONSTANTS_PER_TASK, constants.size());
+            parts.add(ForkJoinTask.adapt(() -> remapConstants(constants, from, to)));
+        }
+        ForkJoinTask.invokeAll(parts);
+
+        List<Expression> remapped = null;
+        for (int i = 0; i < parts.size(); i++) {
+            int from = i * CONSTANTS_PER_TASK;
+            int to = Math.min(from + CONSTANTS_PER_TASK, constants.size());
+            List<Expression> part = parts.get(i).join();
+            if (part != null && remapped == null) {
+                remapped = new ArrayList<>(constants.size());
+                remapped.addAll(constants.subList(0, from));
+            }
+            if (remapped != null) {
+                remapped.addAll(part != null ? part : constants.subList(from, to));
+            }
+        }
+        return remapped == null ? constants : remapped;
+    }
+
+    /**
+     * Returns the remapped constants between the given indices, or {@code null} if they are all unchanged.
+     */
+    @Nullable
+    private List<Expression> remapConstants(List<Expression> constants, int from, int to) {
+        List<Expression> remapped = null;
+        for (int i = from; i < to; i++) {
+            Expression constant = constants.get(i);
+            Expression newConstant = constant.transform(expressionRemapper);
+            if (remapped == null && newConstant != constant) {
+                remapped = new ArrayList<>(to - from);
+                remapped.addAll(constants.subList(from, i));
+            }
+            if (remapped != null) {
+                remapped.add(newConstant);
+            }
+        }
+        return remapped;
+    }
+
+    private TargetField remapTargetField(TargetField targetField) {
+        String className = cachedClassName(targetField.className());
+        String fieldName = cachedFieldName(targetField.className(), targetField.fieldName(), targetField.fieldDesc());
+        String fieldDesc = cachedDescriptor(targetField.fieldDesc());
+        if (className.equals(targetField.className()) && fieldName.equals(targetField.fieldName()) && fieldDesc.equals(targetField.fieldDesc())) {
+            return targetField;
+        }
+        return new TargetField(className, fieldName, fieldDesc, targetField.groupName());
+    }
+
+    private TargetMethod remapTargetMethod(TargetMethod targetMethod) {
+        String className = cachedClassName(targetMethod.className());
+        String methodName = cachedMethodName(targetMethod.className(), targetMethod.methodName(), targetMethod.methodDesc());
+        String methodDesc = cachedDescriptor(targetMethod.methodDesc());
+        if (className.equals(targetMethod.className()) && methodName.equals(targetMethod.methodName()) && methodDesc.equals(targetMethod.methodDesc())) {
+            return targetMethod;
+        }
+        return new TargetMethod(className, methodName, methodDesc, targetMethod.paramGroups(), targetMethod.returnGroup());
+    }
+
+    private TargetAnnotation remapTargetAnnotation(TargetAnnotation targetAnnotation) {
+        String annotationName = cachedClassName(targetAnnotation.annotationName());
+        if (annotationName.equals(targetAnnotation.annotationName())) {
+            return targetAnnotation;
+        }
+        return new TargetAnnotation(annotationName, targetAnnotation.groupName());
     }
 
     protected abstract String mapClassName(String className);
@@ -95,52 +529,461 @@ public abstract class UnpickV3Remapper extends UnpickV3Visitor {
 
     protected abstract String getFieldDesc(String className, String fieldName);
 
-    private String mapDescriptor(String descriptor) {
-        StringBuilder mappedDescriptor = new StringBuilder();
+    /**
+     * Returns the descriptors of all the fields of the given class by name, or {@code null} if they can't be listed,
+     * for finding the descriptors of field expressions without a type. Each class is only looked up once per remapper,
+     * unless several threads miss it at the same time, and {@link #getFieldDesc(String, String)} is then only used for
+     * fields that aren't in the returned map, such as inherited ones. Returns {@code null} by default, so unless this
+     * is overridden, fields are looked up one at a time rather than class by class.
+     */
+    @Nullable
+    protected Map<String, String> getFieldDescs(String className) {
+        return null;
+    }
+
+    /**
+     * Returns all the classes in the given package after mapping, in "." format, or {@code null} if they aren't known.
+     * Only used if {@linkplain #setPreservePackages(boolean) packages are preserved}, to check that no other package is
+     * merged into the package a package scope is mapped to. Returns {@code null} by default, so package scopes are
+     * always expanded unless this is overridden.
+     */
+    @Nullable
+    protected List<String> getClassesInMappedPackage(String mappedPackage) {
+        return null;
+    }
+
+    /**
+     * Maps the given class names, in "." format, when {@linkplain #setBulkBatchSize(int) mapping in bulk}. Names that
+     * are missing from the returned map are not mapped. By default, maps each name with {@link #mapClassName(String)}.
+     */
+    protected Map<String, String> mapClassNames(Set<String> classNames) {
+        Map<String, String> mappedClassNames = HashMap.newHashMap(classNames.size());
+        for (String className : classNames) {
+            mappedClassNames.put(className, mapClassName(className));
+        }
+        return mappedClassNames;
+    }
+
+    /**
+     * Maps the names of the given fields when {@linkplain #setBulkBatchSize(int) mapping in bulk}. Fields that are
+     * missing from the returned map are not mapped. By default, maps each field with
+     * {@link #mapFieldName(String, String, String)}.
+     */
+    protected Map<Member, String> mapFieldNames(Set<Member> fields) {
+        Map<Member, String> mappedFieldNames = HashMap.newHashMap(fields.size());
+        for (Member field : fields) {
+            mappedFieldNames.put(field, mapFieldName(field.className(), field.name(), field.desc()));
+        }
+        return mappedFieldNames;
+    }
+
+    /**
+     * Maps the names of the given methods when {@linkplain #setBulkBatchSize(int) mapping in bulk}. Methods that are
+     * missing from the returned map are not mapped. By default, maps each method with
+     * {@link #mapMethodName(String, String, String)}.
+     */
+    protected Map<Member, String> mapMethodNames(Set<Member> methods) {
+        Map<Member, String> mappedMethodNames = HashMap.newHashMap(methods.size());
+        for (Member method : methods) {
+            mappedMethodNames.put(method, mapMethodName(method.className(), method.name(), method.desc()));
+        }
+        return mappedMethodNames;
+    }
+
+    private String cachedClassName(String className) {
+        return cache == null ? mapClassName(className) : cache.mapClassName(className, classNameMapper);
+    }
+
+    private String cachedFieldName(String className, String fieldName, String fieldDesc) {
+        if (cache == null) {
+            return mapFieldName(className, fieldName, fieldDesc);
+        }
+        return cache.mapFieldName(new Member(className, fieldName, fieldDesc), fieldNameMapper);
+    }
+
+    private String cachedMethodName(String className, String methodName, String methodDesc) {
+        if (cache == null) {
+            return mapMethodName(className, methodName, methodDesc);
+        }
+        return cache.mapMethodName(new Member(className, methodName, methodDesc), methodNameMapper);
+    }
+
+    private String cachedDescriptor(String descriptor) {
+        return cache == null ? remapDescriptor(descriptor) : cache.mapDescriptor(descriptor, descriptorMapper);
+    }
+
+    /**
+     * Remaps the class names in the descriptor, which is only parsed again if it has been evicted. Returns the
+     * descriptor itself if none of them change.
+     */
+    private String remapDescriptor(String descriptor) {
+        if (descriptor.indexOf('L') == -1) {
+            return descriptor;
+        }
+
+        ParsedDescriptor parsed = parsedDescriptor(descriptor);
+        StringBuilder mappedDescriptor = null;
+        int copied = 0;
+        for (int i = 0; i < parsed.classNames.length; i++) {
+            String className = parsed.classNames[i];
+            String mappedClassName = cachedClassName(className);
+            if (mappedDescriptor == null) {
+                if (mappedClassName.equals(className)) {
+                    continue;
+                }
+                mappedDescriptor = new StringBuilder(descriptor.length() + 16);
+            }
+            mappedDescriptor.append(descriptor, copied, parsed.classStarts[i]);
+            for (int j = 0; j < mappedClassName.length(); j++) {
+                char c = mappedClassName.charAt(j);
+                mappedDescriptor.append(c == '.' ? '/' : c);
+            }
+            copied = parsed.classEnds[i];
+        }
+
+        if (mappedDescriptor == null) {
+            return descriptor;
+        }
+        return mappedDescriptor.append(descriptor, copied, descriptor.length()).toString();
+    }
+
+    private ParsedDescriptor parsedDescriptor(String descriptor) {
+        return parsedDescriptors.get(descriptor, ParsedDescriptor::parse);
+    }
+
+    /**
+     * The class names referenced by a descriptor, in "." format, and the spans of their internal names in it.
+     */
+    private record ParsedDescriptor(String[] classNames, int[] classStarts, int[] classEnds) {
+        static ParsedDescriptor parse(String descriptor) {
+            int count = 0;
+            int end = 0;
+            int start;
+            while ((start = descriptor.indexOf('L', end)) != -1) {
+                end = descriptor.indexOf(';', start);
+                if (end == -1) {
+                    throw new AssertionError("Invalid descriptor: " + descriptor);
+                }
+                count++;
+            }
+
+            String[] classNames = new String[count];
+            int[] classStarts = new int[count];
+            int[] classEnds = new int[count];
+            end = 0;
+            for (int i = 0; i < count; i++) {
+                start = descriptor.indexOf('L', end) + 1;
+                end = descriptor.indexOf(';', start);
+                classNames[i] = descriptor.substring(start, end).replace('/', '.');
+                classStarts[i] = start;
+                classEnds[i] = end;
+            }
+            return new ParsedDescriptor(classNames, classStarts, classEnds);
+        }
+    }
+
+    /**
+     * Returns the descriptor of a field expression without a type. The fields of each class are listed the first time
+     * one of them is seen, and fields that aren't listed are looked up once each, including those whose descriptor
+     * isn't known. The lookups are made without holding a lock, so if two threads miss the same class or field at the
+     * same time, both look it up, and the first result is kept.
+     */
+    @Nullable
+    private String fieldDesc(String className, String fieldName) {
+        Map<String, String> classFieldDescs = fieldDescs.get(className);
+        if (classFieldDescs == null) {
+            classFieldDescs = listFieldDescs(className);
+            Map<String, String> existing = fieldDescs.putIfAbsent(className, classFieldDescs);
+            if (existing != null) {
+                classFieldDescs = existing;
+            }
+        }
+        String fieldDesc = classFieldDescs.get(fieldName);
+        if (fieldDesc == null) {
+            fieldDesc = getFieldDesc(className, fieldName);
+            if (fieldDesc == null) {
+                fieldDesc = NO_DESC;
+            }
+            String existing = classFieldDescs.putIfAbsent(fieldName, fieldDesc);
+            if (existing != null) {
+                fieldDesc = existing;
+            }
+        }
+        return fieldDesc == NO_DESC ? null : fieldDesc;
+    }
+
+    private Map<String, String> listFieldDescs(String className) {
+        Map<String, String> classFieldDescs = getFieldDescs(className);
+        return classFieldDescs == null ? new ConcurrentHashMap<>() : new ConcurrentHashMap<>(classFieldDescs);
+    }
+
+    /**
+     * Looks up the descriptors of the untyped fields in the given constants, grouped by class, so that the tasks the
+     * constants are split into on the pool don't all miss the same classes at once and list them several times. This
+     * doesn't save any lookups otherwise, since the fields of each class are listed on first use anyway, so constants
+     * that are remapped sequentially aren't prefetched.
+     */
+    private void prefetchFieldDescs(List<Expression> constants) {
+        Map<String, Set<String>> fieldNamesByClass = new HashMap<>();
+        ExpressionVisitor collector = new ExpressionVisitor() {
+            @Override
+            public void visitFieldExpression(FieldExpression fieldExpression) {
+                if (fieldExpression.fieldName != null && fieldExpression.fieldType == null) {
+                    fieldNamesByClass.computeIfAbsent(fieldExpression.className, k -> new HashSet<>()).add(fieldExpression.fieldName);
+                }
+            }
+        };
+        for (Expression constant : constants) {
+            constant.accept(collector);
+        }
+        fieldNamesByClass.forEach((className, fieldNames) -> {
+            for (String fieldName : fieldNames) {
+                fieldDesc(className, fieldName);
+            }
+        });
+    }
+
+    private static String fieldTypeDesc(DataType fieldType) {
+        return switch (fieldType) {
+            case BYTE -> "B";
+            case SHORT -> "S";
+            case INT -> "I";
+            case LONG -> "J";
+            case FLOAT -> "F";
+            case DOUBLE -> "D";
+            case CHAR -> "C";
+            case STRING -> "Ljava/lang/String;";
+            case CLASS -> "Ljava/lang/Class;";
+        };
+    }
+
+    /**
+     * Collects the distinct names that remapping some items will look up, for mapping them in bulk.
+     */
+    private final class BulkKeyCollector extends ExpressionVisitor {
+        final Set<String> classNames = new HashSet<>();
+        final Set<Member> fieldNames = new HashSet<>();
+        final Set<Member> methodNames = new HashSet<>();
+        final Map<String, List<String>> packageClasses = new HashMap<>();
+
+        void collect(UnpickItem item) {
+            switch (item) {
+                case GroupDefinition groupDefinition -> {
+                    for (GroupScope scope : groupDefinition.scopes()) {
+                        collectScope(scope);
+                    }
+                    for (Expression constant : groupDefinition.constants()) {
+                        constant.accept(this);
+                    }
+                }
+                case TargetField targetField -> {
+                    classNames.add(targetField.className());
+                    fieldNames.add(new Member(targetField.className(), targetField.fieldName(), targetField.fieldDesc()));
+                    collectDescriptor(targetField.fieldDesc());
+                }
+                case TargetMethod targetMethod -> {
+                    classNames.add(targetMethod.className());
+                    methodNames.add(new Member(targetMethod.className(), targetMethod.methodName(), targetMethod.methodDesc()));
+                    collectDescriptor(targetMethod.methodDesc());
+                }
+                case TargetAnnotation targetAnnotation -> classNames.add(targetAnnotation.annotationName());
+            }
+        }
+
+        private void collectScope(GroupScope scope) {
+            switch (scope) {
+                case GroupScope.Package(String packageName) -> {
+                    // packages that were already remapped aren't looked up again
+                    if (!packageScopes.containsKey(packageName) && !packageClasses.containsKey(packageName)) {
+                        List<String> classes = getClassesInPackage(packageName);
+                        packageClasses.put(packageName, classes);
+                        classNames.addAll(classes);
+                    }
+                }
+                case GroupScope.Class(String className) -> classNames.add(className);
+                case GroupScope.Method(String className, String methodName, String methodDesc) -> {
+                    classNames.add(className);
+                    methodNames.add(new Member(className, methodName, methodDesc));
+                    collectDescriptor(methodDesc);
+                }
+            }
+        }
 
-        int semicolonIndex = 0;
-        int lIndex;
-        while ((lIndex = descriptor.indexOf('L', semicolonIndex)) != -1) {
-            mappedDescriptor.append(descriptor, semicolonIndex, lIndex + 1);
-            semicolonIndex = descriptor.indexOf(';', lIndex);
-            if (semicolonIndex == -1) {
-                throw new AssertionError("Invalid descriptor: " + descriptor);
+        private void collectDescriptor(String descriptor) {
+            if (descriptor.indexOf('L') != -1) {
+                classNames.addAll(Arrays.asList(parsedDescriptor(descriptor).classNames));
             }
-            String className = descriptor.substring(lIndex + 1, semicolonIndex).replace('/', '.');
-            mappedDescriptor.append(mapClassName(className).replace('.', '/'));
         }
 
-        return mappedDescriptor.append(descriptor, semicolonIndex, descriptor.length()).toString();
+        @Override
+        public void visitFieldExpression(FieldExpression fieldExpression) {
+            classNames.add(fieldExpression.className);
+            if (fieldExpression.fieldName == null) {
+                return;
+            }
+
+            String fieldDesc = fieldExpression.fieldType == null
+                    ? fieldDesc(fieldExpression.className, fieldExpression.fieldName)
+                    : fieldTypeDesc(fieldExpression.fieldType);
+            fieldNames.add(new Member(fieldExpression.className, fieldExpression.fieldName, fieldDesc));
+        }
     }
 
     private class ExpressionRemapper extends ExpressionTransformer {
         @Override
         public Expression transformFieldExpression(FieldExpression fieldExpression) {
-            String className = mapClassName(fieldExpression.className);
+            String className = cachedClassName(fieldExpression.className);
 
             if (fieldExpression.fieldName == null) {
+                if (className.equals(fieldExpression.className)) {
+                    return fieldExpression;
+                }
                 return new FieldExpression(className, null, fieldExpression.fieldType, fieldExpression.isStatic);
             }
 
-            String fieldDesc;
-            if (fieldExpression.fieldType == null) {
-                fieldDesc = getFieldDesc(fieldExpression.className, fieldExpression.fieldName);
-            } else {
-                fieldDesc = switch (fieldExpression.fieldType) {
-                    case BYTE -> "B";
-                    case SHORT -> "S";
-                    case INT -> "I";
-                    case LONG -> "J";
-                    case FLOAT -> "F";
-                    case DOUBLE -> "D";
-                    case CHAR -> "C";
-                    case STRING -> "Ljava/lang/String;";
-                    case CLASS -> "Ljava/lang/Class;";
-                };
-            }
-
-            String fieldName = mapFieldName(fieldExpression.className, fieldExpression.fieldName, fieldDesc);
+            String fieldDesc = fieldExpression.fieldType == null
+                    ? fieldDesc(fieldExpression.className, fieldExpression.fieldName)
+                    : fieldTypeDesc(fieldExpression.fieldType);
+            String fieldName = cachedFieldName(fieldExpression.className, fieldExpression.fieldName, fieldDesc);
+            if (className.equals(fieldExpression.className) && fieldName.equals(fieldExpression.fieldName)) {
+                return fieldExpression;
+            }
             return new FieldExpression(className, fieldName, fieldExpression.fieldType, fieldExpression.isStatic);
         }
     }
+
+    private static final class ComposedRemapper extends UnpickV3Remapper {
+        private final UnpickV3Remapper[] stages;
+
+        ComposedRemapper(UnpickV3Visitor downstream, UnpickV3Remapper[] stages) {
+            super(downstream, new UnpickV3RemapperCache());
+            this.stages = stages;
+        }
+
+        @Override
+        protected String mapClassName(String className) {
+            for (UnpickV3Remapper stage : stages) {
+                className = stage.cachedClassName(className);
+            }
+            return className;
+        }
+
+        @Override
+        protected String mapFieldName(String className, String fieldName, String fieldDesc) {
+            for (int i = 0; ; i++) {
+                UnpickV3Remapper stage = stages[i];
+                fieldName = stage.cachedFieldName(className, fieldName, fieldDesc);
+                if (i == stages.length - 1) {
+                    return fieldName;
+                }
+                className = stage.cachedClassName(className);
+                fieldDesc = stage.cachedDescriptor(fieldDesc);
+            }
+        }
+
+        @Override
+        protected String mapMethodName(String className, String methodName, String methodDesc) {
+            for (int i = 0; ; i++) {
+                UnpickV3Remapper stage = stages[i];
+                methodName = stage.cachedMethodName(className, methodName, methodDesc);
+                if (i == stages.length - 1) {
+                    return methodName;
+                }
+                className = stage.cachedClassName(className);
+                methodDesc = stage.cachedDescriptor(methodDesc);
+            }
+        }
+
+        @Override
+        protected List<String> getClassesInPackage(String pkg) {
+            return stages[0].getClassesInPackage(pkg);
+        }
+
+        @Override
+        protected String getFieldDesc(String className, String fieldName) {
+            return stages[0].getFieldDesc(className, fieldName);
+        }
+
+        @Override
+        @Nullable
+        protected Map<String, String> getFieldDescs(String className) {
+            return stages[0].getFieldDescs(className);
+        }
+
+        @Override
+        @Nullable
+        protected List<String> getClassesInMappedPackage(String mappedPackage) {
+            return stages[stages.length - 1].getClassesInMappedPackage(mappedPackage);
+        }
+    }
+
+    /**
+     * A field or method, by the name of its class in "." format, its name and its descriptor.
+     */
+    public record Member(String className, String name, String desc) {
+    }
+
+    /**
+     * Remaps the items of a bulk batch from the names that were mapped for them.
+     */
+    private static final class BulkRemapper extends UnpickV3Remapper {
+        private final UnpickV3Remapper parent;
+        private final Map<String, String> classNames;
+        private final Map<Member, String> fieldNames;
+        private final Map<Member, String> methodNames;
+        private final Map<String, List<String>> packageClasses;
+
+        BulkRemapper(
+                UnpickV3Remapper parent,
+                Map<String, String> classNames,
+                Map<Member, String> fieldNames,
+                Map<Member, String> methodNames,
+                Map<String, List<String>> packageClasses
+        ) {
+            super(parent);
+            this.parent = parent;
+            this.classNames = classNames;
+            this.fieldNames = fieldNames;
+            this.methodNames = methodNames;
+            this.packageClasses = packageClasses;
+        }
+
+        @Override
+        protected String mapClassName(String className) {
+            return classNames.getOrDefault(className, className);
+        }
+
+        @Override
+        protected String mapFieldName(String className, String fieldName, String fieldDesc) {
+            return fieldNames.getOrDefault(new Member(className, fieldName, fieldDesc), fieldName);
+        }
+
+        @Override
+        protected String mapMethodName(String className, String methodName, String methodDesc) {
+            return methodNames.getOrDefault(new Member(className, methodName, methodDesc), methodName);
+        }
+
+        @Override
+        protected List<String> getClassesInPackage(String pkg) {
+            List<String> classes = packageClasses.get(pkg);
+            return classes != null ? classes : parent.getClassesInPackage(pkg);
+        }
+
+        @Override
+        protected String getFieldDesc(String className, String fieldName) {
+            return parent.getFieldDesc(className, fieldName);
+        }
+
+        @Override
+        @Nullable
+        protected Map<String, String> getFieldDescs(String className) {
+            return parent.getFieldDescs(className);
+        }
+
+        @Override
+        @Nullable
+        protected List<String> getClassesInMappedPackage(String mappedPackage) {
+            return parent.getClassesInMappedPackage(mappedPackage);
+        }
+    }
 }
@@ -0,0 +1,191 @@
+package org.vineflower.unpick.parser;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Remembers the results of the mapping methods of {@link UnpickV3Remapper}s, so that names and descriptors that appear
+ * many times in a file are only mapped once. Class names, descriptors, field names and method names each have their own
+ * table, which holds at most a given number of entries and evicts the least recently used ones first.
+ *
+ * <p>A cache can be shared by any number of remappers, including ones used concurrently on different threads, as long as
+ * they all map names the same way. Each table is split into stripes with their own lock, and mapping methods are called
+ * without holding a lock, so a slow lookup doesn't block other threads. If two threads miss the same key at the same
+ * time, both call the mapping method, and the first result is kept. Since each stripe evicts its own least recently
+ * used entries, a table may evict entries before it holds the maximum number of them if its keys are unevenly spread.
+ */
+public final class UnpickV3RemapperCache {
+    public static final int DEFAULT_MAX_SIZE = 1 << 16;
+    private static final int STRIPES = 16;
+
+    private final Table<String, String> classNames;
+    private final Table<String, String> descriptors;
+    private final Table<UnpickV3Remapper.Member, String> fieldNames;
+    private final Table<UnpickV3Remapper.Member, String> methodNames;
+
+    public UnpickV3RemapperCache() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * @param maxSize the maximum number of entries in each of the tables
+     */
+    public UnpickV3RemapperCache(int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Max size must be at least 1: " + maxSize);
+        }
+        classNames = new Table<>(maxSize);
+        descriptors = new Table<>(maxSize);
+        fieldNames = new Table<>(maxSize);
+        methodNames = new Table<>(maxSize);
+    }
+
+    public Stats getClassNameStats() {
+        return classNames.stats();
+    }
+
+    public Stats getDescriptorStats() {
+        return descriptors.stats();
+    }
+
+    public Stats getFieldNameStats() {
+        return fieldNames.stats();
+    }
+
+    public Stats getMethodNameStats() {
+        return methodNames.stats();
+    }
+
+    /**
+     * Removes all entries. The hit and miss counts are kept.
+     */
+    public void clear() {
+        classNames.clear();
+        descriptors.clear();
+        fieldNames.clear();
+        methodNames.clear();
+    }
+
+    String mapClassName(String className, Function<String, String> mapper) {
+        return classNames.get(className, mapper);
+    }
+
+    String mapDescriptor(String descriptor, Function<String, String> mapper) {
+        return descriptors.get(descriptor, mapper);
+    }
+
+    String mapFieldName(UnpickV3Remapper.Member key, Function<UnpickV3Remapper.Member, String> mapper) {
+        return fieldNames.get(key, mapper);
+    }
+
+    String mapMethodName(UnpickV3Remapper.Member key, Function<UnpickV3Remapper.Member, String> mapper) {
+        return methodNames.get(key, mapper);
+    }
+
+    /**
+     * The number of lookups that were found in a table, and that had to be mapped, and the number of entries it holds.
+     */
+    public record Stats(long hits, long misses, int size) {
+        public double hitRate() {
+            long lookups = hits + misses;
+            return lookups == 0 ? 0 : (double) hits / lookups;
+        }
+    }
+
+    /**
+     * A striped least recently used table, which is also used by {@link UnpickV3Remapper} for its parsed descriptors.
+     */
+    static final class Table<K, V> {
+        private final Stripe<K, V>[] stripes;
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        Table(int maxSize) {
+            // the stripes add up to the max size, with the remainder spread over the first ones
+            int stripeCount = Math.min(STRIPES, maxSize);
+            stripes = new Stripe[stripeCount];
+            for (int i = 0; i < stripeCount; i++) {
+                stripes[i] = new Stripe<>(maxSize / stripeCount + (i < maxSize % stripeCount ? 1 : 0));
+            }
+        }
+
+        V get(K key, Function<K, V> mapper) {
+            int hash = key.hashCode();
+            Stripe<K, V> stripe = stripes[Math.floorMod(hash ^ (hash >>> 16), stripes.length)];
+            V value;
+            synchronized (stripe) {
+                value = stripe.get(key);
+            }
+            if (value != null) {
+                hits.increment();
+                return value;
+            }
+
+            misses.increment();
+            value = mapper.apply(key);
+            synchronized (stripe) {
+                V existing = stripe.putIfAbsent(key, value);
+                return existing != null ? existing : value;
+            }
+        }
+
+        Stats stats() {
+            int size = 0;
+            for (Stripe<K, V> stripe : stripes) {
+                synchronized (stripe) {
+                    size += stripe.size();
+                }
+            }
+            return new Stats(hits.sum(), misses.sum(), size);
+        }
+
+        void clear() {
+            for (Stripe<K, V> stripe : stripes) {
+                synchronized (stripe) {
+                    stripe.clear();
+                }
+            }
+        }
+    }
+
+    /**
+     * A least recently used map of at most a given size. Not thread-safe; the table locks it.
+     */
+    private static final class Stripe<K, V> {
+        private final LinkedHashMap<K, V> entries = new LinkedHashMap<>(16, 0.75f, true);
+        private final int maxSize;
+
+        Stripe(int maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        @Nullable
+        V get(K key) {
+            return entries.get(key);
+        }
+
+        @Nullable
+        V putIfAbsent(K key, V value) {
+            V existing = entries.putIfAbsent(key, value);
+            if (existing == null && entries.size() > maxSize) {
+                Iterator<K> eldest = entries.keySet().iterator();
+                eldest.next();
+                eldest.remove();
+            }
+            return existing;
+        }
+
+        int size() {
+            return entries.size();
+        }
+
+        void clear() {
+            entries.clear();
+        }
+    }
+}
@@ -1,17 +1,26 @@
 package org.vineflower.unpick.parser;
 
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 
+import org.jetbrains.annotations.Nullable;
+
 import org.vineflower.unpick.parser.tree.DataType;
 import org.vineflower.unpick.parser.tree.GroupDefinition;
+import org.vineflower.unpick.parser.tree.GroupFormat;
 import org.vineflower.unpick.parser.tree.GroupScope;
 import org.vineflower.unpick.parser.tree.Literal;
 import org.vineflower.unpick.parser.tree.TargetAnnotation;
 import org.vineflower.unpick.parser.tree.TargetField;
 import org.vineflower.unpick.parser.tree.TargetMethod;
+import org.vineflower.unpick.parser.tree.UnpickItem;
 import org.vineflower.unpick.parser.tree.UnpickV3Visitor;
 import org.vineflower.unpick.parser.tree.expr.BinaryExpression;
 import org.vineflower.unpick.parser.tree.expr.CastExpression;
@@ -25,12 +34,56 @@ import org.vineflower.unpick.parser.tree.expr.UnaryExpression;
 /**
  * A visitor that generates .unpick v3 format text. Useful for programmatically writing .unpick v3 format files;
  * or remapping them, when used as the delegate for an instance of {@link UnpickV3Remapper}.
+ *
+ * <p>By default, the text is kept in memory and returned by {@link #getOutput()}. Alternatively, it can be streamed to
+ * an {@link Appendable} or a {@link WritableByteChannel}, so that memory use doesn't depend on the size of the output.
+ * Appendables are given the text of each item as soon as it has been visited. Channels are written to as UTF-8 straight
+ * from a fixed-size direct buffer, without building the text as chars first, whenever the buffer fills up. In both
+ * cases, {@link #flush()} must be called at the end. Errors writing to the destination are thrown as
+ * {@link UncheckedIOException}s.
+ *
+ * <p>Numbers and escape sequences are formatted without allocating.
  */
 public final class UnpickV3Writer extends UnpickV3Visitor {
     private static final String LINE_SEPARATOR = System.lineSeparator();
+    private static final int CHANNEL_BUFFER_SIZE = 1 << 15;
+    private static final char[] DIGITS = "0123456789abcdefghijklmnopqrstuvwxyz".toCharArray();
+    // indexed by data type ordinal
+    private static final String[] DATA_TYPE_NAMES = new String[DataType.values().length];
+    // indexed by group format ordinal
+    private static final String[] GROUP_FORMAT_NAMES = new String[GroupFormat.values().length];
+    // the escape sequences of the ASCII chars that have a dedicated one
+    private static final String[] ESCAPES = new String[128];
+    // whether each Latin-1 char can be written without escaping it
+    private static final boolean[] PRINTABLE_LATIN1 = new boolean[256];
+    static {
+        for (DataType dataType : DataType.values()) {
+            DATA_TYPE_NAMES[dataType.ordinal()] = switch (dataType) {
+                case STRING -> "String";
+                case CLASS -> "Class";
+                default -> dataType.name().toLowerCase(Locale.ROOT);
+            };
+        }
+        for (GroupFormat format : GroupFormat.values()) {
+            GROUP_FORMAT_NAMES[format.ordinal()] = format.name().toLowerCase(Locale.ROOT);
+        }
+        ESCAPES['\b'] = "\\b";
+        ESCAPES['\t'] = "\\t";
+        ESCAPES['\n'] = "\\n";
+        ESCAPES['\f'] = "\\f";
+        ESCAPES['\r'] = "\\r";
+        ESCAPES['\\'] = "\\\\";
+        for (char c = 0; c < PRINTABLE_LATIN1.length; c++) {
+            PRINTABLE_LATIN1[c] = isPrintable(c);
+        }
+    }
+
     private final String indent;
+    private final boolean streaming;
+    private final Output output;
+    private final ExpressionWriter expressionWriter = new ExpressionWriter();
     private int version = 3;
-    private StringBuilder output;
+    private boolean headerWritten;
 
     public UnpickV3Writer() {
         this("\t");
@@ -38,13 +91,45 @@ public final class UnpickV3Writer extends UnpickV3Visitor {
 
     public UnpickV3Writer(String indent) {
         this.indent = indent;
+        this.streaming = false;
+        this.output = new CharOutput(null);
+    }
+
+    /**
+     * Streams the text to the given destination, such as a {@link java.io.Writer}. The destination is not closed or
+     * flushed, except by {@link #flush()}.
+     */
+    public UnpickV3Writer(Appendable destination) {
+        this(destination, "\t");
+    }
+
+    public UnpickV3Writer(Appendable destination, String indent) {
+        this.indent = indent;
+        this.streaming = true;
+        this.output = new CharOutput(destination);
+    }
+
+    /**
+     * Streams the text to the given channel, such as a {@link java.nio.channels.FileChannel}, encoded as UTF-8. The
+     * channel is not closed.
+     */
+    public UnpickV3Writer(WritableByteChannel channel) {
+        this(channel, "\t");
+    }
+
+    public UnpickV3Writer(WritableByteChannel channel, String indent) {
+        this.indent = indent;
+        this.streaming = true;
+        this.output = new Utf8Output(channel);
     }
 
     @Override
     public void visitHeader(int version) {
-        if (output == null) {
+        if (!headerWritten) {
             this.version = version;
-            output = new StringBuilder("unpick v").append(version).append(LINE_SEPARATOR);
+            output.append("unpick v").appendInt(version).append(LINE_SEPARATOR);
+            headerWritten = true;
+            endItem();
         }
     }
 
@@ -54,10 +139,15 @@ public final class UnpickV3Writer extends UnpickV3Visitor {
 
         output.append(LINE_SEPARATOR);
 
-        if (groupDefinition.docs() != null) {
-            for (String docLine : groupDefinition.docs().split("\n", -1)) {
-                output.append("#: ").append(docLine).append(LINE_SEPARATOR);
+        String docs = groupDefinition.docs();
+        if (docs != null) {
+            int lineStart = 0;
+            int lineEnd;
+            while ((lineEnd = docs.indexOf('\n', lineStart)) != -1) {
+                output.append("#: ").append(docs, lineStart, lineEnd).append(LINE_SEPARATOR);
+                lineStart = lineEnd + 1;
             }
+            output.append("#: ").append(docs, lineStart, docs.length()).append(LINE_SEPARATOR);
         }
 
         output.append("group ");
@@ -84,21 +174,21 @@ public final class UnpickV3Writer extends UnpickV3Visitor {
         }
 
         if (groupDefinition.format() != null) {
-            output.append(indent).append("@format ");
-            writeLowerCaseEnum(groupDefinition.format());
-            output.append(LINE_SEPARATOR);
+            output.append(indent).append("@format ").append(GROUP_FORMAT_NAMES[groupDefinition.format().ordinal()]).append(LINE_SEPARATOR);
         }
 
         for (Expression constant : groupDefinition.constants()) {
             output.append(indent);
-            constant.accept(new ExpressionWriter());
+            constant.accept(expressionWriter);
             output.append(LINE_SEPARATOR);
         }
+
+        endItem();
     }
 
     private void writeGroupScope(GroupScope scope) {
         output.append("@scope ");
-        StringBuilder ignored = switch (scope) {
+        Output ignored = switch (scope) {
             case GroupScope.Package(String packageName) -> output.append("package ").append(packageName);
             case GroupScope.Class(String className) -> output.append("class ").append(className);
             case GroupScope.Method(String className, String methodName, String methodDesc) -> output.append("method ")
@@ -124,6 +214,7 @@ public final class UnpickV3Writer extends UnpickV3Visitor {
                 .append(" ")
                 .append(targetField.groupName())
                 .append(LINE_SEPARATOR);
+        endItem();
     }
 
     @Override
@@ -144,7 +235,7 @@ public final class UnpickV3Writer extends UnpickV3Visitor {
         for (Map.Entry<Integer, String> paramGroup : paramGroups) {
             output.append(indent)
                     .append("param ")
-                    .append(paramGroup.getKey())
+                    .appendInt(paramGroup.getKey())
                     .append(" ")
                     .append(paramGroup.getValue())
                     .append(LINE_SEPARATOR);
@@ -156,15 +247,14 @@ public final class UnpickV3Writer extends UnpickV3Visitor {
                     .append(targetMethod.returnGroup())
                     .append(LINE_SEPARATOR);
         }
+
+        endItem();
     }
 
     @Override
     public void visitTargetAnnotation(TargetAnnotation targetAnnotation) {
         ensureHeaderWritten();
-
-        if (version < 4) {
-            throw new IllegalStateException("Target annotations are not supported in unpick format version " + version);
-        }
+        checkTargetAnnotationsSupported();
 
         output.append(LINE_SEPARATOR)
                 .append("target_annotation ")
@@ -172,6 +262,7 @@ public final class UnpickV3Writer extends UnpickV3Visitor {
                 .append(" ")
                 .append(targetAnnotation.groupName())
                 .append(LINE_SEPARATOR);
+        endItem();
     }
 
     private void writeRadixPrefix(int radix) {
@@ -186,44 +277,13 @@ public final class UnpickV3Writer extends UnpickV3Visitor {
     }
 
     private void writeDataType(DataType dataType) {
-        switch (dataType) {
-            case STRING -> output.append("String");
-            case CLASS -> output.append("Class");
-            default -> writeLowerCaseEnum(dataType);
-        }
-    }
-
-    private void writeLowerCaseEnum(Enum<?> enumValue) {
-        output.append(enumValue.name().toLowerCase(Locale.ROOT));
+        output.append(DATA_TYPE_NAMES[dataType.ordinal()]);
     }
 
     static String quoteString(String string, char quoteChar) {
-        StringBuilder result = new StringBuilder(string.length() + 2).append(quoteChar);
-
-        for (int i = 0; i < string.length(); i++) {
-            char c = string.charAt(i);
-            switch (c) {
-                case '\b' -> result.append("\\b");
-                case '\t' -> result.append("\\t");
-                case '\n' -> result.append("\\n");
-                case '\f' -> result.append("\\f");
-                case '\r' -> result.append("\\r");
-                case '\\' -> result.append("\\\\");
-                default -> {
-                    if (c == quoteChar) {
-                        result.append("\\").append(c);
-                    } else if (isPrintable(c)) {
-                        result.append(c);
-                    } else if (c <= 255) {
-                        result.append('\\').append(Integer.toOctalString(c));
-                    } else {
-                        result.append("\\u").append(String.format("%04x", (int) c));
-                    }
-                }
-            }
-        }
-
-        return result.append(quoteChar).toString();
+        StringBuilder result = new StringBuilder(string.length() + 2);
+        new CharOutput(null, result).appendQuoted(string, quoteChar);
+        return result.toString();
     }
 
     private static boolean isPrintable(char ch) {
@@ -255,15 +315,85 @@ public final class UnpickV3Writer extends UnpickV3Visitor {
         };
     }
 
+    private static boolean needsEscape(char c, char quoteChar) {
+        return c == quoteChar || (c < PRINTABLE_LATIN1.length ? !PRINTABLE_LATIN1[c] || c == '\\' : !isPrintable(c));
+    }
+
     private void ensureHeaderWritten() {
-        if (output == null) {
-            output = new StringBuilder("unpick v3").append(LINE_SEPARATOR);
+        if (!headerWritten) {
+            output.append("unpick v3").append(LINE_SEPARATOR);
+            headerWritten = true;
         }
     }
 
+    private void checkTargetAnnotationsSupported() {
+        if (version < 4) {
+            throw new IllegalStateException("Target annotations are not supported in unpick format version " + version);
+        }
+    }
+
+    /**
+     * Does the checks of visiting the given item, without writing it, so that it can be formatted separately by
+     * {@link #formatItems(List)} and then appended with {@link #appendFormatted(CharSequence)}.
+     */
+    void beginItem(UnpickItem item) {
+        ensureHeaderWritten();
+        if (item.kind() == UnpickItem.Kind.TARGET_ANNOTATION) {
+            checkTargetAnnotationsSupported();
+        }
+    }
+
+    /**
+     * Returns the text of the given items, as this writer would write them. Doesn't change this writer, so it can be
+     * called from any thread once the version is known.
+     */
+    String formatItems(List<UnpickItem> items) {
+        UnpickV3Writer writer = new UnpickV3Writer(indent);
+        writer.version = version;
+        writer.headerWritten = true;
+        for (UnpickItem item : items) {
+            item.accept(writer);
+        }
+        return ((CharOutput) writer.output).text.toString();
+    }
+
+    void appendFormatted(CharSequence text) {
+        output.append(text);
+        endItem();
+    }
+
+    private void endItem() {
+        try {
+            output.endItem();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Writes out any buffered text to the destination, including the header if nothing has been written yet, and
+     * flushes the destination if it is {@link Flushable}.
+     */
+    public void flush() {
+        ensureHeaderWritten();
+        try {
+            output.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Returns the text written so far.
+     *
+     * @throws IllegalStateException if the text is streamed to a destination instead
+     */
     public String getOutput() {
+        if (streaming) {
+            throw new IllegalStateException("Output is streamed to a destination");
+        }
         ensureHeaderWritten();
-        return output.toString();
+        return ((CharOutput) output).text.toString();
     }
 
     private final class ExpressionWriter extends ExpressionVisitor {
@@ -314,19 +444,19 @@ public final class UnpickV3Writer extends UnpickV3Visitor {
 
         @Override
         public void visitLiteralExpression(LiteralExpression literalExpression) {
-            StringBuilder ignored = switch (literalExpression.literal) {
+            Output ignored = switch (literalExpression.literal) {
                 case Literal.Integer(int value, int radix) -> {
                     writeRadixPrefix(radix);
-                    yield output.append(Integer.toUnsignedString(value, radix));
+                    yield output.appendUnsigned(Integer.toUnsignedLong(value), radix);
                 }
                 case Literal.Long(long value, int radix) -> {
                     writeRadixPrefix(radix);
-                    yield output.append(Long.toUnsignedString(value, radix)).append('L');
+                    yield output.appendUnsigned(value, radix).append('L');
                 }
-                case Literal.Float(float value) -> output.append(value).append('F');
-                case Literal.Double(double value) -> output.append(value);
-                case Literal.Character(char value) -> output.append(quoteString(String.valueOf(value), '\''));
-                case Literal.String(String value) -> output.append(quoteString(value, '"'));
+                case Literal.Float(float value) -> output.append(Float.toString(value)).append('F');
+                case Literal.Double(double value) -> output.append(Double.toString(value));
+                case Literal.Character(char value) -> output.appendQuoted(value, '\'');
+                case Literal.String(String value) -> output.appendQuoted(value, '"');
             };
         }
 
@@ -347,4 +477,255 @@ public final class UnpickV3Writer extends UnpickV3Visitor {
             unaryExpression.operand.accept(this);
         }
     }
+
+    /**
+     * The destination of the generated text, which has the formatting primitives of the writer.
+     */
+    private abstract static class Output {
+        private final char[] digits = new char[64];
+
+        abstract Output append(char c);
+
+        abstract Output append(CharSequence chars, int start, int end);
+
+        abstract Output append(char[] chars, int start, int end);
+
+        final Output append(CharSequence chars) {
+            return append(chars, 0, chars.length());
+        }
+
+        final Output appendInt(int value) {
+            if (value < 0) {
+                append('-');
+            }
+            return appendUnsigned(Math.abs((long) value), 10);
+        }
+
+        final Output appendUnsigned(long value, int radix) {
+            int pos = digits.length;
+            if (Integer.bitCount(radix) == 1) {
+                int shift = Integer.numberOfTrailingZeros(radix);
+                int mask = radix - 1;
+                do {
+                    digits[--pos] = DIGITS[(int) value & mask];
+                    value >>>= shift;
+                } while (value != 0);
+            } else {
+                if (value < 0) {
+                    long quotient = Long.divideUnsigned(value, radix);
+                    digits[--pos] = DIGITS[(int) (value - quotient * radix)];
+                    value = quotient;
+                }
+                do {
+                    digits[--pos] = DIGITS[(int) (value % radix)];
+                    value /= radix;
+                } while (value != 0);
+            }
+            return append(digits, pos, digits.length);
+        }
+
+        final Output appendQuoted(CharSequence string, char quoteChar) {
+            append(quoteChar);
+            int runStart = 0;
+            for (int i = 0; i < string.length(); i++) {
+                char c = string.charAt(i);
+                if (needsEscape(c, quoteChar)) {
+                    append(string, runStart, i);
+                    appendEscaped(c, quoteChar);
+                    runStart = i + 1;
+                }
+            }
+            return append(string, runStart, string.length()).append(quoteChar);
+        }
+
+        final Output appendQuoted(char c, char quoteChar) {
+            append(quoteChar);
+            if (needsEscape(c, quoteChar)) {
+                appendEscaped(c, quoteChar);
+            } else {
+                append(c);
+            }
+            return append(quoteChar);
+        }
+
+        private void appendEscaped(char c, char quoteChar) {
+            if (c < ESCAPES.length && ESCAPES[c] != null) {
+                append(ESCAPES[c]);
+            } else if (c == quoteChar) {
+                append('\\').append(c);
+            } else if (c <= 255) {
+                append('\\').appendUnsigned(c, 8);
+            } else {
+                append('\\').append('u');
+                for (int shift = 12; shift >= 0; shift -= 4) {
+                    append(DIGITS[(c >>> shift) & 0xf]);
+                }
+            }
+        }
+
+        /**
+         * Called after the text of each item has been appended.
+         */
+        abstract void endItem() throws IOException;
+
+        abstract void flush() throws IOException;
+    }
+
+    private static final class CharOutput extends Output {
+        // the whole output if there is no destination, otherwise the text of the current item
+        final StringBuilder text;
+        @Nullable
+        private final Appendable destination;
+
+        CharOutput(@Nullable Appendable destination) {
+            this(destination, new StringBuilder());
+        }
+
+        CharOutput(@Nullable Appendable destination, StringBuilder text) {
+            this.destination = destination;
+            this.text = text;
+        }
+
+        @Override
+        Output append(char c) {
+            text.append(c);
+            return this;
+        }
+
+        @Override
+        Output append(CharSequence chars, int start, int end) {
+            text.append(chars, start, end);
+            return this;
+        }
+
+        @Override
+        Output append(char[] chars, int start, int end) {
+            text.append(chars, start, end - start);
+            return this;
+        }
+
+        @Override
+        void endItem() throws IOException {
+            if (destination != null) {
+                destination.append(text);
+                text.setLength(0);
+            }
+        }
+
+        @Override
+        void flush() throws IOException {
+            endItem();
+            if (destination instanceof Flushable flushable) {
+                flushable.flush();
+            }
+        }
+    }
+
+    /**
+     * Encodes the text as UTF-8 into a fixed-size array, which is copied into a direct buffer in bulk and written to the
+     * channel whenever it is full. Between items, it is already written once it is half full, so that most writes are
+     * of items as a whole. Unpaired surrogates are replaced with {@code ?}, like the standard encoder does.
+     */
+    private static final class Utf8Output extends Output {
+        private final WritableByteChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(CHANNEL_BUFFER_SIZE);
+        private final byte[] bytes = new byte[CHANNEL_BUFFER_SIZE];
+        private int count;
+
+        Utf8Output(WritableByteChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        Output append(char c) {
+            if (count > bytes.length - 3) {
+                drainUnchecked();
+            }
+            if (c < 0x80) {
+                bytes[count++] = (byte) c;
+            } else if (Character.isSurrogate(c)) {
+                bytes[count++] = '?';
+            } else {
+                putMultiByte(c);
+            }
+            return this;
+        }
+
+        @Override
+        Output append(CharSequence chars, int start, int end) {
+            byte[] bytes = this.bytes;
+            for (int i = start; i < end; i++) {
+                if (count > bytes.length - 4) {
+                    drainUnchecked();
+                }
+                char c = chars.charAt(i);
+                if (c < 0x80) {
+                    bytes[count++] = (byte) c;
+                } else if (!Character.isSurrogate(c)) {
+                    putMultiByte(c);
+                } else if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(chars.charAt(i + 1))) {
+                    int codePoint = Character.toCodePoint(c, chars.charAt(++i));
+                    bytes[count++] = (byte) (0xf0 | codePoint >>> 18);
+                    bytes[count++] = (byte) (0x80 | (codePoint >>> 12) & 0x3f);
+                    bytes[count++] = (byte) (0x80 | (codePoint >>> 6) & 0x3f);
+                    bytes[count++] = (byte) (0x80 | codePoint & 0x3f);
+                } else {
+                    bytes[count++] = '?';
+                }
+            }
+            return this;
+        }
+
+        @Override
+        Output append(char[] chars, int start, int end) {
+            // only used for digits, which are ASCII
+            if (count > bytes.length - (end - start)) {
+                drainUnchecked();
+            }
+            for (int i = start; i < end; i++) {
+                bytes[count++] = (byte) chars[i];
+            }
+            return this;
+        }
+
+        private void putMultiByte(char c) {
+            if (c < 0x800) {
+                bytes[count++] = (byte) (0xc0 | c >>> 6);
+            } else {
+                bytes[count++] = (byte) (0xe0 | c >>> 12);
+                bytes[count++] = (byte) (0x80 | (c >>> 6) & 0x3f);
+            }
+            bytes[count++] = (byte) (0x80 | c & 0x3f);
+        }
+
+        private void drainUnchecked() {
+            try {
+                drain();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private void drain() throws IOException {
+            buffer.clear();
+            buffer.put(bytes, 0, count);
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            count = 0;
+        }
+
+        @Override
+        void endItem() throws IOException {
+            if (count >= bytes.length / 2) {
+                drain();
+            }
+        }
+
+        @Override
+        void flush() throws IOException {
+            drain();
+        }
+    }
 }
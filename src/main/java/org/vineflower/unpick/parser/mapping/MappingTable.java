@@ -0,0 +1,174 @@
+package org.vineflower.unpick.parser.mapping;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * An immutable table of class, field and method mappings from one namespace to another, for use by
+ * {@link MappingTableRemapper}. Class names are in "." format, and descriptors in the usual "/" format.
+ *
+ * <p>Names are pooled while loading, so each distinct name and descriptor is only held once. The members of each class
+ * are kept in sorted arrays of name, descriptor and mapped name triples, which are binary searched by name. Methods
+ * that keep their name are left out; fields are all kept, so that their descriptors can be looked up.
+ *
+ * <p>Instances are safe to use from multiple threads.
+ */
+public final class MappingTable {
+    private final Map<String, ClassMapping> classes;
+    private final Map<String, List<String>> classesInPackage;
+    private final Map<String, List<String>> classesInMappedPackage;
+
+    MappingTable(Map<String, ClassMapping> classes, Map<String, List<String>> classesInPackage, Map<String, List<String>> classesInMappedPackage) {
+        this.classes = classes;
+        this.classesInPackage = classesInPackage;
+        this.classesInMappedPackage = classesInMappedPackage;
+    }
+
+    /**
+     * Reads a tiny v2 mapping file, mapping from one of its namespaces to another. The file is parsed line by line, and
+     * is not closed.
+     *
+     * @throws IOException if the file is malformed or doesn't have the given namespaces
+     */
+    public static MappingTable readTinyV2(Reader reader, String fromNamespace, String toNamespace) throws IOException {
+        BufferedReader bufferedReader = reader instanceof BufferedReader buffered ? buffered : new BufferedReader(reader);
+        return new TinyV2Reader(bufferedReader, fromNamespace, toNamespace).read();
+    }
+
+    /**
+     * Reads the tiny v2 mapping file at the given path. See {@link #readTinyV2(Reader, String, String)}.
+     */
+    public static MappingTable readTinyV2(Path path, String fromNamespace, String toNamespace) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(path)) {
+            return readTinyV2(reader, fromNamespace, toNamespace);
+        }
+    }
+
+    public int getClassCount() {
+        return classes.size();
+    }
+
+    /**
+     * Returns the mapped name of the given class, or the name itself if it isn't mapped.
+     */
+    public String mapClassName(String className) {
+        ClassMapping mapping = classes.get(className);
+        return mapping == null ? className : mapping.mappedName;
+    }
+
+    /**
+     * Returns the mapped name of the given field, or the name itself if it isn't mapped. Inherited fields are not
+     * looked up.
+     */
+    public String mapFieldName(String className, String fieldName, String fieldDesc) {
+        ClassMapping mapping = classes.get(className);
+        if (mapping == null) {
+            return fieldName;
+        }
+        int index = ClassMapping.find(mapping.fields, fieldName, fieldDesc);
+        return index == -1 ? fieldName : mapping.fields[index + 2];
+    }
+
+    /**
+     * Returns the mapped name of the given method, or the name itself if it isn't mapped. Inherited methods are not
+     * looked up.
+     */
+    public String mapMethodName(String className, String methodName, String methodDesc) {
+        ClassMapping mapping = classes.get(className);
+        if (mapping == null) {
+            return methodName;
+        }
+        int index = ClassMapping.find(mapping.methods, methodName, methodDesc);
+        return index == -1 ? methodName : mapping.methods[index + 2];
+    }
+
+    /**
+     * Returns the descriptor of the given field, or {@code null} if the class has no such field in the mappings. If
+     * there are several fields with the name, the descriptor of the first one in sorted order is returned.
+     */
+    @Nullable
+    public String getFieldDesc(String className, String fieldName) {
+        ClassMapping mapping = classes.get(className);
+        if (mapping == null) {
+            return null;
+        }
+        int index = ClassMapping.find(mapping.fields, fieldName, null);
+        return index == -1 ? null : mapping.fields[index + 1];
+    }
+
+    /**
+     * Returns the descriptors of the fields of the given class in the mappings by name, or {@code null} if the class
+     * isn't in the mappings. If there are several fields with a name, the descriptor of the first one in sorted order
+     * is used, as in {@link #getFieldDesc(String, String)}.
+     */
+    @Nullable
+    public Map<String, String> getFieldDescs(String className) {
+        ClassMapping mapping = classes.get(className);
+        if (mapping == null) {
+            return null;
+        }
+        Map<String, String> fieldDescs = HashMap.newHashMap(mapping.fields.length / 3);
+        for (int i = 0; i < mapping.fields.length; i += 3) {
+            fieldDescs.putIfAbsent(mapping.fields[i], mapping.fields[i + 1]);
+        }
+        return fieldDescs;
+    }
+
+    /**
+     * Returns the classes in the mappings that are in the given package, before mapping.
+     */
+    public List<String> getClassesInPackage(String packageName) {
+        return classesInPackage.getOrDefault(packageName, List.of());
+    }
+
+    /**
+     * Returns the classes in the mappings that are in the given package after mapping, by their mapped names.
+     */
+    public List<String> getClassesInMappedPackage(String mappedPackageName) {
+        return classesInMappedPackage.getOrDefault(mappedPackageName, List.of());
+    }
+
+    static final class ClassMapping {
+        final String mappedName;
+        // name, descriptor and mapped name triples, sorted by name and then descriptor
+        final String[] fields;
+        final String[] methods;
+
+        ClassMapping(String mappedName, String[] fields, String[] methods) {
+            this.mappedName = mappedName;
+            this.fields = fields;
+            this.methods = methods;
+        }
+
+        /**
+         * Returns the index of the first member with the given name and descriptor, or any descriptor if it is
+         * {@code null}, or -1 if there is none.
+         */
+        static int find(String[] members, String name, @Nullable String desc) {
+            int low = 0;
+            int high = members.length / 3;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (members[mid * 3].compareTo(name) < 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            for (int index = low * 3; index < members.length && members[index].equals(name); index += 3) {
+                if (desc == null || members[index + 1].equals(desc)) {
+                    return index;
+                }
+            }
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package org.vineflower.unpick.parser.mapping;
+
+import java.util.List;
+import java.util.Map;
+
+import org.jetbrains.annotations.Nullable;
+
+import org.vineflower.unpick.parser.UnpickV3Remapper;
+import org.vineflower.unpick.parser.UnpickV3RemapperCache;
+import org.vineflower.unpick.parser.tree.UnpickV3Visitor;
+
+/**
+ * A remapper that maps names with a {@link MappingTable}. Since the table only knows the classes in the mappings,
+ * package scopes only cover those classes, and inherited fields and methods are not mapped.
+ *
+ * <p>Lookups in the table are cheap, so there is usually no need for an {@link UnpickV3RemapperCache}. The table is
+ * safe to use concurrently, so this remapper can be given a pool.
+ */
+public class MappingTableRemapper extends UnpickV3Remapper {
+    private final MappingTable table;
+
+    public MappingTableRemapper(UnpickV3Visitor downstream, MappingTable table) {
+        super(downstream);
+        this.table = table;
+    }
+
+    public MappingTable getTable() {
+        return table;
+    }
+
+    @Override
+    protected String mapClassName(String className) {
+        return table.mapClassName(className);
+    }
+
+    @Override
+    protected String mapFieldName(String className, String fieldName, String fieldDesc) {
+        return table.mapFieldName(className, fieldName, fieldDesc);
+    }
+
+    @Override
+    protected String mapMethodName(String className, String methodName, String methodDesc) {
+        return table.mapMethodName(className, methodName, methodDesc);
+    }
+
+    @Override
+    protected List<String> getClassesInPackage(String pkg) {
+        return table.getClassesInPackage(pkg);
+    }
+
+    @Override
+    protected String getFieldDesc(String className, String fieldName) {
+        String fieldDesc = table.getFieldDesc(className, fieldName);
+        // a field that isn't in the table isn't mapped, whatever its descriptor is
+        return fieldDesc == null ? "" : fieldDesc;
+    }
+
+    @Override
+    @Nullable
+    protected Map<String, String> getFieldDescs(String className) {
+        return table.getFieldDescs(className);
+    }
+
+    @Override
+    @Nullable
+    protected List<String> getClassesInMappedPackage(String mappedPackage) {
+        return table.getClassesInMappedPackage(mappedPackage);
+    }
+}
@@ -0,0 +1,292 @@
+package org.vineflower.unpick.parser.mapping;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Reads a tiny v2 file line by line into a {@link MappingTable}. Only class, field and method lines are used; comments,
+ * parameters and local variables are skipped.
+ */
+final class TinyV2Reader {
+    private final BufferedReader reader;
+    private final String fromNamespace;
+    private final String toNamespace;
+    private final Map<String, String> pool = new HashMap<>();
+    private final List<PendingClass> pendingClasses = new ArrayList<>();
+    private int namespaceCount;
+    private int fromIndex;
+    private int toIndex;
+    private boolean escapedNames;
+    private int lineNumber;
+
+    TinyV2Reader(BufferedReader reader, String fromNamespace, String toNamespace) {
+        this.reader = reader;
+        this.fromNamespace = fromNamespace;
+        this.toNamespace = toNamespace;
+    }
+
+    MappingTable read() throws IOException {
+        readHeader();
+
+        PendingClass currentClass = null;
+        boolean inProperties = true;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            int indent = 0;
+            while (indent < line.length() && line.charAt(indent) == '\t') {
+                indent++;
+            }
+            if (indent == line.length()) {
+                continue;
+            }
+
+            if (indent == 0) {
+                inProperties = false;
+                if (line.startsWith("c\t")) {
+                    String[] names = readNames(line, 2, namespaceCount);
+                    currentClass = new PendingClass(names[0], toDotted(sourceName(names)), toDotted(targetName(names)));
+                    pendingClasses.add(currentClass);
+                } else {
+                    // an unknown section, whose nested lines are skipped along with it
+                    currentClass = null;
+                }
+            } else if (indent == 1 && inProperties) {
+                if (line.equals("\tescaped-names") || line.startsWith("\tescaped-names\t")) {
+                    escapedNames = true;
+                }
+            } else if (indent == 1 && currentClass != null) {
+                boolean field = line.startsWith("f\t", 1);
+                if (field || line.startsWith("m\t", 1)) {
+                    int descEnd = line.indexOf('\t', 3);
+                    if (descEnd == -1) {
+                        throw error("Missing member names");
+                    }
+                    String desc = pool(line.substring(3, descEnd));
+                    String[] names = readNames(line, descEnd + 1, namespaceCount);
+                    String sourceName = sourceName(names);
+                    String targetName = targetName(names);
+                    if (field) {
+                        currentClass.fields.add(sourceName, desc, targetName);
+                    } else if (!targetName.equals(sourceName)) {
+                        currentClass.methods.add(sourceName, desc, targetName);
+                    }
+                }
+            }
+        }
+
+        return build();
+    }
+
+    private void readHeader() throws IOException {
+        String header = reader.readLine();
+        lineNumber = 1;
+        if (header == null || !header.startsWith("tiny\t2\t")) {
+            throw error("Not a tiny v2 file");
+        }
+        String[] fields = header.split("\t", -1);
+        if (fields.length < 5) {
+            throw error("Missing namespaces");
+        }
+        namespaceCount = fields.length - 3;
+        List<String> namespaces = Arrays.asList(fields).subList(3, fields.length);
+        fromIndex = namespaces.indexOf(fromNamespace);
+        toIndex = namespaces.indexOf(toNamespace);
+        if (fromIndex == -1) {
+            throw error("Missing namespace " + fromNamespace);
+        }
+        if (toIndex == -1) {
+            throw error("Missing namespace " + toNamespace);
+        }
+    }
+
+    /**
+     * Splits the given number of tab-separated names from the line, starting at the given index. Missing trailing names
+     * are empty.
+     */
+    private String[] readNames(String line, int start, int count) throws IOException {
+        String[] names = new String[count];
+        int pos = start;
+        for (int i = 0; i < count; i++) {
+            if (pos > line.length()) {
+                names[i] = "";
+                continue;
+            }
+            int end = line.indexOf('\t', pos);
+            if (end == -1) {
+                end = line.length();
+            }
+            String name = line.substring(pos, end);
+            names[i] = escapedNames ? unescape(name) : name;
+            pos = end + 1;
+        }
+        if (names[0].isEmpty()) {
+            throw error("Missing name in the first namespace");
+        }
+        return names;
+    }
+
+    private String sourceName(String[] names) {
+        // names that are missing in a namespace are the same as in the first one
+        String name = names[fromIndex];
+        return pool(name.isEmpty() ? names[0] : name);
+    }
+
+    private String targetName(String[] names) {
+        String name = names[toIndex];
+        return name.isEmpty() ? sourceName(names) : pool(name);
+    }
+
+    private String unescape(String name) throws IOException {
+        int backslash = name.indexOf('\\');
+        if (backslash == -1) {
+            return name;
+        }
+        StringBuilder sb = new StringBuilder(name.length());
+        sb.append(name, 0, backslash);
+        for (int i = backslash; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c != '\\') {
+                sb.append(c);
+                continue;
+            }
+            if (++i == name.length()) {
+                throw error("Incomplete escape sequence");
+            }
+            sb.append(switch (name.charAt(i)) {
+                case '\\' -> '\\';
+                case 'n' -> '\n';
+                case 'r' -> '\r';
+                case 't' -> '\t';
+                case '0' -> '\0';
+                default -> throw error("Invalid escape sequence");
+            });
+        }
+        return sb.toString();
+    }
+
+    private MappingTable build() {
+        // descriptors are in the first namespace, so they have to be mapped if the source namespace is another one
+        Map<String, String> descClassNames = null;
+        if (fromIndex != 0) {
+            descClassNames = new HashMap<>();
+            for (PendingClass pendingClass : pendingClasses) {
+                descClassNames.put(pendingClass.firstName, pendingClass.name.replace('.', '/'));
+            }
+        }
+
+        Map<String, MappingTable.ClassMapping> classes = HashMap.newHashMap(pendingClasses.size());
+        Map<String, List<String>> classesInPackage = new HashMap<>();
+        Map<String, List<String>> classesInMappedPackage = new HashMap<>();
+        for (PendingClass pendingClass : pendingClasses) {
+            String[] fields = pendingClass.fields.toSortedArray(descClassNames);
+            String[] methods = pendingClass.methods.toSortedArray(descClassNames);
+            classes.put(pendingClass.name, new MappingTable.ClassMapping(pendingClass.mappedName, fields, methods));
+            classesInPackage.computeIfAbsent(packageOf(pendingClass.name), k -> new ArrayList<>()).add(pendingClass.name);
+            classesInMappedPackage.computeIfAbsent(packageOf(pendingClass.mappedName), k -> new ArrayList<>()).add(pendingClass.mappedName);
+        }
+        pendingClasses.clear();
+        pool.clear();
+
+        classesInPackage.replaceAll((packageName, classNames) -> List.copyOf(classNames));
+        classesInMappedPackage.replaceAll((packageName, classNames) -> List.copyOf(classNames));
+        return new MappingTable(classes, classesInPackage, classesInMappedPackage);
+    }
+
+    private String toDotted(String internalName) {
+        return pool(internalName.replace('/', '.'));
+    }
+
+    private static String packageOf(String className) {
+        int lastDot = className.lastIndexOf('.');
+        return lastDot == -1 ? "" : className.substring(0, lastDot);
+    }
+
+    private String pool(String string) {
+        String pooled = pool.putIfAbsent(string, string);
+        return pooled == null ? string : pooled;
+    }
+
+    private IOException error(String message) {
+        return new IOException("Invalid tiny v2 file at line " + lineNumber + ": " + message);
+    }
+
+    private String mapDesc(String desc, Map<String, String> classNames) {
+        int start = desc.indexOf('L');
+        if (start == -1) {
+            return desc;
+        }
+        StringBuilder sb = new StringBuilder(desc.length());
+        int copied = 0;
+        while (start != -1) {
+            int end = desc.indexOf(';', start);
+            if (end == -1) {
+                return desc;
+            }
+            String className = desc.substring(start + 1, end);
+            sb.append(desc, copied, start + 1).append(classNames.getOrDefault(className, className));
+            copied = end;
+            start = desc.indexOf('L', end);
+        }
+        return pool(sb.append(desc, copied, desc.length()).toString());
+    }
+
+    private final class PendingClass {
+        final String firstName;
+        final String name;
+        final String mappedName;
+        final Members fields = new Members();
+        final Members methods = new Members();
+
+        PendingClass(String firstName, String name, String mappedName) {
+            this.firstName = firstName;
+            this.name = name;
+            this.mappedName = mappedName;
+        }
+    }
+
+    private final class Members {
+        private static final String[] EMPTY = new String[0];
+
+        private String[] triples = EMPTY;
+        private int size;
+
+        void add(String name, String desc, String mappedName) {
+            if (size + 3 > triples.length) {
+                triples = Arrays.copyOf(triples, Math.max(12, triples.length * 2));
+            }
+            triples[size++] = name;
+            triples[size++] = desc;
+            triples[size++] = mappedName;
+        }
+
+        String[] toSortedArray(@Nullable Map<String, String> descClassNames) {
+            if (size == 0) {
+                return EMPTY;
+            }
+            int count = size / 3;
+            Integer[] order = new Integer[count];
+            for (int i = 0; i < count; i++) {
+                order[i] = i * 3;
+                if (descClassNames != null) {
+                    triples[i * 3 + 1] = mapDesc(triples[i * 3 + 1], descClassNames);
+                }
+            }
+            Arrays.sort(order, Comparator.<Integer, String>comparing(index -> triples[index]).thenComparing(index -> triples[index + 1]));
+
+            String[] sorted = new String[size];
+            for (int i = 0; i < count; i++) {
+                System.arraycopy(triples, order[i], sorted, i * 3, 3);
+            }
+            return sorted;
+        }
+    }
+}
@@ -18,11 +18,21 @@ public record GroupDefinition(
         List<Expression> constants,
         @Nullable GroupFormat format,
         @Nullable String docs
-) {
+) implements UnpickItem {
     @ApiStatus.Internal
     public GroupDefinition {
     }
 
+    @Override
+    public Kind kind() {
+        return Kind.GROUP_DEFINITION;
+    }
+
+    @Override
+    public void accept(UnpickV3Visitor visitor) {
+        visitor.visitGroupDefinition(this);
+    }
+
     public static final class Builder {
         private final List<GroupScope> scopes = new ArrayList<>();
         private boolean flags;
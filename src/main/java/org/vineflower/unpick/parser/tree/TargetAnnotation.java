@@ -1,4 +1,13 @@
 package org.vineflower.unpick.parser.tree;
 
-public record TargetAnnotation(String annotationName, String groupName) {
+public record TargetAnnotation(String annotationName, String groupName) implements UnpickItem {
+    @Override
+    public Kind kind() {
+        return Kind.TARGET_ANNOTATION;
+    }
+
+    @Override
+    public void accept(UnpickV3Visitor visitor) {
+        visitor.visitTargetAnnotation(this);
+    }
 }
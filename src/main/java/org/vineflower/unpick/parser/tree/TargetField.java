@@ -1,4 +1,13 @@
 package org.vineflower.unpick.parser.tree;
 
-public record TargetField(String className, String fieldName, String fieldDesc, String groupName) {
+public record TargetField(String className, String fieldName, String fieldDesc, String groupName) implements UnpickItem {
+    @Override
+    public Kind kind() {
+        return Kind.TARGET_FIELD;
+    }
+
+    @Override
+    public void accept(UnpickV3Visitor visitor) {
+        visitor.visitTargetField(this);
+    }
 }
@@ -11,7 +11,17 @@ public record TargetMethod(
         String methodDesc,
         Map<Integer, String> paramGroups,
         @Nullable String returnGroup
-) {
+) implements UnpickItem {
+    @Override
+    public Kind kind() {
+        return Kind.TARGET_METHOD;
+    }
+
+    @Override
+    public void accept(UnpickV3Visitor visitor) {
+        visitor.visitTargetMethod(this);
+    }
+
     public static final class Builder {
         private final String className;
         private final String methodName;
@@ -0,0 +1,14 @@
+package org.vineflower.unpick.parser.tree;
+
+/**
+ * A top-level item of a .unpick file.
+ */
+public sealed interface UnpickItem permits GroupDefinition, TargetField, TargetMethod, TargetAnnotation {
+    Kind kind();
+
+    void accept(UnpickV3Visitor visitor);
+
+    enum Kind {
+        GROUP_DEFINITION, TARGET_FIELD, TARGET_METHOD, TARGET_ANNOTATION
+    }
+}
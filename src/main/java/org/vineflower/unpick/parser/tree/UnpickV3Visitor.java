@@ -1,5 +1,8 @@
 package org.vineflower.unpick.parser.tree;
 
+import java.util.EnumSet;
+import java.util.Set;
+
 public abstract class UnpickV3Visitor {
     public void visitHeader(int version) {
     }
@@ -15,4 +18,33 @@ public abstract class UnpickV3Visitor {
 
     public void visitTargetAnnotation(TargetAnnotation targetAnnotation) {
     }
+
+    /**
+     * Returns the kinds of items this visitor does anything with, which a reader may use to skip the other items
+     * without parsing them. By default, these are the kinds whose visit method is overridden.
+     */
+    public Set<UnpickItem.Kind> getVisitedKinds() {
+        Set<UnpickItem.Kind> kinds = EnumSet.noneOf(UnpickItem.Kind.class);
+        if (overrides("visitGroupDefinition", GroupDefinition.class)) {
+            kinds.add(UnpickItem.Kind.GROUP_DEFINITION);
+        }
+        if (overrides("visitTargetField", TargetField.class)) {
+            kinds.add(UnpickItem.Kind.TARGET_FIELD);
+        }
+        if (overrides("visitTargetMethod", TargetMethod.class)) {
+            kinds.add(UnpickItem.Kind.TARGET_METHOD);
+        }
+        if (overrides("visitTargetAnnotation", TargetAnnotation.class)) {
+            kinds.add(UnpickItem.Kind.TARGET_ANNOTATION);
+        }
+        return kinds;
+    }
+
+    private boolean overrides(String methodName, Class<?> parameterType) {
+        try {
+            return getClass().getMethod(methodName, parameterType).getDeclaringClass() != UnpickV3Visitor.class;
+        } catch (NoSuchMethodException e) {
+            throw new AssertionError(e);
+        }
+    }
 }
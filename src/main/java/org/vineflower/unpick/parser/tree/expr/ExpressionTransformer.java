@@ -1,12 +1,25 @@
 package org.vineflower.unpick.parser.tree.expr;
 
+/**
+ * Transforms expression trees bottom-up. By default, each node is returned as it is if the transformed children are the
+ * same instances as the original ones, so unchanged subtrees are shared rather than copied.
+ */
 public abstract class ExpressionTransformer {
     public Expression transformBinaryExpression(BinaryExpression binaryExpression) {
-        return new BinaryExpression(binaryExpression.lhs.transform(this), binaryExpression.rhs.transform(this), binaryExpression.operator);
+        Expression lhs = binaryExpression.lhs.transform(this);
+        Expression rhs = binaryExpression.rhs.transform(this);
+        if (lhs == binaryExpression.lhs && rhs == binaryExpression.rhs) {
+            return binaryExpression;
+        }
+        return new BinaryExpression(lhs, rhs, binaryExpression.operator);
     }
 
     public Expression transformCastExpression(CastExpression castExpression) {
-        return new CastExpression(castExpression.castType, castExpression.operand.transform(this));
+        Expression operand = castExpression.operand.transform(this);
+        if (operand == castExpression.operand) {
+            return castExpression;
+        }
+        return new CastExpression(castExpression.castType, operand);
     }
 
     public Expression transformFieldExpression(FieldExpression fieldExpression) {
@@ -18,10 +31,18 @@ public abstract class ExpressionTransformer {
     }
 
     public Expression transformParenExpression(ParenExpression parenExpression) {
-        return new ParenExpression(parenExpression.expression.transform(this));
+        Expression expression = parenExpression.expression.transform(this);
+        if (expression == parenExpression.expression) {
+            return parenExpression;
+        }
+        return new ParenExpression(expression);
     }
 
     public Expression transformUnaryExpression(UnaryExpression unaryExpression) {
-        return new UnaryExpression(unaryExpression.operand.transform(this), unaryExpression.operator);
+        Expression operand = unaryExpression.operand.transform(this);
+        if (operand == unaryExpression.operand) {
+            return unaryExpression;
+        }
+        return new UnaryExpression(operand, unaryExpression.operator);
     }
 }
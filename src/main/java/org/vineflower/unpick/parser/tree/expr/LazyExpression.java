@@ -0,0 +1,87 @@
+package org.vineflower.unpick.parser.tree.expr;
+
+import java.io.UncheckedIOException;
+
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Nullable;
+
+import org.vineflower.unpick.parser.UnpickParseException;
+
+/**
+ * An expression whose source text has been found but not parsed yet. It is parsed the first time it is visited,
+ * transformed or {@linkplain #resolve() resolved}, and the result is kept. Visitors and transformers never see the
+ * lazy expression itself, only the parsed one.
+ */
+public final class LazyExpression extends Expression {
+    public final String source;
+    public final int line;
+    /**
+     * The 0-based column of the start of the source text in its line.
+     */
+    public final int column;
+    private final Parser parser;
+    @Nullable
+    private volatile Expression resolved;
+
+    @ApiStatus.Internal
+    public LazyExpression(String source, int line, int column, Parser parser) {
+        this.source = source;
+        this.line = line;
+        this.column = column;
+        this.parser = parser;
+    }
+
+    /**
+     * Parses the source text if it hasn't been parsed yet, and returns the parsed expression. Syntax errors are
+     * reported with the line and column of the source text in the original file.
+     */
+    public Expression resolve() throws UnpickParseException {
+        Expression expression = resolved;
+        if (expression == null) {
+            expression = parser.parse(source, line, column);
+            resolved = expression;
+        }
+        return expression;
+    }
+
+    public boolean isResolved() {
+        return resolved != null;
+    }
+
+    /**
+     * Visits the parsed expression.
+     *
+     * @throws UncheckedIOException wrapping an {@link UnpickParseException} if the source text is invalid
+     */
+    @Override
+    public void accept(ExpressionVisitor visitor) {
+        resolveUnchecked().accept(visitor);
+    }
+
+    /**
+     * Transforms the parsed expression. If the transformer leaves it unchanged, this lazy expression is returned, so
+     * that callers can tell that nothing changed.
+     *
+     * @throws UncheckedIOException wrapping an {@link UnpickParseException} if the source text is invalid
+     */
+    @Override
+    public Expression transform(ExpressionTransformer transformer) {
+        Expression expression = resolveUnchecked();
+        Expression transformed = expression.transform(transformer);
+        return transformed == expression ? this : transformed;
+    }
+
+    private Expression resolveUnchecked() {
+        try {
+            return resolve();
+        } catch (UnpickParseException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @ApiStatus.Internal
+    @FunctionalInterface
+    public interface Parser {
+        Expression parse(String source, int line, int column) throws UnpickParseException;
+    }
+}
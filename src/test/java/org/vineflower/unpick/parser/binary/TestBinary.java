@@ -0,0 +1,140 @@
+package org.vineflower.unpick.parser.binary;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import org.vineflower.unpick.parser.UnpickBinaryReader;
+import org.vineflower.unpick.parser.UnpickBinaryWriter;
+import org.vineflower.unpick.parser.UnpickV3Reader;
+import org.vineflower.unpick.parser.UnpickV3Writer;
+import org.vineflower.unpick.parser.reader.TestReader;
+import org.vineflower.unpick.parser.tree.DataType;
+import org.vineflower.unpick.parser.tree.GroupDefinition;
+import org.vineflower.unpick.parser.tree.Literal;
+import org.vineflower.unpick.parser.tree.expr.LiteralExpression;
+
+public final class TestBinary {
+    private static final List<String> FILES = List.of(
+            "docs/docs",
+            "expression/deep_nesting",
+            "expression/expression",
+            "other/spec",
+            "syntax/class_name",
+            "syntax/data_type",
+            "syntax/group_definition",
+            "syntax/method_name",
+            "syntax/target_annotation",
+            "syntax/target_method",
+            "tokens/char",
+            "tokens/double",
+            "tokens/field_descriptor",
+            "tokens/float",
+            "tokens/identifier",
+            "tokens/integer",
+            "tokens/long",
+            "tokens/method_descriptor",
+            "tokens/string",
+            "whitespace/blank_lines",
+            "whitespace/comments",
+            "whitespace/indent",
+            "whitespace/minimal_spaces"
+    );
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        for (String file : FILES) {
+            UnpickV3Writer expected = new UnpickV3Writer();
+            TestReader.test(file, expected);
+
+            UnpickV3Writer actual = new UnpickV3Writer();
+            new UnpickBinaryReader(toBinary(file)).accept(actual);
+            assertEquals(expected.getOutput(), actual.getOutput(), file);
+        }
+    }
+
+    @Test
+    public void testStrings() throws IOException {
+        UnpickBinaryWriter binaryWriter = new UnpickBinaryWriter();
+        UnpickV3Writer expected = new UnpickV3Writer();
+        for (String string : new String[] {"", "abc", "déjà vu", "☃ 😀", "\ud800", "a\udc00b", "😀\ud83d"}) {
+            GroupDefinition group = GroupDefinition.Builder.named(DataType.STRING, "Group")
+                    .constant(new LiteralExpression(new Literal.String(string)))
+                    .docs(string)
+                    .build();
+            binaryWriter.visitGroupDefinition(group);
+            expected.visitGroupDefinition(group);
+        }
+
+        UnpickV3Writer actual = new UnpickV3Writer();
+        new UnpickBinaryReader(binaryWriter.getOutput()).accept(actual);
+        assertEquals(expected.getOutput(), actual.getOutput());
+    }
+
+    @Test
+    public void testDeduplicatedStrings() throws IOException {
+        StringBuilder text = new StringBuilder("unpick v3\n");
+        for (int i = 0; i < 1000; i++) {
+            text.append("\ntarget_field foo.bar.SomeClass someField I SomeGroup\n");
+        }
+
+        UnpickBinaryWriter binaryWriter = new UnpickBinaryWriter();
+        try (UnpickV3Reader reader = new UnpickV3Reader(new StringReader(text.toString()))) {
+            reader.accept(binaryWriter);
+        }
+        byte[] binary = binaryWriter.getOutput();
+        assertTrue(binary.length < 10000, "Binary output is " + binary.length + " bytes");
+    }
+
+    @Test
+    public void testMappedFile() throws IOException {
+        UnpickV3Writer expected = new UnpickV3Writer();
+        TestReader.test("other/spec", expected);
+
+        Path path = Files.createTempFile("unpick", ".unpickb");
+        try {
+            Files.write(path, toBinary("other/spec"));
+            UnpickV3Writer actual = new UnpickV3Writer();
+            new UnpickBinaryReader(path).accept(actual);
+            assertEquals(expected.getOutput(), actual.getOutput());
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    public void testNotBinary() {
+        byte[] text = "unpick v3\n".getBytes(StandardCharsets.UTF_8);
+        assertThrows(IOException.class, () -> new UnpickBinaryReader(text).accept(new UnpickV3Writer()));
+        assertThrows(IOException.class, () -> new UnpickBinaryReader(new byte[0]).accept(new UnpickV3Writer()));
+    }
+
+    @Test
+    public void testTruncated() throws IOException {
+        byte[] binary = toBinary("other/spec");
+        for (int length = 0; length < binary.length; length++) {
+            UnpickBinaryReader reader = new UnpickBinaryReader(Arrays.copyOf(binary, length));
+            try {
+                reader.accept(new UnpickV3Writer());
+            } catch (IOException e) {
+                // expected, unless the data happens to end between two items
+            }
+        }
+    }
+
+    private static byte[] toBinary(String file) throws IOException {
+        UnpickBinaryWriter writer = new UnpickBinaryWriter();
+        TestReader.test(file, writer);
+        return writer.getOutput();
+    }
+}
@@ -0,0 +1,179 @@
+package org.vineflower.unpick.parser.binary;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import org.vineflower.unpick.parser.UnpickBinaryWriter;
+import org.vineflower.unpick.parser.UnpickIndex;
+import org.vineflower.unpick.parser.UnpickIndexWriter;
+import org.vineflower.unpick.parser.UnpickV3Reader;
+import org.vineflower.unpick.parser.UnpickV3Writer;
+import org.vineflower.unpick.parser.reader.TestReader;
+import org.vineflower.unpick.parser.tree.GroupDefinition;
+import org.vineflower.unpick.parser.tree.TargetAnnotation;
+import org.vineflower.unpick.parser.tree.TargetField;
+import org.vineflower.unpick.parser.tree.TargetMethod;
+import org.vineflower.unpick.parser.tree.UnpickV3Visitor;
+
+public final class TestIndex {
+    @Test
+    public void testLookups() throws IOException {
+        UnpickIndex index = new UnpickIndex(ByteBuffer.wrap(buildIndex("other/spec")));
+        assertEquals(4, index.getVersion());
+
+        TargetMethod fill = index.getTargetMethod("net.minecraft.client.gui.GuiGraphics", "fill", "(IIIII)V");
+        assertNotNull(fill);
+        assertEquals(Map.of(4, "ARGBColor"), fill.paramGroups());
+        assertNull(fill.returnGroup());
+
+        TargetMethod color = index.getTargetMethod("net.minecraft.util.ARGB", "color", "(IIII)I");
+        assertNotNull(color);
+        assertEquals("ARGBColor", color.returnGroup());
+
+        assertEquals(
+                new TargetField("net.minecraft.core.particles.ColorParticleOption", "color", "I", "ARGBColor"),
+                index.getTargetField("net.minecraft.core.particles.ColorParticleOption", "color", "I")
+        );
+        assertEquals(
+                new TargetAnnotation("net.minecraft.world.level.block.Block$UpdateFlags", "SetBlockFlag"),
+                index.getTargetAnnotation("net.minecraft.world.level.block.Block$UpdateFlags")
+        );
+
+        assertEquals(1, index.getGroupDefinitions("ARGBColor").size());
+        assertEquals(3, index.getGroupDefinitions(null).size());
+    }
+
+    @Test
+    public void testMisses() throws IOException {
+        UnpickIndex index = new UnpickIndex(ByteBuffer.wrap(buildIndex("other/spec")));
+        assertNull(index.getTargetMethod("net.minecraft.client.gui.GuiGraphics", "fill", "(IIII)V"));
+        assertNull(index.getTargetMethod("net.minecraft.client.gui.GuiGraphics", "fil", "(IIIII)V"));
+        assertNull(index.getTargetMethod("a", "b", "()V"));
+        assertNull(index.getTargetMethod("zzz", "b", "()V"));
+        assertNull(index.getTargetField("net.minecraft.core.particles.ColorParticleOption", "color", "J"));
+        assertNull(index.getTargetAnnotation("net.minecraft.world.level.block.Block"));
+        assertTrue(index.getGroupDefinitions("ARGB").isEmpty());
+        assertTrue(index.getGroupDefinitions("ARGBColors").isEmpty());
+    }
+
+    @Test
+    public void testSameItems() throws IOException {
+        UnpickIndex index = new UnpickIndex(ByteBuffer.wrap(buildIndex("other/spec")));
+
+        UnpickV3Writer expected = new UnpickV3Writer();
+        UnpickV3Writer actual = new UnpickV3Writer();
+        expected.visitHeader(4);
+        actual.visitHeader(4);
+        Map<String, Integer> groupDefinitionCounts = new HashMap<>();
+        TestReader.test("other/spec", new UnpickV3Visitor() {
+            @Override
+            public void visitGroupDefinition(GroupDefinition groupDefinition) {
+                expected.visitGroupDefinition(groupDefinition);
+                int count = groupDefinitionCounts.merge(groupDefinition.name(), 1, Integer::sum);
+                actual.visitGroupDefinition(index.getGroupDefinitions(groupDefinition.name()).get(count - 1));
+            }
+
+            @Override
+            public void visitTargetMethod(TargetMethod targetMethod) {
+                expected.visitTargetMethod(targetMethod);
+                actual.visitTargetMethod(index.getTargetMethod(targetMethod.className(), targetMethod.methodName(), targetMethod.methodDesc()));
+            }
+
+            @Override
+            public void visitTargetField(TargetField targetField) {
+                expected.visitTargetField(targetField);
+                actual.visitTargetField(index.getTargetField(targetField.className(), targetField.fieldName(), targetField.fieldDesc()));
+            }
+
+            @Override
+            public void visitTargetAnnotation(TargetAnnotation targetAnnotation) {
+                expected.visitTargetAnnotation(targetAnnotation);
+                actual.visitTargetAnnotation(index.getTargetAnnotation(targetAnnotation.annotationName()));
+            }
+        });
+        assertEquals(expected.getOutput(), actual.getOutput());
+    }
+
+    @Test
+    public void testManyEntries() throws IOException {
+        StringBuilder text = new StringBuilder("unpick v3\n");
+        for (int i = 0; i < 2000; i++) {
+            text.append("\ntarget_method foo.Bar").append(i % 37).append(" method").append(i).append(" (I)V\n");
+            text.append("\tparam 0 Group").append(i).append('\n');
+            text.append("\ntarget_field foo.Bar").append(i % 37).append(" field").append(i).append(" I Group").append(i).append('\n');
+        }
+        UnpickIndexWriter writer = new UnpickIndexWriter();
+        try (UnpickV3Reader reader = new UnpickV3Reader(new StringReader(text.toString()))) {
+            reader.accept(writer);
+        }
+
+        UnpickIndex index = new UnpickIndex(ByteBuffer.wrap(writer.getOutput()));
+        for (int i = 0; i < 2000; i++) {
+            TargetMethod method = index.getTargetMethod("foo.Bar" + i % 37, "method" + i, "(I)V");
+            assertNotNull(method);
+            assertEquals(Map.of(0, "Group" + i), method.paramGroups());
+            assertNull(index.getTargetMethod("foo.Bar" + (i + 1) % 37, "method" + i, "(I)V"));
+
+            TargetField field = index.getTargetField("foo.Bar" + i % 37, "field" + i, "I");
+            assertNotNull(field);
+            assertEquals("Group" + i, field.groupName());
+        }
+    }
+
+    @Test
+    public void testDuplicateTargets() throws IOException {
+        UnpickIndexWriter writer = new UnpickIndexWriter();
+        writer.visitTargetField(new TargetField("foo.Bar", "baz", "I", "First"));
+        writer.visitTargetField(new TargetField("foo.Bar", "baz", "I", "Second"));
+        UnpickIndex index = new UnpickIndex(ByteBuffer.wrap(writer.getOutput()));
+        assertEquals("First", index.getTargetField("foo.Bar", "baz", "I").groupName());
+    }
+
+    @Test
+    public void testEmpty() throws IOException {
+        UnpickIndex index = new UnpickIndex(ByteBuffer.wrap(new UnpickIndexWriter().getOutput()));
+        assertEquals(3, index.getVersion());
+        assertNull(index.getTargetMethod("foo.Bar", "baz", "()V"));
+        assertTrue(index.getGroupDefinitions(null).isEmpty());
+    }
+
+    @Test
+    public void testMappedFile() throws IOException {
+        Path path = Files.createTempFile("unpick", ".unpicki");
+        try {
+            Files.write(path, buildIndex("other/spec"));
+            UnpickIndex index = new UnpickIndex(path);
+            assertNotNull(index.getTargetMethod("net.minecraft.util.ARGB", "color", "(IIII)I"));
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    public void testNotIndex() {
+        UnpickBinaryWriter binaryWriter = new UnpickBinaryWriter();
+        binaryWriter.visitHeader(3);
+        byte[] binary = binaryWriter.getOutput();
+        assertThrows(IOException.class, () -> new UnpickIndex(ByteBuffer.wrap(binary)));
+        assertThrows(IOException.class, () -> new UnpickIndex(ByteBuffer.allocate(0)));
+    }
+
+    private static byte[] buildIndex(String file) throws IOException {
+        UnpickIndexWriter writer = new UnpickIndexWriter();
+        TestReader.test(file, writer);
+        return writer.getOutput();
+    }
+}
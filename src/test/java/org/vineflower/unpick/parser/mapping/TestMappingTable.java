@@ -0,0 +1,138 @@
+package org.vineflower.unpick.parser.mapping;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import org.vineflower.unpick.parser.UnpickV3Reader;
+import org.vineflower.unpick.parser.UnpickV3Writer;
+
+public final class TestMappingTable {
+    private static final String MAPPINGS = """
+            tiny\t2\t0\tofficial\tintermediary\tnamed
+            \tsome-property\tvalue
+            c\ta\tnet/minecraft/class_1\tnet/minecraft/block/Block
+            \tc\tA block.
+            \tf\tI\ta\tfield_1\tFLAGS
+            \tf\tLb;\tb\tfield_2\t
+            \tm\t(Lb;)V\ta\tmethod_1\tsetFlags
+            \t\tp\t1\t\t\tflags
+            \tm\t()V\tc\tc\tc
+            c\tb\tnet/minecraft/class_2\tnet/minecraft/item/Item
+            c\tc\tnet/minecraft/class_3\t
+            """;
+
+    @Test
+    public void testLookups() throws IOException {
+        MappingTable table = read("intermediary", "named");
+        assertEquals(3, table.getClassCount());
+        assertEquals("net.minecraft.block.Block", table.mapClassName("net.minecraft.class_1"));
+        assertEquals("net.minecraft.class_3", table.mapClassName("net.minecraft.class_3"));
+        assertEquals("java.lang.Object", table.mapClassName("java.lang.Object"));
+
+        assertEquals("FLAGS", table.mapFieldName("net.minecraft.class_1", "field_1", "I"));
+        assertEquals("field_1", table.mapFieldName("net.minecraft.class_1", "field_1", "J"));
+        assertEquals("field_2", table.mapFieldName("net.minecraft.class_1", "field_2", "Lnet/minecraft/class_2;"));
+        assertEquals("setFlags", table.mapMethodName("net.minecraft.class_1", "method_1", "(Lnet/minecraft/class_2;)V"));
+        assertEquals("c", table.mapMethodName("net.minecraft.class_1", "c", "()V"));
+
+        assertEquals("I", table.getFieldDesc("net.minecraft.class_1", "field_1"));
+        assertEquals("Lnet/minecraft/class_2;", table.getFieldDesc("net.minecraft.class_1", "field_2"));
+        assertNull(table.getFieldDesc("net.minecraft.class_1", "field_3"));
+        assertNull(table.getFieldDesc("net.minecraft.class_4", "field_1"));
+        assertEquals(Map.of("field_1", "I", "field_2", "Lnet/minecraft/class_2;"), table.getFieldDescs("net.minecraft.class_1"));
+        assertEquals(Map.of(), table.getFieldDescs("net.minecraft.class_2"));
+        assertNull(table.getFieldDescs("net.minecraft.class_4"));
+
+        assertEquals(List.of("net.minecraft.class_1", "net.minecraft.class_2", "net.minecraft.class_3"), table.getClassesInPackage("net.minecraft"));
+        assertEquals(List.of("net.minecraft.block.Block"), table.getClassesInMappedPackage("net.minecraft.block"));
+        assertEquals(List.of("net.minecraft.class_3"), table.getClassesInMappedPackage("net.minecraft"));
+        assertEquals(List.of(), table.getClassesInPackage("net.minecraft.block"));
+    }
+
+    @Test
+    public void testFirstNamespace() throws IOException {
+        MappingTable table = read("official", "intermediary");
+        assertEquals("net.minecraft.class_1", table.mapClassName("a"));
+        assertEquals("field_2", table.mapFieldName("a", "b", "Lb;"));
+        assertEquals("method_1", table.mapMethodName("a", "a", "(Lb;)V"));
+        assertEquals(List.of("a", "b", "c"), table.getClassesInPackage(""));
+    }
+
+    @Test
+    public void testReverse() throws IOException {
+        MappingTable table = read("named", "official");
+        assertEquals("a", table.mapClassName("net.minecraft.block.Block"));
+        // names missing in a namespace fall back to the first one
+        assertEquals("c", table.mapClassName("c"));
+        assertEquals("b", table.mapFieldName("net.minecraft.block.Block", "b", "Lnet/minecraft/item/Item;"));
+        assertEquals("a", table.mapMethodName("net.minecraft.block.Block", "setFlags", "(Lnet/minecraft/item/Item;)V"));
+    }
+
+    @Test
+    public void testEscapedNames() throws IOException {
+        MappingTable table = MappingTable.readTinyV2(new StringReader("""
+                tiny\t2\t0\tfrom\tto
+                \tescaped-names
+                c\ta\\\\b\tc\\td
+                """), "from", "to");
+        assertEquals("c\td", table.mapClassName("a\\b"));
+    }
+
+    @Test
+    public void testInvalid() {
+        assertThrows(IOException.class, () -> MappingTable.readTinyV2(new StringReader("v1\tfrom\tto\n"), "from", "to"));
+        assertThrows(IOException.class, () -> read("intermediary", "mojang"));
+        assertThrows(IOException.class, () -> MappingTable.readTinyV2(new StringReader("tiny\t2\t0\tfrom\tto\nc\t\tb\n"), "from", "to"));
+        assertThrows(IOException.class, () -> MappingTable.readTinyV2(new StringReader("tiny\t2\t0\tfrom\tto\nc\ta\tb\n\tf\tI\n"), "from", "to"));
+    }
+
+    @Test
+    public void testRemapper() throws IOException {
+        String input = """
+                unpick v3
+
+                group int
+                \t@scope package net.minecraft
+                \tnet.minecraft.class_1.field_1
+
+                target_method net.minecraft.class_1 method_1 (Lnet/minecraft/class_2;)V
+                \tparam 0 g
+                """;
+        String expected = """
+                unpick v3
+
+                group int
+                \t@scope class net.minecraft.block.Block
+                \t@scope class net.minecraft.item.Item
+                \t@scope class net.minecraft.class_3
+                \tnet.minecraft.block.Block.FLAGS
+
+                target_method net.minecraft.block.Block setFlags (Lnet/minecraft/item/Item;)V
+                \tparam 0 g
+                """;
+
+        UnpickV3Writer writer = new UnpickV3Writer();
+        try (UnpickV3Reader reader = new UnpickV3Reader(new StringReader(input))) {
+            reader.accept(new MappingTableRemapper(writer, read("intermediary", "named")) {
+                @Override
+                protected String getFieldDesc(String className, String fieldName) {
+                    // the fields of classes in the table are listed instead
+                    throw new AssertionError("Looked up " + className + "." + fieldName);
+                }
+            });
+        }
+        assertEquals(expected, writer.getOutput().replace(System.lineSeparator(), "\n"));
+    }
+
+    private static MappingTable read(String fromNamespace, String toNamespace) throws IOException {
+        return MappingTable.readTinyV2(new StringReader(MAPPINGS), fromNamespace, toNamespace);
+    }
+}
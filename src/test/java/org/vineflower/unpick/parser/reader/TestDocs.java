@@ -1,8 +1,11 @@
 package org.vineflower.unpick.parser.reader;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
 
 import java.io.IOException;
+import java.io.StringReader;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -10,6 +13,7 @@ import java.util.List;
 import org.jetbrains.annotations.Nullable;
 import org.junit.jupiter.api.Test;
 
+import org.vineflower.unpick.parser.UnpickV3Reader;
 import org.vineflower.unpick.parser.tree.GroupDefinition;
 import org.vineflower.unpick.parser.tree.UnpickV3Visitor;
 
@@ -25,4 +29,44 @@ public final class TestDocs {
         });
         assertEquals(Arrays.asList("foo", "bar", "boo\nand\nfoo", null, "\nsome\n\nblank\n\n\nlines\n", null), docs);
     }
+
+    @Test
+    public void testLongDocs() {
+        int lines = 100_000;
+        StringBuilder file = new StringBuilder("unpick v3\n\n");
+        for (int i = 0; i < lines; i++) {
+            file.append("#: ").append("x".repeat(80)).append('\n');
+        }
+        file.append("group int\n");
+
+        // appending to the doc comment one line at a time is quadratic, and would take minutes
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+            List<@Nullable String> docs = new ArrayList<>();
+            try (UnpickV3Reader reader = new UnpickV3Reader(new StringReader(file.toString()))) {
+                reader.accept(new UnpickV3Visitor() {
+                    @Override
+                    public void visitGroupDefinition(GroupDefinition groupDefinition) {
+                        docs.add(groupDefinition.docs());
+                    }
+                });
+            }
+            assertEquals(1, docs.size());
+            assertEquals(lines * 81 - 1, docs.getFirst().length());
+        });
+    }
+
+    @Test
+    public void testDropDocs() throws IOException {
+        List<@Nullable String> docs = new ArrayList<>();
+        try (UnpickV3Reader reader = TestReader.open("docs/docs")) {
+            reader.setReadDocs(false);
+            reader.accept(new UnpickV3Visitor() {
+                @Override
+                public void visitGroupDefinition(GroupDefinition groupDefinition) {
+                    docs.add(groupDefinition.docs());
+                }
+            });
+        }
+        assertEquals(Arrays.asList(null, null, null, null, null, null), docs);
+    }
 }
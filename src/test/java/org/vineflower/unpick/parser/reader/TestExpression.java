@@ -271,4 +271,30 @@ public final class TestExpression {
     public void testNonExistentOperator() throws IOException {
         TestReader.assertThrowsParseError("expression/invalid/nonexistent_operator", 3, 7, "Expected '\\n' before '@' token");
     }
+
+    @Test
+    public void testDeepNesting() throws IOException {
+        List<Expression> expressions = new ArrayList<>();
+        TestReader.test("expression/deep_nesting", new UnpickV3Visitor() {
+            @Override
+            public void visitGroupDefinition(GroupDefinition groupDefinition) {
+                expressions.addAll(groupDefinition.constants());
+            }
+        });
+        assertEquals(1, expressions.size());
+        Expression expr = expressions.getFirst();
+        for (int i = 0; i < 500; i++) {
+            ParenExpression parenExpr = assertInstanceOf(ParenExpression.class, expr);
+            UnaryExpression unaryExpr = assertInstanceOf(UnaryExpression.class, parenExpr.expression);
+            assertEquals(UnaryExpression.Operator.NEGATE, unaryExpr.operator);
+            expr = unaryExpr.operand;
+        }
+        LiteralExpression literalExpr = assertInstanceOf(LiteralExpression.class, expr);
+        assertEquals(new Literal.Integer(1), literalExpr.literal);
+    }
+
+    @Test
+    public void testTooDeep() throws IOException {
+        TestReader.assertThrowsParseError("expression/invalid/too_deep", 3, 1026, "max parse depth reached");
+    }
 }
@@ -0,0 +1,105 @@
+package org.vineflower.unpick.parser.reader;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.EnumSet;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import org.vineflower.unpick.parser.UnpickParseException;
+import org.vineflower.unpick.parser.UnpickV3Reader;
+import org.vineflower.unpick.parser.UnpickV3Writer;
+import org.vineflower.unpick.parser.tree.GroupDefinition;
+import org.vineflower.unpick.parser.tree.TargetMethod;
+import org.vineflower.unpick.parser.tree.UnpickItem;
+import org.vineflower.unpick.parser.tree.UnpickV3Visitor;
+
+public final class TestItemKinds {
+    private static final String FILE = """
+            unpick v4
+
+            #: group docs
+            group int A
+            \t@scope class foo.Bar # comment
+            \tfoo.Bar.BAZ #: trailing docs
+            \t#: indented docs
+
+            #: method docs
+            target_method foo.Bar baz (I)V
+            \tparam 0 A
+
+            # not docs
+            #: field docs
+            target_field foo.Bar baz I A #: more trailing docs
+            #: annotation docs
+            target_annotation foo.Ann A
+            \t#: docs after annotation
+            #: group docs 2
+            group String
+            \t"# not a comment" #: docs after string
+            group String
+            \t"\\"#"
+            \t"\\\\" #: docs after escaped backslash
+            #: last docs
+            group int B
+            \t1 | 2 # comment
+            """;
+
+    @Test
+    public void testAllSubsets() throws IOException {
+        for (int mask = 0; mask < 16; mask++) {
+            Set<UnpickItem.Kind> kinds = EnumSet.noneOf(UnpickItem.Kind.class);
+            for (UnpickItem.Kind kind : UnpickItem.Kind.values()) {
+                if ((mask & (1 << kind.ordinal())) != 0) {
+                    kinds.add(kind);
+                }
+            }
+            assertEquals(readFiltered(FILE, kinds, true), readFiltered(FILE, kinds, false), kinds.toString());
+        }
+    }
+
+    @Test
+    public void testCrlf() throws IOException {
+        String file = FILE.replace("\n", "\r\n");
+        Set<UnpickItem.Kind> kinds = EnumSet.of(UnpickItem.Kind.GROUP_DEFINITION);
+        assertEquals(readFiltered(FILE, kinds, true), readFiltered(file, kinds, false));
+    }
+
+    @Test
+    public void testValidateSkippedItems() throws IOException {
+        String file = "unpick v3\n\ntarget_method foo.Bar baz\n\ngroup int A\n\tfoo.Bar.BAZ\n";
+        Set<UnpickItem.Kind> kinds = EnumSet.of(UnpickItem.Kind.GROUP_DEFINITION);
+        assertEquals("unpick v3\n\ngroup int A\n\tfoo.Bar.BAZ\n", readFiltered(file, kinds, false));
+        assertThrows(UnpickParseException.class, () -> readFiltered(file, kinds, true));
+    }
+
+    @Test
+    public void testVisitedKinds() {
+        assertEquals(EnumSet.noneOf(UnpickItem.Kind.class), new UnpickV3Visitor() {
+        }.getVisitedKinds());
+        assertEquals(EnumSet.of(UnpickItem.Kind.GROUP_DEFINITION, UnpickItem.Kind.TARGET_METHOD), new UnpickV3Visitor() {
+            @Override
+            public void visitGroupDefinition(GroupDefinition groupDefinition) {
+            }
+
+            @Override
+            public void visitTargetMethod(TargetMethod targetMethod) {
+            }
+        }.getVisitedKinds());
+        assertEquals(EnumSet.allOf(UnpickItem.Kind.class), new UnpickV3Writer().getVisitedKinds());
+    }
+
+    private static String readFiltered(String file, Set<UnpickItem.Kind> kinds, boolean validate) throws IOException {
+        UnpickV3Writer writer = new UnpickV3Writer();
+        try (UnpickV3Reader reader = new UnpickV3Reader(new StringReader(file))) {
+            reader.setItemKinds(kinds);
+            reader.setValidateSkippedItems(validate);
+            reader.accept(writer);
+        }
+        return writer.getOutput();
+    }
+}
@@ -0,0 +1,86 @@
+package org.vineflower.unpick.parser.reader;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import org.vineflower.unpick.parser.UnpickParseException;
+import org.vineflower.unpick.parser.UnpickV3Reader;
+import org.vineflower.unpick.parser.UnpickV3Writer;
+import org.vineflower.unpick.parser.tree.GroupDefinition;
+import org.vineflower.unpick.parser.tree.TargetAnnotation;
+import org.vineflower.unpick.parser.tree.TargetField;
+import org.vineflower.unpick.parser.tree.TargetMethod;
+import org.vineflower.unpick.parser.tree.UnpickItem;
+
+public final class TestItems {
+    @Test
+    public void testNextItem() throws IOException {
+        try (UnpickV3Reader reader = TestReader.open("other/spec")) {
+            assertEquals(4, reader.getVersion());
+            List<Class<?>> types = new ArrayList<>();
+            UnpickItem item;
+            while ((item = reader.nextItem()) != null) {
+                types.add(item.getClass());
+            }
+            assertEquals(Arrays.asList(
+                    GroupDefinition.class,
+                    GroupDefinition.class,
+                    GroupDefinition.class,
+                    GroupDefinition.class,
+                    GroupDefinition.class,
+                    TargetMethod.class,
+                    TargetMethod.class,
+                    TargetField.class,
+                    GroupDefinition.class,
+                    TargetAnnotation.class
+            ), types);
+            assertNull(reader.nextItem());
+        }
+    }
+
+    @Test
+    public void testSameAsVisitor() throws IOException {
+        UnpickV3Writer expected = new UnpickV3Writer();
+        TestReader.test("other/spec", expected);
+
+        UnpickV3Writer actual = new UnpickV3Writer();
+        try (UnpickV3Reader reader = TestReader.open("other/spec")) {
+            actual.visitHeader(reader.getVersion());
+            reader.stream().forEach(item -> item.accept(actual));
+        }
+        assertEquals(expected.getOutput(), actual.getOutput());
+    }
+
+    @Test
+    public void testStopEarly() throws IOException {
+        String file = "unpick v3\n\ngroup int A\n\tfoo.Bar.BAZ\n\ngroup int\n\t@invalid\n";
+        try (UnpickV3Reader reader = new UnpickV3Reader(new StringReader(file))) {
+            GroupDefinition first = assertInstanceOf(GroupDefinition.class, reader.stream().findFirst().orElseThrow());
+            assertEquals("A", first.name());
+        }
+    }
+
+    @Test
+    public void testIteratorError() throws IOException {
+        String file = "unpick v3\n\ngroup int A\n\tfoo.Bar.BAZ\n\ngroup int\n\t@invalid\n";
+        try (UnpickV3Reader reader = new UnpickV3Reader(new StringReader(file))) {
+            Iterator<UnpickItem> iterator = reader.iterator();
+            assertInstanceOf(GroupDefinition.class, iterator.next());
+            UncheckedIOException e = assertThrows(UncheckedIOException.class, iterator::hasNext);
+            UnpickParseException cause = assertInstanceOf(UnpickParseException.class, e.getCause());
+            assertEquals(7, cause.line);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package org.vineflower.unpick.parser.reader;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+
+import org.junit.jupiter.api.Test;
+
+import org.vineflower.unpick.parser.UnpickParseException;
+import org.vineflower.unpick.parser.UnpickV3Reader;
+import org.vineflower.unpick.parser.UnpickV3Writer;
+import org.vineflower.unpick.parser.tree.GroupDefinition;
+import org.vineflower.unpick.parser.tree.expr.ExpressionVisitor;
+import org.vineflower.unpick.parser.tree.expr.LazyExpression;
+
+public final class TestLazyExpression {
+    @Test
+    public void testSameAsEager() throws IOException {
+        for (String file : new String[] {"expression/expression", "other/spec", "docs/docs", "whitespace/comments"}) {
+            UnpickV3Writer expected = new UnpickV3Writer();
+            TestReader.test(file, expected);
+
+            UnpickV3Writer actual = new UnpickV3Writer();
+            try (UnpickV3Reader reader = TestReader.open(file)) {
+                reader.setLazyExpressions(true);
+                reader.accept(actual);
+            }
+            assertEquals(expected.getOutput(), actual.getOutput(), file);
+        }
+    }
+
+    @Test
+    public void testResolvedOnce() throws IOException {
+        try (UnpickV3Reader reader = TestReader.open("other/spec")) {
+            reader.setLazyExpressions(true);
+            GroupDefinition group = assertInstanceOf(GroupDefinition.class, reader.nextItem());
+            LazyExpression constant = assertInstanceOf(LazyExpression.class, group.constants().getFirst());
+            assertEquals("net.minecraft.util.Mth.PI", constant.source);
+            assertFalse(constant.isResolved());
+            assertSame(constant.resolve(), constant.resolve());
+            assertTrue(constant.isResolved());
+        }
+    }
+
+    @Test
+    public void testErrors() throws IOException {
+        String[] files = {
+                "expression/invalid/identifier",
+                "expression/invalid/identifier_parenthesized",
+                "expression/invalid/binary_expression_unterminated",
+                "expression/invalid/unary_expression_incomplete",
+                "expression/invalid/unclosed_parentheses",
+                "expression/invalid/nonexistent_operator",
+        };
+        for (String file : files) {
+            UnpickParseException expected = assertThrows(UnpickParseException.class, () -> TestReader.test(file));
+
+            try (UnpickV3Reader reader = TestReader.open(file)) {
+                reader.setLazyExpressions(true);
+                GroupDefinition group = assertInstanceOf(GroupDefinition.class, reader.nextItem());
+                LazyExpression constant = assertInstanceOf(LazyExpression.class, group.constants().getFirst());
+
+                UnpickParseException actual = assertThrows(UnpickParseException.class, constant::resolve);
+                assertEquals(expected.getMessage(), actual.getMessage(), file);
+                assertEquals(expected.line, actual.line, file);
+                assertEquals(expected.column, actual.column, file);
+
+                UncheckedIOException wrapped = assertThrows(UncheckedIOException.class, () -> constant.accept(new ExpressionVisitor() {
+                }));
+                assertEquals(expected.getMessage(), wrapped.getCause().getMessage(), file);
+            }
+        }
+    }
+
+    @Test
+    public void testResolveAfterError() throws IOException {
+        String valid = "unpick v3\n\ngroup int\n\t(foo.Bar.B | 2) << 1 # comment\n\t-1\n";
+        UnpickV3Writer expected = new UnpickV3Writer();
+        try (UnpickV3Reader reader = new UnpickV3Reader(new StringReader(valid))) {
+            reader.accept(expected);
+        }
+
+        // constants are resolved by a reader that is reused, which must not keep the state of the failed parse
+        try (UnpickV3Reader reader = new UnpickV3Reader(new StringReader("unpick v3\n\ngroup int\n\tfoo.Bar.A | (1 <<\n"))) {
+            reader.setLazyExpressions(true);
+            GroupDefinition group = assertInstanceOf(GroupDefinition.class, reader.nextItem());
+            LazyExpression constant = assertInstanceOf(LazyExpression.class, group.constants().getFirst());
+            assertThrows(UnpickParseException.class, constant::resolve);
+        }
+
+        UnpickV3Writer actual = new UnpickV3Writer();
+        try (UnpickV3Reader reader = new UnpickV3Reader(new StringReader(valid))) {
+            reader.setLazyExpressions(true);
+            reader.accept(actual);
+        }
+        assertEquals(expected.getOutput(), actual.getOutput());
+    }
+}
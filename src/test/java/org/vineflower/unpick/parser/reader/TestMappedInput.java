@@ -0,0 +1,99 @@
+package org.vineflower.unpick.parser.reader;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+
+import org.vineflower.unpick.parser.UnpickParseException;
+import org.vineflower.unpick.parser.UnpickV3Reader;
+import org.vineflower.unpick.parser.UnpickV3Writer;
+
+public final class TestMappedInput {
+    private static final String HEADER = "unpick v3\n";
+
+    @Test
+    public void testEmpty() throws IOException {
+        assertSameAsReader("");
+        assertSameAsReader(HEADER);
+    }
+
+    @Test
+    public void testLineTerminators() throws IOException {
+        assertSameAsReader(HEADER + "\ngroup int\n\tfoo.Bar.BAZ\n");
+        assertSameAsReader("unpick v3\r\n\r\ngroup int\r\n\tfoo.Bar.BAZ\r\n");
+        assertSameAsReader("unpick v3\r\rgroup int\r\tfoo.Bar.BAZ\r");
+        assertSameAsReader("unpick v3\n\r\n\rgroup int\r\n\tfoo.Bar.BAZ");
+    }
+
+    @Test
+    public void testLongLines() throws IOException {
+        String field = "a".repeat(1000);
+        assertSameAsReader(HEADER + "\ngroup int\n\tfoo.Bar." + field + "\n\t\"" + "b".repeat(5000) + "\"\n");
+        assertSameAsReader(HEADER + "\ngroup int\n\tfoo.Bar." + field + " | 1 | 2 | 3 | 4 | 5 | 6 | 7 | 8 | 9\n");
+    }
+
+    @Test
+    public void testNonAscii() throws IOException {
+        assertSameAsReader(HEADER + "\n#: déjà vu ☃ 😀\ngroup String\n\t\"é€😀\" # über\n");
+        assertSameAsReader(HEADER + "\ngroup char\n\t'é'\n\t'€'\n");
+        assertSameAsReader(HEADER + "\ngroup String\n\t\"" + "é".repeat(300) + "\"\n");
+    }
+
+    @Test
+    public void testMalformedUtf8() throws IOException {
+        byte[] header = HEADER.getBytes(StandardCharsets.UTF_8);
+        byte[] file = new byte[header.length + 6];
+        System.arraycopy(header, 0, file, 0, header.length);
+        file[header.length] = '#';
+        file[header.length + 1] = (byte) 0xe2;
+        file[header.length + 2] = (byte) 0x82;
+        file[header.length + 3] = '\n';
+        file[header.length + 4] = '#';
+        file[header.length + 5] = (byte) 0xff;
+        assertEquals(HEADER, parseMapped(file));
+    }
+
+    @Test
+    public void testErrors() throws IOException {
+        assertSameAsReader("unpick v2\n");
+        assertSameAsReader(HEADER + "\ngroup int\n\té\n");
+        assertSameAsReader("unpick v3\r\n\r\ngroup int\r\n\tfoo.Bar.BAZ |\r\n");
+        assertSameAsReader(HEADER + "\ngroup String\n\t\"" + "é".repeat(300) + "\n");
+    }
+
+    private static void assertSameAsReader(String file) throws IOException {
+        String expected;
+        try (UnpickV3Reader reader = new UnpickV3Reader(new StringReader(file))) {
+            expected = parse(reader);
+        }
+        assertEquals(expected, parseMapped(file.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static String parseMapped(byte[] file) throws IOException {
+        Path path = Files.createTempFile("unpick", ".unpick");
+        try {
+            Files.write(path, file);
+            try (UnpickV3Reader reader = new UnpickV3Reader(path)) {
+                return parse(reader);
+            }
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    private static String parse(UnpickV3Reader reader) throws IOException {
+        UnpickV3Writer writer = new UnpickV3Writer();
+        try {
+            reader.accept(writer);
+        } catch (UnpickParseException e) {
+            return e.getMessage() + " @ " + e.line + ":" + e.column;
+        }
+        return writer.getOutput();
+    }
+}
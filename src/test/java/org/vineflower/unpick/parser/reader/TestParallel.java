@@ -0,0 +1,142 @@
+package org.vineflower.unpick.parser.reader;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Test;
+
+import org.vineflower.unpick.parser.UnpickParseException;
+import org.vineflower.unpick.parser.UnpickV3Reader;
+import org.vineflower.unpick.parser.UnpickV3Writer;
+
+public final class TestParallel {
+    private static final int ITEMS = 20000;
+
+    @Test
+    public void testSameAsSequential() throws IOException {
+        assertSameAsSequential(generate("\n", -1));
+    }
+
+    @Test
+    public void testCrlf() throws IOException {
+        assertSameAsSequential(generate("\r\n", -1));
+        assertSameAsSequential(generate("\r", -1));
+    }
+
+    @Test
+    public void testError() throws IOException {
+        assertSameAsSequential(generate("\n", ITEMS - 100));
+        assertSameAsSequential(generate("\r\n", ITEMS / 2));
+    }
+
+    @Test
+    public void testAfterNextItem() throws IOException {
+        StringBuilder sb = new StringBuilder("unpick v4\n\ngroup int g\n\t1\n");
+        for (int i = 0; i < 5; i++) {
+            sb.append("\ntarget_field foo.Bar").append(i).append(" baz I g\n");
+        }
+        String file = sb.toString();
+
+        Path path = Files.createTempFile("unpick", ".unpick");
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            Files.writeString(path, file, StandardCharsets.UTF_8);
+            try (UnpickV3Reader reader = new UnpickV3Reader(path)) {
+                // the first target field has been lexed ahead, so it can't be split off
+                reader.nextItem();
+                assertThrows(IllegalStateException.class, () -> reader.acceptParallel(new UnpickV3Writer(), pool));
+            }
+            try (UnpickV3Reader reader = new UnpickV3Reader(new StringReader(file))) {
+                reader.nextItem();
+                assertThrows(IllegalStateException.class, () -> reader.acceptParallel(new UnpickV3Writer(), pool));
+            }
+
+            // reading only the header is fine
+            try (UnpickV3Reader reader = new UnpickV3Reader(path)) {
+                assertEquals(4, reader.getVersion());
+                UnpickV3Writer writer = new UnpickV3Writer();
+                reader.acceptParallel(writer, pool);
+                assertEquals(file, writer.getOutput().replace(System.lineSeparator(), "\n"));
+            }
+        } finally {
+            pool.shutdown();
+            Files.delete(path);
+        }
+    }
+
+    private static String generate(String newline, int errorItem) {
+        StringBuilder sb = new StringBuilder("unpick v4").append(newline);
+        for (int i = 0; i < ITEMS; i++) {
+            sb.append(newline);
+            switch (i % 5) {
+                case 0 -> sb.append("#: docs for ").append(i).append(newline).append("#:").append(newline).append(newline).append("\t#: more docs").append(newline);
+                case 1 -> sb.append("# not docs").append(newline);
+                case 2 -> sb.append("#: overridden docs").append(newline).append("# comment").append(newline).append("#: docs ").append(i).append(newline);
+                default -> {
+                }
+            }
+            if (i == errorItem) {
+                sb.append("group int Group").append(i).append(newline).append("\tfoo.Bar.BAZ |").append(newline);
+            } else if (i % 7 == 0) {
+                sb.append("target_method foo.Bar").append(i).append(" baz (IJ)V").append(newline);
+                sb.append("\tparam 0 Group").append(i).append(newline).append("\treturn Group").append(i).append(newline);
+            } else if (i % 11 == 0) {
+                sb.append("target_field foo.Bar").append(i).append(" baz I Group").append(i).append(newline);
+            } else if (i % 13 == 0) {
+                sb.append("target_annotation foo.Ann").append(i).append(" Group").append(i).append(newline);
+            } else {
+                sb.append("group int Group").append(i).append(newline);
+                sb.append("\t@scope class foo.Bar").append(i).append(newline).append(newline);
+                for (int j = 0; j < i % 4; j++) {
+                    sb.append("\tfoo.Bar.FIELD_").append(j).append(" | 1 << ").append(j).append(" # comment").append(newline);
+                    sb.append("\t# indented comment").append(newline);
+                }
+                if (i % 3 == 0) {
+                    // a doc comment after tokens belongs to the next item
+                    sb.append("\tfoo.Bar.LAST #: trailing docs ").append(i).append(newline);
+                }
+            }
+        }
+        return sb.toString();
+    }
+
+    private static void assertSameAsSequential(String file) throws IOException {
+        String expected;
+        try (UnpickV3Reader reader = new UnpickV3Reader(new StringReader(file))) {
+            expected = parse(reader, null);
+        }
+
+        Path path = Files.createTempFile("unpick", ".unpick");
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            Files.writeString(path, file, StandardCharsets.UTF_8);
+            try (UnpickV3Reader reader = new UnpickV3Reader(path)) {
+                assertEquals(expected, parse(reader, pool));
+            }
+        } finally {
+            pool.shutdown();
+            Files.delete(path);
+        }
+    }
+
+    private static String parse(UnpickV3Reader reader, ForkJoinPool pool) throws IOException {
+        UnpickV3Writer writer = new UnpickV3Writer();
+        try {
+            if (pool == null) {
+                reader.accept(writer);
+            } else {
+                reader.acceptParallel(writer, pool);
+            }
+        } catch (UnpickParseException e) {
+            return writer.getOutput() + e.getMessage() + " @ " + e.line + ":" + e.column;
+        }
+        return writer.getOutput();
+    }
+}
@@ -34,12 +34,16 @@ public final class TestReader {
     }
 
     public static void test(String file, UnpickV3Visitor visitor) throws IOException {
+        try (UnpickV3Reader reader = open(file)) {
+            reader.accept(visitor);
+        }
+    }
+
+    public static UnpickV3Reader open(String file) {
         InputStream in = TestReader.class.getResourceAsStream("/" + file + ".unpick");
         if (in == null) {
             throw new AssertionFailedError("Unable to find resource " + file);
         }
-        try (UnpickV3Reader reader = new UnpickV3Reader(new BufferedReader(new InputStreamReader(in)))) {
-            reader.accept(visitor);
-        }
+        return new UnpickV3Reader(new BufferedReader(new InputStreamReader(in)));
     }
 }
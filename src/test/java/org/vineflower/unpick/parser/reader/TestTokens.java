@@ -264,6 +264,26 @@ public final class TestTokens {
         TestReader.assertThrowsParseError("tokens/invalid/integer_out_of_bounds_negative_octal", 3, 6, "Integer out of bounds");
     }
 
+    @Test
+    public void testLongOutOfBoundsPositiveDecimal() throws IOException {
+        TestReader.assertThrowsParseError("tokens/invalid/long_out_of_bounds_positive_decimal", 3, 5, "Long out of bounds");
+    }
+
+    @Test
+    public void testLongOutOfBoundsNegativeDecimal() throws IOException {
+        TestReader.assertThrowsParseError("tokens/invalid/long_out_of_bounds_negative_decimal", 3, 6, "Long out of bounds");
+    }
+
+    @Test
+    public void testLongOutOfBoundsPositiveHex() throws IOException {
+        TestReader.assertThrowsParseError("tokens/invalid/long_out_of_bounds_positive_hex", 3, 5, "Long out of bounds");
+    }
+
+    @Test
+    public void testLongOutOfBoundsNegativeHex() throws IOException {
+        TestReader.assertThrowsParseError("tokens/invalid/long_out_of_bounds_negative_hex", 3, 6, "Long out of bounds");
+    }
+
     @Test
     public void testCharEmpty() throws IOException {
         TestReader.assertThrowsParseError("tokens/invalid/char_empty", 3, 6, "No character in char literal");
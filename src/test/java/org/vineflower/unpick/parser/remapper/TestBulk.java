@@ -0,0 +1,137 @@
+package org.vineflower.unpick.parser.remapper;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import org.vineflower.unpick.parser.UnpickV3Reader;
+import org.vineflower.unpick.parser.UnpickV3Remapper;
+import org.vineflower.unpick.parser.UnpickV3Writer;
+
+public final class TestBulk {
+    private static final String FILE = """
+            unpick v4
+
+            group int
+            \t@scope package unmapped.bar
+            \t@scope method unmapped.foo.B foo2 (Lunmapped/foo/A;)V
+            \tunmapped.foo.B.baz
+            \tunmapped.foo.B.baz
+
+            target_field unmapped.foo.B baz I g
+
+            target_method unmapped.foo.B foo2 (Lunmapped/foo/A;)V
+
+            target_method unmapped.foo.B foo2 (Lunmapped/foo/A;)V
+
+            target_annotation unmapped.foo.A g
+            """;
+
+    @Test
+    public void testDistinctNames() throws IOException {
+        BulkRemapper remapper = new BulkRemapper(false);
+        remapper.setBulkBatchSize(100);
+        assertEquals(remap(new BulkRemapper(false)), remap(remapper));
+
+        assertEquals(List.of(Set.of("unmapped.foo.A", "unmapped.foo.B", "unmapped.bar.C")), remapper.classNames);
+        assertEquals(List.of(Set.of(new UnpickV3Remapper.Member("unmapped.foo.B", "baz", "I"))), remapper.fieldNames);
+        assertEquals(List.of(Set.of(new UnpickV3Remapper.Member("unmapped.foo.B", "foo2", "(Lunmapped/foo/A;)V"))), remapper.methodNames);
+    }
+
+    @Test
+    public void testBatches() throws IOException {
+        BulkRemapper remapper = new BulkRemapper(false);
+        remapper.setBulkBatchSize(2);
+        assertEquals(remap(new BulkRemapper(false)), remap(remapper));
+
+        assertEquals(List.of(
+                Set.of("unmapped.foo.A", "unmapped.foo.B", "unmapped.bar.C"),
+                Set.of("unmapped.foo.A", "unmapped.foo.B"),
+                Set.of("unmapped.foo.A")
+        ), remapper.classNames);
+        assertEquals(List.of(Set.of(new UnpickV3Remapper.Member("unmapped.foo.B", "baz", "I"))), remapper.fieldNames);
+        assertEquals(2, remapper.methodNames.size());
+    }
+
+    @Test
+    public void testOnlyChangedNames() throws IOException {
+        BulkRemapper remapper = new BulkRemapper(true);
+        remapper.setBulkBatchSize(100);
+        assertEquals(remap(new BulkRemapper(false)), remap(remapper));
+    }
+
+    @Test
+    public void testNegativeBatchSize() {
+        assertThrows(IllegalArgumentException.class, () -> new BulkRemapper(false).setBulkBatchSize(-1));
+    }
+
+    private static String remap(BulkRemapper remapper) throws IOException {
+        try (UnpickV3Reader reader = new UnpickV3Reader(new StringReader(FILE))) {
+            reader.accept(remapper);
+        }
+        remapper.flush();
+        return remapper.writer.getOutput();
+    }
+
+    /**
+     * Records the names it is asked to map in bulk, and optionally only returns the ones that change.
+     */
+    private static final class BulkRemapper extends TestRemapper.Remapper {
+        final UnpickV3Writer writer;
+        final boolean onlyChanged;
+        final List<Set<String>> classNames = new ArrayList<>();
+        final List<Set<Member>> fieldNames = new ArrayList<>();
+        final List<Set<Member>> methodNames = new ArrayList<>();
+
+        BulkRemapper(boolean onlyChanged) {
+            this(new UnpickV3Writer(), onlyChanged);
+        }
+
+        private BulkRemapper(UnpickV3Writer writer, boolean onlyChanged) {
+            super(writer, null);
+            this.writer = writer;
+            this.onlyChanged = onlyChanged;
+        }
+
+        @Override
+        protected Map<String, String> mapClassNames(Set<String> classNames) {
+            this.classNames.add(Set.copyOf(classNames));
+            return onlyChanged(super.mapClassNames(classNames));
+        }
+
+        @Override
+        protected Map<Member, String> mapFieldNames(Set<Member> fields) {
+            fieldNames.add(Set.copyOf(fields));
+            return onlyChanged(super.mapFieldNames(fields));
+        }
+
+        @Override
+        protected Map<Member, String> mapMethodNames(Set<Member> methods) {
+            methodNames.add(Set.copyOf(methods));
+            return onlyChanged(super.mapMethodNames(methods));
+        }
+
+        private <K> Map<K, String> onlyChanged(Map<K, String> mappedNames) {
+            if (!onlyChanged) {
+                return mappedNames;
+            }
+            Map<K, String> changed = new HashMap<>();
+            mappedNames.forEach((key, mappedName) -> {
+                String name = key instanceof Member member ? member.name() : (String) key;
+                if (!mappedName.equals(name)) {
+                    changed.put(key, mappedName);
+                }
+            });
+            return changed;
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package org.vineflower.unpick.parser.remapper;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.Test;
+
+import org.vineflower.unpick.parser.UnpickV3Reader;
+import org.vineflower.unpick.parser.UnpickV3Remapper;
+import org.vineflower.unpick.parser.UnpickV3Writer;
+import org.vineflower.unpick.parser.tree.UnpickV3Visitor;
+
+public final class TestCompose {
+    private static final String FILE = """
+            unpick v4
+
+            group int
+            \t@scope package unmapped.foo
+            \tunmapped.foo.B.baz
+            \tunmapped.foo.B.baz:int | unmapped.bar.C.*
+
+            group int
+            \t@scope class unmapped.bar.C
+            \t@scope method unmapped.foo.B foo2 (Lunmapped/foo/A;)V
+            \t0
+
+            target_field unmapped.foo.B baz I g
+
+            target_field unmapped.bar.C foo Lunmapped/foo/A; g
+
+            target_method unmapped.foo.B foo2 (Lunmapped/foo/A;)V
+            \tparam 0 g
+
+            target_method unmapped.bar.C foo ([Lunmapped/foo/A;ILjava/lang/String;)Lunmapped/bar/C;
+
+            target_annotation unmapped.foo.B g
+            """;
+    private static final String EXPECTED = """
+            unpick v4
+
+            group int
+            \t@scope class named.X
+            \t@scope class named.Y
+            \tnamed.Y.named_quux
+            \tnamed.Y.named_quux:int | named.bar.Z.*
+
+            group int
+            \t@scope class named.bar.Z
+            \t@scope method named.Y named_bar2 (Lnamed/X;)V
+            \t0
+
+            target_field named.Y named_quux I g
+
+            target_field named.bar.Z foo Lnamed/X; g
+
+            target_method named.Y named_bar2 (Lnamed/X;)V
+            \tparam 0 g
+
+            target_method named.bar.Z foo ([Lnamed/X;ILjava/lang/String;)Lnamed/bar/Z;
+
+            target_annotation named.Y g
+            """;
+
+    @Test
+    public void testSameAsChained() throws IOException {
+        String chained = remap(writer -> new TestRemapper.Remapper(new NamedRemapper(writer), null));
+        assertEquals(EXPECTED, chained);
+
+        String composed = remap(writer -> UnpickV3Remapper.compose(writer, new TestRemapper.Remapper(writer, null), new NamedRemapper(writer)));
+        assertEquals(chained, composed);
+    }
+
+    @Test
+    public void testThreeStages() throws IOException {
+        String composed = remap(writer -> UnpickV3Remapper.compose(
+                writer,
+                new TestRemapper.Remapper(writer, null),
+                new NamedRemapper(writer),
+                new NamedRemapper(writer)
+        ));
+        assertEquals(EXPECTED, composed);
+    }
+
+    @Test
+    public void testNoStages() {
+        assertThrows(IllegalArgumentException.class, () -> UnpickV3Remapper.compose(new UnpickV3Writer()));
+    }
+
+    private static String remap(Function<UnpickV3Writer, UnpickV3Visitor> remapperFactory) throws IOException {
+        UnpickV3Writer writer = new UnpickV3Writer();
+        try (UnpickV3Reader reader = new UnpickV3Reader(new StringReader(FILE))) {
+            reader.accept(remapperFactory.apply(writer));
+        }
+        return writer.getOutput().replace(System.lineSeparator(), "\n");
+    }
+
+    /**
+     * Maps the output of {@link TestRemapper.Remapper} to another namespace, and leaves names in that namespace as they
+     * are.
+     */
+    private static final class NamedRemapper extends UnpickV3Remapper {
+        private static final Map<String, String> CLASSES = Map.of(
+                "mapped.foo.X", "named.X",
+                "mapped.bar.Y", "named.Y",
+                "mapped.bar.Z", "named.bar.Z"
+        );
+
+        NamedRemapper(UnpickV3Visitor downstream) {
+            super(downstream);
+        }
+
+        @Override
+        protected String mapClassName(String className) {
+            return CLASSES.getOrDefault(className, className);
+        }
+
+        @Override
+        protected String mapFieldName(String className, String fieldName, String fieldDesc) {
+            return className.equals("mapped.bar.Y") && fieldName.equals("quux") && fieldDesc.equals("I") ? "named_quux" : fieldName;
+        }
+
+        @Override
+        protected String mapMethodName(String className, String methodName, String methodDesc) {
+            return className.equals("mapped.bar.Y") && methodName.equals("bar2") && methodDesc.equals("(Lmapped/foo/X;)V") ? "named_bar2" : methodName;
+        }
+
+        @Override
+        protected List<String> getClassesInPackage(String pkg) {
+            return List.of();
+        }
+
+        @Override
+        protected String getFieldDesc(String className, String fieldName) {
+            return "I";
+        }
+    }
+}
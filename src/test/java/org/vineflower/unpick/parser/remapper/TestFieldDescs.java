@@ -0,0 +1,164 @@
+package org.vineflower.unpick.parser.remapper;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jetbrains.annotations.Nullable;
+import org.junit.jupiter.api.Test;
+
+import org.vineflower.unpick.parser.UnpickV3Reader;
+import org.vineflower.unpick.parser.UnpickV3Remapper;
+import org.vineflower.unpick.parser.UnpickV3Writer;
+
+public final class TestFieldDescs {
+    private static final int CLASSES = 10;
+    private static final int FIELDS = 100;
+
+    @Test
+    public void testClassesListedOnce() throws IOException {
+        String file = generate();
+        String expected = remap(new ListingRemapper(new UnpickV3Writer(), false), file);
+
+        ListingRemapper remapper = new ListingRemapper(new UnpickV3Writer(), true);
+        assertEquals(expected, remap(remapper, file));
+        assertListedOnce(remapper);
+        // the inherited field isn't listed
+        assertEquals(1, remapper.fieldLookups.get());
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            ListingRemapper parallelRemapper = new ListingRemapper(new UnpickV3Writer(), true);
+            parallelRemapper.setPool(pool);
+            assertEquals(expected, remap(parallelRemapper, file));
+            assertListedOnce(parallelRemapper);
+            assertEquals(1, parallelRemapper.fieldLookups.get());
+        } finally {
+            pool.shutdown();
+        }
+
+        ListingRemapper bulkRemapper = new ListingRemapper(new UnpickV3Writer(), true);
+        bulkRemapper.setBulkBatchSize(3);
+        assertEquals(expected, remap(bulkRemapper, file));
+        assertListedOnce(bulkRemapper);
+        assertEquals(1, bulkRemapper.fieldLookups.get());
+    }
+
+    @Test
+    public void testUnlisted() throws IOException {
+        String file = generate();
+        ListingRemapper remapper = new ListingRemapper(new UnpickV3Writer(), false);
+        remap(remapper, file);
+        // each distinct field is still only looked up once
+        assertEquals(CLASSES * FIELDS + 1, remapper.fieldLookups.get());
+
+        // including fields whose descriptor isn't known
+        StringBuilder sb = new StringBuilder("unpick v4\n\ngroup int\n");
+        for (int i = 0; i < 50; i++) {
+            sb.append("\ta.B.UNKNOWN\n");
+        }
+        ListingRemapper unknownRemapper = new ListingRemapper(new UnpickV3Writer(), false);
+        remap(unknownRemapper, sb.toString());
+        assertEquals(1, unknownRemapper.fieldLookups.get());
+    }
+
+    private static void assertListedOnce(ListingRemapper remapper) {
+        assertEquals(CLASSES, remapper.listings.size());
+        for (AtomicInteger listings : remapper.listings.values()) {
+            assertEquals(1, listings.get());
+        }
+    }
+
+    private static String generate() {
+        StringBuilder sb = new StringBuilder("unpick v4\n");
+        for (int group = 0; group < 4; group++) {
+            sb.append("\ngroup int Group").append(group).append('\n');
+            // the first group is large enough to have its constants split
+            int fields = group == 0 ? FIELDS : FIELDS / 10;
+            for (int i = 0; i < CLASSES; i++) {
+                for (int j = 0; j < fields; j++) {
+                    sb.append("\tpkg.Class").append(i).append(".FIELD_").append(j).append('\n');
+                }
+            }
+            sb.append("\tpkg.Class0.INHERITED\n");
+        }
+        return sb.toString();
+    }
+
+    private static String remap(ListingRemapper remapper, String file) throws IOException {
+        try (UnpickV3Reader reader = new UnpickV3Reader(new StringReader(file))) {
+            reader.accept(remapper);
+        }
+        remapper.flush();
+        return remapper.writer.getOutput();
+    }
+
+    /**
+     * Maps int fields to lower case, and counts how many times each class is listed and fields are looked up. The
+     * descriptor of fields named {@code UNKNOWN} isn't known.
+     */
+    private static final class ListingRemapper extends UnpickV3Remapper {
+        final UnpickV3Writer writer;
+        final boolean listable;
+        final Map<String, AtomicInteger> listings = new ConcurrentHashMap<>();
+        final AtomicInteger fieldLookups = new AtomicInteger();
+
+        ListingRemapper(UnpickV3Writer writer, boolean listable) {
+            super(writer);
+            this.writer = writer;
+            this.listable = listable;
+        }
+
+        @Override
+        protected String mapClassName(String className) {
+            return className;
+        }
+
+        @Override
+        protected String mapFieldName(String className, String fieldName, String fieldDesc) {
+            return "I".equals(fieldDesc) ? fieldName.toLowerCase(Locale.ROOT) : fieldName;
+        }
+
+        @Override
+        protected String mapMethodName(String className, String methodName, String methodDesc) {
+            return methodName;
+        }
+
+        @Override
+        protected List<String> getClassesInPackage(String pkg) {
+            return List.of();
+        }
+
+        @Override
+        @Nullable
+        protected String getFieldDesc(String className, String fieldName) {
+            fieldLookups.incrementAndGet();
+            return switch (fieldName) {
+                case "INHERITED" -> "J";
+                case "UNKNOWN" -> null;
+                default -> "I";
+            };
+        }
+
+        @Override
+        @Nullable
+        protected Map<String, String> getFieldDescs(String className) {
+            if (!listable) {
+                return null;
+            }
+            listings.computeIfAbsent(className, k -> new AtomicInteger()).incrementAndGet();
+            Map<String, String> fieldDescs = new ConcurrentHashMap<>();
+            for (int i = 0; i < FIELDS; i++) {
+                fieldDescs.put("FIELD_" + i, "I");
+            }
+            return fieldDescs;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package org.vineflower.unpick.parser.remapper;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.jetbrains.annotations.Nullable;
+import org.junit.jupiter.api.Test;
+
+import org.vineflower.unpick.parser.UnpickV3Reader;
+import org.vineflower.unpick.parser.UnpickV3Remapper;
+import org.vineflower.unpick.parser.UnpickV3Writer;
+import org.vineflower.unpick.parser.tree.UnpickV3Visitor;
+
+public final class TestParallel {
+    private static final int ITEMS = 2000;
+
+    @Test
+    public void testSameAsSequential() throws IOException {
+        String file = generate(-1);
+        String expected = remap(file, null);
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            assertEquals(expected, remap(file, pool));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testError() {
+        String file = generate(ITEMS / 2);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            assertThrows(IllegalArgumentException.class, () -> remap(file, pool));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static String generate(int errorItem) {
+        StringBuilder sb = new StringBuilder("unpick v4\n");
+        for (int i = 0; i < ITEMS; i++) {
+            String className = i == errorItem ? "pkg.Error" : "pkg.Class" + i;
+            sb.append('\n');
+            switch (i % 4) {
+                case 0 -> {
+                    sb.append("group int Group").append(i).append("\n\t@scope class ").append(className).append('\n');
+                    // some groups are large enough to have their constants split
+                    int constants = i % 40 == 0 ? 1000 : 3;
+                    for (int j = 0; j < constants; j++) {
+                        sb.append('\t').append(className).append(".FIELD_").append(j).append('\n');
+                    }
+                }
+                case 1 -> sb.append("target_field ").append(className).append(" field Lpkg/Class").append(i + 1).append("; Group\n");
+                case 2 -> sb.append("target_method ").append(className).append(" method (Lpkg/Class").append(i + 1).append(";)V\n\tparam 0 Group\n");
+                default -> sb.append("target_annotation ").append(className).append(" Group\n");
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String remap(String file, @Nullable ForkJoinPool pool) throws IOException {
+        UnpickV3Writer writer = new UnpickV3Writer();
+        UnpickV3Remapper remapper = new SuffixRemapper(writer);
+        remapper.setPool(pool);
+        try (UnpickV3Reader reader = new UnpickV3Reader(new StringReader(file))) {
+            reader.accept(remapper);
+        }
+        remapper.flush();
+        return writer.getOutput();
+    }
+
+    private static final class SuffixRemapper extends UnpickV3Remapper {
+        SuffixRemapper(UnpickV3Visitor downstream) {
+            super(downstream);
+        }
+
+        @Override
+        protected String mapClassName(String className) {
+            if (className.equals("pkg.Error")) {
+                throw new IllegalArgumentException("Unknown class: " + className);
+            }
+            return className + "Mapped";
+        }
+
+        @Override
+        protected String mapFieldName(String className, String fieldName, String fieldDesc) {
+            return fieldName + "_" + className.length();
+        }
+
+        @Override
+        protected String mapMethodName(String className, String methodName, String methodDesc) {
+            return methodName + "_" + methodDesc.length();
+        }
+
+        @Override
+        protected List<String> getClassesInPackage(String pkg) {
+            return List.of();
+        }
+
+        @Override
+        protected String getFieldDesc(String className, String fieldName) {
+            return "I";
+        }
+    }
+}
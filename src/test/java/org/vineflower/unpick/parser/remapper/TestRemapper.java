@@ -1,27 +1,53 @@
 package org.vineflower.unpick.parser.remapper;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 
 import java.io.IOException;
 import java.io.StringReader;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 
+import org.jetbrains.annotations.Nullable;
 import org.junit.jupiter.api.Test;
 
 import org.vineflower.unpick.parser.UnpickV3Reader;
 import org.vineflower.unpick.parser.UnpickV3Remapper;
+import org.vineflower.unpick.parser.UnpickV3RemapperCache;
 import org.vineflower.unpick.parser.UnpickV3Writer;
+import org.vineflower.unpick.parser.tree.DataType;
+import org.vineflower.unpick.parser.tree.GroupDefinition;
+import org.vineflower.unpick.parser.tree.GroupScope;
+import org.vineflower.unpick.parser.tree.Literal;
+import org.vineflower.unpick.parser.tree.TargetMethod;
+import org.vineflower.unpick.parser.tree.UnpickItem;
+import org.vineflower.unpick.parser.tree.UnpickV3Visitor;
+import org.vineflower.unpick.parser.tree.expr.BinaryExpression;
+import org.vineflower.unpick.parser.tree.expr.Expression;
+import org.vineflower.unpick.parser.tree.expr.FieldExpression;
+import org.vineflower.unpick.parser.tree.expr.LiteralExpression;
+import org.vineflower.unpick.parser.tree.expr.ParenExpression;
+import org.vineflower.unpick.parser.tree.expr.UnaryExpression;
 
 public final class TestRemapper {
     private static final Map<String, List<String>> PACKAGES = Map.of(
             "unmapped.foo", List.of("unmapped.foo.A", "unmapped.foo.B"),
-            "unmapped.bar", List.of("unmapped.bar.C")
+            "unmapped.bar", List.of("unmapped.bar.C"),
+            "unmapped.baz", List.of("unmapped.baz.D", "unmapped.baz.E")
+    );
+    private static final Map<String, List<String>> MAPPED_PACKAGES = Map.of(
+            "mapped.foo", List.of("mapped.foo.X"),
+            "mapped.bar", List.of("mapped.bar.Y", "mapped.bar.Z"),
+            "mapped.qux", List.of("mapped.qux.D", "mapped.qux.E")
     );
     private static final Map<String, String> CLASSES = Map.of(
             "unmapped.foo.A", "mapped.foo.X",
             "unmapped.foo.B", "mapped.bar.Y",
-            "unmapped.bar.C", "mapped.bar.Z"
+            "unmapped.bar.C", "mapped.bar.Z",
+            "unmapped.baz.D", "mapped.qux.D",
+            "unmapped.baz.E", "mapped.qux.E"
     );
     private static final Map<MemberKey, String> FIELDS = Map.of(
             new MemberKey("unmapped.foo.B", "baz", "I"), "quux"
@@ -45,6 +71,16 @@ public final class TestRemapper {
         test("target_method mapped.bar.Y bar2 (Lmapped/foo/X;)V", "target_method unmapped.foo.B foo2 (Lunmapped/foo/A;)V");
     }
 
+    @Test
+    public void testMethodDescriptor() throws IOException {
+        test(
+                "target_method mapped.bar.Z foo ([Lmapped/foo/X;ILjava/lang/String;[[Lmapped/bar/Y;)Lmapped/bar/Z;",
+                "target_method unmapped.bar.C foo ([Lunmapped/foo/A;ILjava/lang/String;[[Lunmapped/foo/B;)Lunmapped/bar/C;"
+        );
+        test("target_method mapped.bar.Z foo (Ljava/lang/String;J)Ljava/lang/Object;", "target_method unmapped.bar.C foo (Ljava/lang/String;J)Ljava/lang/Object;");
+        test("target_method mapped.bar.Z foo (IJ)V", "target_method unmapped.bar.C foo (IJ)V");
+    }
+
     @Test
     public void testTargetAnnotation() throws IOException {
         test("target_annotation mapped.bar.Y baz", "target_annotation unmapped.foo.B baz");
@@ -73,6 +109,117 @@ public final class TestRemapper {
         );
     }
 
+    @Test
+    public void testMixedScopes() throws IOException {
+        test(
+                "group int\n\t@scope class mapped.bar.Z\n\t@scope class mapped.foo.X\n\t@scope class mapped.bar.Y\n\t0",
+                "group int\n\t@scope class unmapped.bar.C\n\t@scope package unmapped.foo\n\t0"
+        );
+    }
+
+    @Test
+    public void testPreservedPackageScope() throws IOException {
+        testPreservingPackages("group int\n\t@scope package mapped.qux\n\t0", "group int\n\t@scope package unmapped.baz\n\t0");
+        test("group int\n\t@scope class mapped.qux.D\n\t@scope class mapped.qux.E\n\t0", "group int\n\t@scope package unmapped.baz\n\t0");
+    }
+
+    @Test
+    public void testSplitPackageScope() throws IOException {
+        testPreservingPackages(
+                "group int\n\t@scope class mapped.foo.X\n\t@scope class mapped.bar.Y\n\t0",
+                "group int\n\t@scope package unmapped.foo\n\t0"
+        );
+    }
+
+    @Test
+    public void testMergedPackageScope() throws IOException {
+        // mapped.bar also has mapped.bar.Y, from unmapped.foo
+        testPreservingPackages("group int\n\t@scope class mapped.bar.Z\n\t0", "group int\n\t@scope package unmapped.bar\n\t0");
+    }
+
+    @Test
+    public void testPackageScopeShared() {
+        List<GroupDefinition> remapped = new ArrayList<>();
+        Remapper remapper = new Remapper(new UnpickV3Visitor() {
+            @Override
+            public void visitGroupDefinition(GroupDefinition groupDefinition) {
+                remapped.add(groupDefinition);
+            }
+        }, null);
+        for (int i = 0; i < 3; i++) {
+            remapper.visitGroupDefinition(GroupDefinition.Builder.named(DataType.INT, "g" + i).scope(new GroupScope.Package("unmapped.foo")).build());
+        }
+
+        assertEquals(List.of(new GroupScope.Class("mapped.foo.X"), new GroupScope.Class("mapped.bar.Y")), remapped.get(0).scopes());
+        assertSame(remapped.get(0).scopes(), remapped.get(1).scopes());
+        assertSame(remapped.get(0).scopes(), remapped.get(2).scopes());
+    }
+
+    @Test
+    public void testUnchangedShared() {
+        List<UnpickItem> remapped = new ArrayList<>();
+        Remapper remapper = new Remapper(new UnpickV3Visitor() {
+            @Override
+            public void visitGroupDefinition(GroupDefinition groupDefinition) {
+                remapped.add(groupDefinition);
+            }
+
+            @Override
+            public void visitTargetMethod(TargetMethod targetMethod) {
+                remapped.add(targetMethod);
+            }
+        }, null);
+
+        Expression unchanged = new BinaryExpression(
+                new FieldExpression("other.Foo", "BAR", null, true),
+                new ParenExpression(new LiteralExpression(new Literal.Integer(1))),
+                BinaryExpression.Operator.BIT_OR
+        );
+        GroupDefinition group = GroupDefinition.Builder.named(DataType.INT, "g")
+                .scope(new GroupScope.Class("other.Foo"))
+                .constant(unchanged)
+                .build();
+        TargetMethod method = TargetMethod.Builder.builder("other.Foo", "foo", "(Lother/Bar;)V").build();
+        remapper.visitGroupDefinition(group);
+        remapper.visitTargetMethod(method);
+        assertSame(group, remapped.get(0));
+        assertSame(method, remapped.get(1));
+
+        Expression changed = new UnaryExpression(new FieldExpression("unmapped.foo.B", "baz", null, true), UnaryExpression.Operator.BIT_NOT);
+        GroupDefinition partlyChanged = GroupDefinition.Builder.from(group).constant(changed).build();
+        remapper.visitGroupDefinition(partlyChanged);
+        GroupDefinition changedGroup = (GroupDefinition) remapped.get(2);
+        assertSame(partlyChanged.scopes(), changedGroup.scopes());
+        assertSame(unchanged, changedGroup.constants().get(0));
+        assertEquals("mapped.bar.Y", ((FieldExpression) ((UnaryExpression) changedGroup.constants().get(1)).operand).className);
+    }
+
+    @Test
+    public void testUnchangedSharedLazy() throws IOException {
+        List<GroupDefinition> remapped = new ArrayList<>();
+        Remapper remapper = new Remapper(new UnpickV3Visitor() {
+            @Override
+            public void visitGroupDefinition(GroupDefinition groupDefinition) {
+                remapped.add(groupDefinition);
+            }
+        }, null);
+
+        String file = "unpick v4\n\ngroup int g\n\t@scope class other.Foo\n\tother.Foo.BAR | (1)\n\t~unmapped.foo.B.baz\n";
+        try (UnpickV3Reader reader = new UnpickV3Reader(new StringReader(file))) {
+            reader.setLazyExpressions(true);
+            GroupDefinition group = (GroupDefinition) reader.nextItem();
+            GroupDefinition unchangedGroup = GroupDefinition.Builder.from(group).setConstants(List.of(group.constants().getFirst())).build();
+            remapper.visitGroupDefinition(unchangedGroup);
+            remapper.visitGroupDefinition(group);
+            assertSame(unchangedGroup, remapped.get(0));
+
+            GroupDefinition changedGroup = remapped.get(1);
+            assertSame(group.scopes(), changedGroup.scopes());
+            assertSame(group.constants().getFirst(), changedGroup.constants().get(0));
+            assertEquals("mapped.bar.Y", ((FieldExpression) ((UnaryExpression) changedGroup.constants().get(1)).operand).className);
+        }
+    }
+
     @Test
     public void testClassScope() throws IOException {
         test("group int\n\t@scope class mapped.foo.X", "group int\n\t@scope class unmapped.foo.A");
@@ -92,39 +239,76 @@ public final class TestRemapper {
         expectedRemapped = "unpick v4\n\n" + expectedRemapped + "\n";
         original = "unpick v4\n\n" + original + "\n";
 
-        String remapped;
+        assertEquals(expectedRemapped, remap(original, null, null, false, 0));
+        assertEquals(expectedRemapped, remap(original, new UnpickV3RemapperCache(), null, false, 0));
+        assertEquals(expectedRemapped, remap(original, null, ForkJoinPool.commonPool(), false, 0));
+        assertEquals(expectedRemapped, remap(original, null, null, false, 2));
+        assertEquals(expectedRemapped, remap(original, null, ForkJoinPool.commonPool(), false, 2));
+
+        try (UnpickV3Reader reader = new UnpickV3Reader(new StringReader(original))) {
+            UnpickV3Writer writer = new UnpickV3Writer();
+            reader.accept(UnpickV3Remapper.compose(writer, new Remapper(new UnpickV3Visitor() {
+            }, null)));
+            assertEquals(expectedRemapped, writer.getOutput().replace(System.lineSeparator(), "\n"));
+        }
+    }
+
+    private static void testPreservingPackages(String expectedRemapped, String original) throws IOException {
+        expectedRemapped = "unpick v4\n\n" + expectedRemapped + "\n";
+        original = "unpick v4\n\n" + original + "\n";
+
+        assertEquals(expectedRemapped, remap(original, null, null, true, 0));
+        assertEquals(expectedRemapped, remap(original, null, null, true, 2));
+    }
+
+    private static String remap(String original, @Nullable UnpickV3RemapperCache cache, @Nullable ForkJoinPool pool, boolean preservePackages, int bulkBatchSize) throws IOException {
         try (UnpickV3Reader reader = new UnpickV3Reader(new StringReader(original))) {
             UnpickV3Writer writer = new UnpickV3Writer();
-            UnpickV3Remapper remapper = new UnpickV3Remapper(writer) {
-                @Override
-                protected String mapClassName(String className) {
-                    return CLASSES.getOrDefault(className, className);
-                }
-
-                @Override
-                protected String mapFieldName(String className, String fieldName, String fieldDesc) {
-                    return FIELDS.getOrDefault(new MemberKey(className, fieldName, fieldDesc), fieldName);
-                }
-
-                @Override
-                protected String mapMethodName(String className, String methodName, String methodDesc) {
-                    return METHODS.getOrDefault(new MemberKey(className, methodName, methodDesc), methodName);
-                }
-
-                @Override
-                protected List<String> getClassesInPackage(String pkg) {
-                    return PACKAGES.getOrDefault(pkg, List.of());
-                }
-
-                @Override
-                protected String getFieldDesc(String className, String fieldName) {
-                    return "I";
-                }
-            };
+            Remapper remapper = new Remapper(writer, cache);
+            remapper.setPool(pool);
+            remapper.setPreservePackages(preservePackages);
+            remapper.setBulkBatchSize(bulkBatchSize);
             reader.accept(remapper);
-            remapped = writer.getOutput().replace(System.lineSeparator(), "\n");
+            remapper.flush();
+            return writer.getOutput().replace(System.lineSeparator(), "\n");
+        }
+    }
+
+    static class Remapper extends UnpickV3Remapper {
+        Remapper(UnpickV3Visitor downstream, @Nullable UnpickV3RemapperCache cache) {
+            super(downstream, cache);
+        }
+
+        @Override
+        protected String mapClassName(String className) {
+            return CLASSES.getOrDefault(className, className);
+        }
+
+        @Override
+        protected String mapFieldName(String className, String fieldName, String fieldDesc) {
+            return FIELDS.getOrDefault(new MemberKey(className, fieldName, fieldDesc), fieldName);
+        }
+
+        @Override
+        protected String mapMethodName(String className, String methodName, String methodDesc) {
+            return METHODS.getOrDefault(new MemberKey(className, methodName, methodDesc), methodName);
+        }
+
+        @Override
+        protected List<String> getClassesInPackage(String pkg) {
+            return PACKAGES.getOrDefault(pkg, List.of());
+        }
+
+        @Override
+        protected String getFieldDesc(String className, String fieldName) {
+            return "I";
+        }
+
+        @Override
+        @Nullable
+        protected List<String> getClassesInMappedPackage(String mappedPackage) {
+            return MAPPED_PACKAGES.get(mappedPackage);
         }
-        assertEquals(expectedRemapped, remapped);
     }
 
     private record MemberKey(String owner, String name, String descriptor) {
@@ -0,0 +1,142 @@
+package org.vineflower.unpick.parser.remapper;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jetbrains.annotations.Nullable;
+import org.junit.jupiter.api.Test;
+
+import org.vineflower.unpick.parser.UnpickV3Reader;
+import org.vineflower.unpick.parser.UnpickV3RemapperCache;
+import org.vineflower.unpick.parser.UnpickV3Writer;
+import org.vineflower.unpick.parser.tree.TargetField;
+
+public final class TestRemapperCache {
+    private static final String FILE = """
+            unpick v4
+
+            group int
+            \t@scope class unmapped.foo.A
+            \t@scope method unmapped.foo.B foo2 (Lunmapped/foo/A;)V
+            \tunmapped.foo.B.baz
+            \tunmapped.foo.B.baz
+
+            target_field unmapped.foo.B baz I g
+
+            target_method unmapped.foo.B foo2 (Lunmapped/foo/A;)V
+
+            target_method unmapped.foo.B foo2 (Lunmapped/foo/A;)V
+            """;
+
+    @Test
+    public void testMapsOnce() throws IOException {
+        UnpickV3RemapperCache cache = new UnpickV3RemapperCache();
+        CountingRemapper remapper = new CountingRemapper(new UnpickV3Writer(), cache);
+        String remapped = remap(remapper);
+
+        // unmapped.foo.A, unmapped.foo.B, baz and foo2
+        assertEquals(4, remapper.calls.get());
+        assertEquals(new UnpickV3RemapperCache.Stats(6, 2, 2), cache.getClassNameStats());
+        assertEquals(new UnpickV3RemapperCache.Stats(2, 2, 2), cache.getDescriptorStats());
+        assertEquals(new UnpickV3RemapperCache.Stats(2, 1, 1), cache.getFieldNameStats());
+        assertEquals(new UnpickV3RemapperCache.Stats(2, 1, 1), cache.getMethodNameStats());
+
+        assertEquals(remap(new CountingRemapper(new UnpickV3Writer(), null)), remapped);
+        CountingRemapper cachedRemapper = new CountingRemapper(new UnpickV3Writer(), cache);
+        assertEquals(remapped, remap(cachedRemapper));
+        assertEquals(0, cachedRemapper.calls.get());
+    }
+
+    @Test
+    public void testMaxSize() {
+        UnpickV3RemapperCache cache = new UnpickV3RemapperCache(100);
+        CountingRemapper remapper = new CountingRemapper(new UnpickV3Writer(), cache);
+        for (int i = 0; i < 1000; i++) {
+            remapper.visitTargetField(new TargetField("foo.Bar" + i, "baz", "I", "g"));
+        }
+        assertTrue(cache.getClassNameStats().size() <= 100);
+        assertEquals(1000, cache.getClassNameStats().misses());
+
+        // recently used entries are kept
+        remapper.visitTargetField(new TargetField("foo.Bar999", "baz", "I", "g"));
+        assertEquals(1, cache.getClassNameStats().hits());
+
+        cache.clear();
+        assertEquals(0, cache.getClassNameStats().size());
+    }
+
+    @Test
+    public void testUnevenMaxSize() {
+        // the max size isn't a multiple of the number of stripes
+        UnpickV3RemapperCache cache = new UnpickV3RemapperCache(20);
+        CountingRemapper remapper = new CountingRemapper(new UnpickV3Writer(), cache);
+        for (int i = 0; i < 1000; i++) {
+            remapper.visitTargetField(new TargetField("foo.Bar" + i, "baz", "I", "g"));
+        }
+        assertEquals(20, cache.getClassNameStats().size());
+    }
+
+    @Test
+    public void testShared() throws Exception {
+        UnpickV3RemapperCache cache = new UnpickV3RemapperCache();
+        String expected = remap(new CountingRemapper(new UnpickV3Writer(), null));
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                results.add(executor.submit(() -> remap(new CountingRemapper(new UnpickV3Writer(), cache))));
+            }
+            for (Future<String> result : results) {
+                assertEquals(expected, result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(2, cache.getClassNameStats().size());
+    }
+
+    private static String remap(CountingRemapper remapper) throws IOException {
+        try (UnpickV3Reader reader = new UnpickV3Reader(new StringReader(FILE))) {
+            reader.accept(remapper);
+        }
+        return remapper.writer.getOutput();
+    }
+
+    private static final class CountingRemapper extends TestRemapper.Remapper {
+        final UnpickV3Writer writer;
+        final AtomicInteger calls = new AtomicInteger();
+
+        CountingRemapper(UnpickV3Writer writer, @Nullable UnpickV3RemapperCache cache) {
+            super(writer, cache);
+            this.writer = writer;
+        }
+
+        @Override
+        protected String mapClassName(String className) {
+            calls.incrementAndGet();
+            return super.mapClassName(className);
+        }
+
+        @Override
+        protected String mapFieldName(String className, String fieldName, String fieldDesc) {
+            calls.incrementAndGet();
+            return super.mapFieldName(className, fieldName, fieldDesc);
+        }
+
+        @Override
+        protected String mapMethodName(String className, String methodName, String methodDesc) {
+            calls.incrementAndGet();
+            return super.mapMethodName(className, methodName, methodDesc);
+        }
+    }
+}
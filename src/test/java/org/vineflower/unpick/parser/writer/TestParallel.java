@@ -0,0 +1,118 @@
+package org.vineflower.unpick.parser.writer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Test;
+
+import org.vineflower.unpick.parser.UnpickV3ParallelWriter;
+import org.vineflower.unpick.parser.UnpickV3Reader;
+import org.vineflower.unpick.parser.UnpickV3Writer;
+import org.vineflower.unpick.parser.reader.TestReader;
+import org.vineflower.unpick.parser.tree.DataType;
+import org.vineflower.unpick.parser.tree.GroupDefinition;
+import org.vineflower.unpick.parser.tree.TargetAnnotation;
+import org.vineflower.unpick.parser.tree.TargetField;
+import org.vineflower.unpick.parser.tree.TargetMethod;
+import org.vineflower.unpick.parser.tree.UnpickV3Visitor;
+import org.vineflower.unpick.parser.tree.expr.FieldExpression;
+
+public final class TestParallel {
+    private static final int ITEMS = 5000;
+
+    @Test
+    public void testSameAsSequential() throws IOException {
+        UnpickV3Writer expected = new UnpickV3Writer();
+        TestReader.test("other/spec", expected);
+
+        UnpickV3ParallelWriter writer = new UnpickV3ParallelWriter(new UnpickV3Writer());
+        TestReader.test("other/spec", writer);
+        assertEquals(expected.getOutput(), writer.getOutput());
+    }
+
+    @Test
+    public void testManyItems() {
+        UnpickV3Writer expected = new UnpickV3Writer("  ");
+        visitItems(expected);
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (int window : new int[] {1, 2, 16}) {
+                UnpickV3ParallelWriter writer = new UnpickV3ParallelWriter(new UnpickV3Writer("  "), pool, window);
+                visitItems(writer);
+                assertEquals(expected.getOutput(), writer.getOutput());
+            }
+
+            StringWriter destination = new StringWriter();
+            UnpickV3ParallelWriter streamingWriter = new UnpickV3ParallelWriter(new UnpickV3Writer(destination, "  "), pool);
+            visitItems(streamingWriter);
+            streamingWriter.flush();
+            assertEquals(expected.getOutput(), destination.toString());
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            UnpickV3ParallelWriter channelWriter = new UnpickV3ParallelWriter(new UnpickV3Writer(Channels.newChannel(bytes), "  "), pool);
+            visitItems(channelWriter);
+            channelWriter.flush();
+            assertEquals(expected.getOutput(), bytes.toString(StandardCharsets.UTF_8));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testEmpty() {
+        UnpickV3ParallelWriter writer = new UnpickV3ParallelWriter(new UnpickV3Writer());
+        writer.visitHeader(4);
+        assertEquals("unpick v4" + System.lineSeparator(), writer.getOutput());
+    }
+
+    @Test
+    public void testUnsupportedTargetAnnotation() {
+        UnpickV3ParallelWriter writer = new UnpickV3ParallelWriter(new UnpickV3Writer());
+        assertThrows(IllegalStateException.class, () -> writer.visitTargetAnnotation(new TargetAnnotation("foo.Ann", "Group")));
+    }
+
+    @Test
+    public void testLazyExpressionError() throws IOException {
+        StringBuilder file = new StringBuilder("unpick v3\n");
+        for (int i = 0; i < ITEMS; i++) {
+            file.append("\ngroup int\n\t").append(i == ITEMS / 2 ? "1 +" : String.valueOf(i)).append('\n');
+        }
+
+        // the error is thrown when the batch with the item is written, which may be before the end
+        UnpickV3ParallelWriter writer = new UnpickV3ParallelWriter(new UnpickV3Writer());
+        try (UnpickV3Reader reader = new UnpickV3Reader(new StringReader(file.toString()))) {
+            reader.setLazyExpressions(true);
+            assertThrows(UncheckedIOException.class, () -> {
+                reader.accept(writer);
+                writer.getOutput();
+            });
+        }
+    }
+
+    private static void visitItems(UnpickV3Visitor visitor) {
+        visitor.visitHeader(4);
+        for (int i = 0; i < ITEMS; i++) {
+            switch (i % 4) {
+                case 0 -> visitor.visitGroupDefinition(
+                        GroupDefinition.Builder.named(DataType.INT, "Group" + i)
+                                .constant(new FieldExpression("foo.Bar" + i, "BAZ", null, true))
+                                .docs("Docs for " + i + "\nwith \"quotes\" é€😀")
+                                .build()
+                );
+                case 1 -> visitor.visitTargetField(new TargetField("foo.Bar" + i, "baz", "I", "Group" + i));
+                case 2 -> visitor.visitTargetMethod(TargetMethod.Builder.builder("foo.Bar" + i, "baz", "(IJ)V").paramGroup(1, "Group" + i).build());
+                default -> visitor.visitTargetAnnotation(new TargetAnnotation("foo.Ann" + i, "Group" + i));
+            }
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package org.vineflower.unpick.parser.writer;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+import org.vineflower.unpick.parser.UnpickV3Writer;
+import org.vineflower.unpick.parser.reader.TestReader;
+import org.vineflower.unpick.parser.tree.DataType;
+import org.vineflower.unpick.parser.tree.GroupDefinition;
+import org.vineflower.unpick.parser.tree.Literal;
+import org.vineflower.unpick.parser.tree.TargetField;
+import org.vineflower.unpick.parser.tree.expr.LiteralExpression;
+
+public final class TestStreaming {
+    @Test
+    public void testSameAsInMemory() throws IOException {
+        UnpickV3Writer expected = new UnpickV3Writer();
+        TestReader.test("other/spec", expected);
+
+        StringWriter destination = new StringWriter();
+        UnpickV3Writer writer = new UnpickV3Writer(destination);
+        TestReader.test("other/spec", writer);
+        writer.flush();
+        assertEquals(expected.getOutput(), destination.toString());
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        UnpickV3Writer channelWriter = new UnpickV3Writer(Channels.newChannel(bytes));
+        TestReader.test("other/spec", channelWriter);
+        channelWriter.flush();
+        assertEquals(expected.getOutput(), bytes.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testLargeItems() {
+        GroupDefinition.Builder builder = GroupDefinition.Builder.named(DataType.STRING, "Group");
+        for (int i = 0; i < 1000; i++) {
+            builder.constant(new LiteralExpression(new Literal.String("é€😀 " + i)));
+        }
+        GroupDefinition group = builder.build();
+
+        UnpickV3Writer expected = new UnpickV3Writer();
+        expected.visitGroupDefinition(group);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        UnpickV3Writer writer = new UnpickV3Writer(Channels.newChannel(bytes));
+        writer.visitGroupDefinition(group);
+        writer.flush();
+        assertEquals(expected.getOutput(), bytes.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testUnpairedSurrogates() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        UnpickV3Writer writer = new UnpickV3Writer(Channels.newChannel(bytes));
+        String className = "foo.B\ud800ar\udc00😀";
+        writer.visitTargetField(new TargetField(className, "baz", "I", "Group"));
+        writer.flush();
+        String expected = "unpick v3" + System.lineSeparator() + System.lineSeparator() + "target_field " + className + " baz I Group" + System.lineSeparator();
+        assertArrayEquals(expected.getBytes(StandardCharsets.UTF_8), bytes.toByteArray());
+    }
+
+    @Test
+    public void testWrittenPerItem() {
+        StringWriter destination = new StringWriter();
+        UnpickV3Writer writer = new UnpickV3Writer(destination);
+        writer.visitTargetField(new TargetField("foo.Bar", "baz", "I", "Group"));
+        assertTrue(destination.toString().contains("target_field foo.Bar baz I Group"));
+
+        int length = destination.getBuffer().length();
+        writer.visitTargetField(new TargetField("foo.Bar", "qux", "I", "Group"));
+        assertTrue(destination.getBuffer().substring(length).contains("target_field foo.Bar qux I Group"));
+    }
+
+    @Test
+    public void testGetOutput() {
+        UnpickV3Writer writer = new UnpickV3Writer(new StringWriter());
+        assertThrows(IllegalStateException.class, writer::getOutput);
+    }
+
+    @Test
+    public void testWriteError() {
+        Writer destination = new Writer() {
+            @Override
+            public void write(char[] buffer, int offset, int length) throws IOException {
+                throw new IOException("Disk full");
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        UnpickV3Writer writer = new UnpickV3Writer(destination);
+        assertThrows(UncheckedIOException.class, () -> writer.visitTargetField(new TargetField("foo.Bar", "baz", "I", "Group")));
+    }
+}
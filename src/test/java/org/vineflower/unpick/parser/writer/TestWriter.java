@@ -2,8 +2,13 @@ package org.vineflower.unpick.parser.writer;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
 import java.util.function.Consumer;
 
+import org.vineflower.unpick.parser.UnpickV3ParallelWriter;
 import org.vineflower.unpick.parser.UnpickV3Writer;
 import org.vineflower.unpick.parser.tree.DataType;
 import org.vineflower.unpick.parser.tree.GroupDefinition;
@@ -43,5 +48,21 @@ public final class TestWriter {
         visitorConsumer.accept(writer);
         String actual = writer.getOutput().replace(System.lineSeparator(), "\n");
         assertEquals(expected, actual);
+
+        StringWriter destination = new StringWriter();
+        UnpickV3Writer streamingWriter = new UnpickV3Writer(destination);
+        visitorConsumer.accept(streamingWriter);
+        streamingWriter.flush();
+        assertEquals(expected, destination.toString().replace(System.lineSeparator(), "\n"));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        UnpickV3Writer channelWriter = new UnpickV3Writer(Channels.newChannel(bytes));
+        visitorConsumer.accept(channelWriter);
+        channelWriter.flush();
+        assertEquals(expected, bytes.toString(StandardCharsets.UTF_8).replace(System.lineSeparator(), "\n"));
+
+        UnpickV3ParallelWriter parallelWriter = new UnpickV3ParallelWriter(new UnpickV3Writer());
+        visitorConsumer.accept(parallelWriter);
+        assertEquals(expected, parallelWriter.getOutput().replace(System.lineSeparator(), "\n"));
     }
 }